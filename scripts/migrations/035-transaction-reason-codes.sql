@@ -0,0 +1,60 @@
+-- Structured reason columns on transactions; backfill of existing rows (MySQL).
+--
+-- Generated descriptions ("Trip payment for tripId: ... (PENALTY)", exception
+-- messages) become a reason code, a penalty flag and the capped-from amount;
+-- the text is rendered at read time by TransactionReason. Caller-supplied
+-- top-up/purchase descriptions are kept as they are, and so are the refusal
+-- texts the columns cannot rebuild: "Account not found for userId: ..." (the
+-- row has no account, the userId is only in the text) and "Insufficient
+-- balance: available ..., required ..." (the available balance is not stored).
+-- Those rows only gain their reason code.
+--
+-- 1. scripts/transaction-row-size.sql          (before)
+-- 2. this script, before starting the new version (skip step A if
+--    spring.jpa.hibernate.ddl-auto=update already added the columns)
+-- 3. scripts/transaction-row-size.sql          (after)
+--
+-- Each UPDATE touches every matching row in one statement; on a large table run
+-- it off-peak or split by id range (AND id BETWEEN ? AND ?).
+
+-- A. Columns
+ALTER TABLE transactions
+    ADD COLUMN reason_code SMALLINT NULL,
+    ADD COLUMN penalty BIT(1) NOT NULL DEFAULT b'0',
+    ADD COLUMN capped_from DECIMAL(19, 2) NULL;
+
+-- B. Generated texts -> codes (see TransactionReason for the values)
+UPDATE transactions
+SET reason_code = 1,
+    penalty     = (description LIKE '% (PENALTY)'),
+    description = NULL
+WHERE reason_code IS NULL
+  AND description LIKE 'Trip payment for tripId: %';
+
+UPDATE transactions SET reason_code = 2, description = NULL
+WHERE reason_code IS NULL AND description = 'Account top-up';
+
+UPDATE transactions SET reason_code = 3, description = NULL
+WHERE reason_code IS NULL AND description = 'Purchase charge';
+
+UPDATE transactions SET reason_code = 4
+WHERE reason_code IS NULL AND description LIKE 'Account not found for userId: %';
+
+UPDATE transactions SET reason_code = 5
+WHERE reason_code IS NULL AND description LIKE 'Insufficient balance: %';
+
+UPDATE transactions SET reason_code = 6, description = NULL
+WHERE reason_code IS NULL AND description LIKE 'Daily spending cap has been reached.%';
+
+-- C. Remaining rows carry caller text: classify by shape, keep the text
+UPDATE transactions SET reason_code = 2
+WHERE reason_code IS NULL AND type = 'CREDIT';
+
+UPDATE transactions SET reason_code = 3
+WHERE reason_code IS NULL AND type = 'DEBIT' AND trip_id IS NULL;
+
+UPDATE transactions SET reason_code = 0
+WHERE reason_code IS NULL;
+
+-- D. Reclaim the space freed by the NULLed descriptions
+OPTIMIZE TABLE transactions;
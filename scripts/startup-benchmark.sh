@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+#
+# Startup benchmark: time-to-ready and first-request latency per launch mode.
+#
+#   jar      plain executable jar                   (./mvnw package)
+#   aot      AOT-processed jar, -Dspring.aot.enabled (./mvnw package -Pfast-startup)
+#   aot-cds  AOT + class-data-sharing archive        (same build, archive created here)
+#
+# Usage: scripts/startup-benchmark.sh [runs] [userId]
+# Needs the usual infrastructure (database, RabbitMQ, config server) reachable, as the
+# first request goes through JPA. Build with -Pfast-startup first: the AOT jar also runs
+# in plain mode since AOT code is only used when spring.aot.enabled=true.
+set -euo pipefail
+
+RUNS="${1:-5}"
+USER_ID="${2:-benchmark-user}"
+PORT="${PORT:-8085}"
+JAR="${JAR:-target/app.jar}"
+WORK="$(mktemp -d)"
+trap 'rm -rf "$WORK"' EXIT
+
+now_ms() { date +%s%3N; }
+
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK/app" >/dev/null
+java -XX:ArchiveClassesAtExit="$WORK/app/app.jsa" -Dspring.aot.enabled=true \
+    -Dspring.context.exit=onRefresh -Dserver.port="$PORT" -jar "$WORK/app/app.jar" >/dev/null 2>&1 || true
+
+run_mode() {
+    local mode="$1"; shift
+    local ready_total=0 first_total=0
+    for ((i = 1; i <= RUNS; i++)); do
+        local start ready pid first
+        start=$(now_ms)
+        java "$@" -Dserver.port="$PORT" -jar "$WORK/app/app.jar" >"$WORK/$mode.log" 2>&1 &
+        pid=$!
+        until curl -s -o /dev/null "http://localhost:$PORT/actuator/health"; do
+            kill -0 "$pid" 2>/dev/null || { echo "$mode: application exited, see $WORK/$mode.log" >&2; exit 1; }
+            sleep 0.05
+        done
+        ready=$(( $(now_ms) - start ))
+        first=$(curl -s -o /dev/null -w '%{time_total}' \
+            "http://localhost:$PORT/internal/accounts/daily-spent/$USER_ID")
+        kill "$pid"; wait "$pid" 2>/dev/null || true
+        ready_total=$(( ready_total + ready ))
+        first_total=$(awk -v a="$first_total" -v b="$first" 'BEGIN { print a + b * 1000 }')
+    done
+    printf '%-8s time-to-ready: %6d ms   first request: %8.1f ms   (%s)\n' "$mode" \
+        $(( ready_total / RUNS )) "$(awk -v t="$first_total" -v n="$RUNS" 'BEGIN { print t / n }')" \
+        "$(grep -o 'Started .* seconds (process running for [0-9.]*)' "$WORK/$mode.log" | tail -1)"
+}
+
+run_mode jar
+run_mode aot -Dspring.aot.enabled=true
+run_mode aot-cds -Dspring.aot.enabled=true -XX:SharedArchiveFile="$WORK/app/app.jsa"
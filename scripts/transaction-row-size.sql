@@ -0,0 +1,21 @@
+-- Bytes per row of the transactions table (MySQL/InnoDB).
+-- Run before and after scripts/migrations/035-transaction-reason-codes.sql.
+-- ANALYZE first so information_schema reflects the current pages.
+
+ANALYZE TABLE transactions;
+
+SELECT table_rows,
+       avg_row_length,
+       data_length,
+       index_length,
+       ROUND((data_length + index_length) / NULLIF(table_rows, 0)) AS bytes_per_row_with_indexes
+FROM information_schema.tables
+WHERE table_schema = DATABASE()
+  AND table_name = 'transactions';
+
+-- Logical payload of the variable-width columns, independent of page fill
+SELECT COUNT(*)                                      AS row_count,
+       AVG(COALESCE(LENGTH(description), 0))         AS avg_description_bytes,
+       AVG(COALESCE(LENGTH(trip_id), 0))             AS avg_trip_id_bytes,
+       SUM(description IS NULL) / NULLIF(COUNT(*), 0) AS share_without_description
+FROM transactions;
@@ -1,11 +1,14 @@
 package com.smart.mobility.smartmobilitybillingservice;
 
+import com.smart.mobility.smartmobilitybillingservice.config.BillingRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
+@ImportRuntimeHints(BillingRuntimeHints.class)
 public class SmartMobilityBillingServiceApplication {
 
     public static void main(String[] args) {
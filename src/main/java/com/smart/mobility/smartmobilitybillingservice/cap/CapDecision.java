@@ -0,0 +1,32 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of {@link CapPolicy#evaluate}.
+ *
+ * @param amount    amount that may be debited; meaningless when rejected
+ * @param limitedBy period whose cap trimmed or rejected the debit, {@code null} when it fits
+ * @param rejected  a cap is already reached, nothing may be debited
+ */
+public record CapDecision(BigDecimal amount, @Nullable CapPeriod limitedBy, boolean rejected) {
+
+    static CapDecision allowed(BigDecimal amount) {
+        return new CapDecision(amount, null, false);
+    }
+
+    static CapDecision trimmed(BigDecimal amount, CapPeriod limitedBy) {
+        return new CapDecision(amount, limitedBy, false);
+    }
+
+    static CapDecision rejected(CapPeriod limitedBy) {
+        return new CapDecision(BigDecimal.ZERO, limitedBy, true);
+    }
+
+    public boolean isTrimmed() {
+        return !rejected && limitedBy != null;
+    }
+}
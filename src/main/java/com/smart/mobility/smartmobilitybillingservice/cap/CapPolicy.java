@@ -0,0 +1,111 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiled, immutable form of {@link CapProperties}: one {@link Limits} per
+ * tier, defaults already resolved, so evaluating a debit is a map lookup and
+ * at most three comparisons. A new instance is compiled on every change and
+ * swapped in whole by {@link CapPolicyEngine}; readers never see a half-built
+ * policy.
+ */
+public final class CapPolicy {
+
+    private static final CapPeriod[] PERIODS = CapPeriod.values();
+
+    private final Map<String, Limits> tiers;
+    private final Limits defaultLimits;
+
+    private CapPolicy(Map<String, Limits> tiers, Limits defaultLimits) {
+        this.tiers = tiers;
+        this.defaultLimits = defaultLimits;
+    }
+
+    /**
+     * Resolves and validates {@code properties}.
+     *
+     * @param dailyCap daily cap of tiers that set none ({@code billing.daily-cap})
+     * @throws IllegalArgumentException on a negative cap
+     */
+    public static CapPolicy compile(CapProperties properties, BigDecimal dailyCap) {
+        requireNonNegative("billing.daily-cap", dailyCap);
+        Map<String, Limits> tiers = new HashMap<>();
+        properties.tiers().forEach((name, caps) -> {
+            String tier = name.toLowerCase(Locale.ROOT);
+            String prefix = "billing.caps.tiers." + tier;
+            Limits limits = new Limits(
+                    caps.daily() != null ? requireNonNegative(prefix + ".daily", caps.daily()) : dailyCap,
+                    caps.weekly() != null ? requireNonNegative(prefix + ".weekly", caps.weekly()) : null,
+                    caps.monthly() != null ? requireNonNegative(prefix + ".monthly", caps.monthly()) : null);
+            tiers.put(tier, limits);
+        });
+        Limits defaultLimits = tiers.getOrDefault(properties.defaultTier().toLowerCase(Locale.ROOT),
+                new Limits(dailyCap, null, null));
+        return new CapPolicy(Map.copyOf(tiers), defaultLimits);
+    }
+
+    /** Limits of {@code tier}, or of the default tier when it is unknown or {@code null}. */
+    public Limits limits(@Nullable String tier) {
+        if (tier == null) {
+            return defaultLimits;
+        }
+        Limits limits = tiers.get(tier);
+        return limits != null ? limits : defaultLimits;
+    }
+
+    public BigDecimal dailyCap(@Nullable String tier) {
+        return limits(tier).daily();
+    }
+
+    /**
+     * How much of {@code amount} may be debited given {@code spent}: all of
+     * it, trimmed to the smallest remaining allowance, or nothing once a cap
+     * is reached. Untracked counters and unset caps are skipped.
+     */
+    public CapDecision evaluate(@Nullable String tier, SpendCounters spent, BigDecimal amount) {
+        Limits limits = limits(tier);
+        BigDecimal allowed = amount;
+        CapPeriod limitedBy = null;
+        for (CapPeriod period : PERIODS) {
+            BigDecimal cap = limits.get(period);
+            BigDecimal counter = spent.get(period);
+            if (cap == null || counter == null) {
+                continue;
+            }
+            BigDecimal remaining = cap.subtract(counter);
+            if (remaining.signum() <= 0) {
+                return CapDecision.rejected(period);
+            }
+            if (remaining.compareTo(allowed) < 0) {
+                allowed = remaining;
+                limitedBy = period;
+            }
+        }
+        return limitedBy == null ? CapDecision.allowed(amount) : CapDecision.trimmed(allowed, limitedBy);
+    }
+
+    /** Caps of one tier; {@code null} weekly/monthly caps are not applied. */
+    public record Limits(BigDecimal daily, @Nullable BigDecimal weekly, @Nullable BigDecimal monthly) {
+
+        public @Nullable BigDecimal get(CapPeriod period) {
+            return switch (period) {
+                case DAILY -> daily;
+                case WEEKLY -> weekly;
+                case MONTHLY -> monthly;
+            };
+        }
+    }
+
+    private static BigDecimal requireNonNegative(String property, BigDecimal cap) {
+        if (cap.signum() < 0) {
+            throw new IllegalArgumentException(property + " must not be negative: " + cap);
+        }
+        return cap;
+    }
+}
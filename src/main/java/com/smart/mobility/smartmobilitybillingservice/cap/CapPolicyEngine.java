@@ -0,0 +1,75 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Holds the current {@link CapPolicy}. Debits read it through
+ * {@link #current()}, a plain volatile read: no lock and no database access.
+ * <p>
+ * The policy is compiled from {@code billing.caps.*} and
+ * {@code billing.daily-cap} at startup (an invalid configuration fails the
+ * startup) and recompiled when a config refresh changes any of those keys. A
+ * refresh with an invalid configuration is logged and ignored, the previous
+ * policy stays in force. Reloads are counted in {@code billing.caps.reloads}
+ * (tagged {@code outcome}).
+ */
+@Component
+@Slf4j
+public class CapPolicyEngine {
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    private volatile CapPolicy policy;
+
+    public CapPolicyEngine(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.policy = compile();
+    }
+
+    public CapPolicy current() {
+        return policy;
+    }
+
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith("billing.caps") || key.equals("billing.daily-cap"))) {
+            reload();
+        }
+    }
+
+    /** Recompiles the policy from the environment; {@code false} if it was rejected. */
+    public boolean reload() {
+        CapPolicy next;
+        try {
+            next = compile();
+        } catch (RuntimeException e) {
+            log.error("Rejected cap policy change, keeping the current policy: {}", e.getMessage());
+            meterRegistry.counter("billing.caps.reloads", "outcome", "rejected").increment();
+            return false;
+        }
+        policy = next;
+        log.info("Cap policy reloaded");
+        meterRegistry.counter("billing.caps.reloads", "outcome", "applied").increment();
+        return true;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private CapPolicy compile() {
+        CapProperties properties = Binder.get(environment).bindOrCreate("billing.caps", CapProperties.class);
+        BigDecimal dailyCap = environment.getProperty("billing.daily-cap", BigDecimal.class, new BigDecimal("50000"));
+        return CapPolicy.compile(properties, dailyCap);
+    }
+}
@@ -0,0 +1,38 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code billing.caps.*}: spending caps per account tier.
+ * <pre>
+ * billing.caps.tiers.student.daily=2000
+ * billing.caps.tiers.student.weekly=10000
+ * billing.caps.tiers.senior.monthly=30000
+ * billing.caps.tiers.fleet.daily=500000
+ * </pre>
+ * A tier without a daily cap uses {@code billing.daily-cap}; weekly and
+ * monthly caps are optional. Accounts without a tier, or with a tier not
+ * listed here, get {@code default-tier}. Bound by {@link CapPolicyEngine},
+ * which recompiles the policy when the properties change at runtime.
+ *
+ * @param defaultTier tier of accounts that have none
+ * @param tiers       lowercase tier name to its caps
+ */
+@ConfigurationProperties("billing.caps")
+public record CapProperties(
+        @DefaultValue("standard") String defaultTier,
+        Map<String, TierCaps> tiers) {
+
+    public CapProperties {
+        tiers = tiers != null ? tiers : new LinkedHashMap<>();
+    }
+
+    public record TierCaps(@Nullable BigDecimal daily, @Nullable BigDecimal weekly, @Nullable BigDecimal monthly) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Spend of an account in each cap period. A {@code null} counter is not
+ * tracked for the account and its caps are not applied.
+ * <p>
+ * Weekly and monthly spend are kept next to the daily spend, on the account
+ * row, on each balance slot or on the ledger snapshot, and roll over lazily:
+ * a counter last written in an earlier week or month reads as zero and
+ * restarts on the next debit, so no job has to reset them.
+ */
+public record SpendCounters(BigDecimal daily, @Nullable BigDecimal weekly, @Nullable BigDecimal monthly) {
+
+    /** Daily spend only: weekly and monthly caps are not applied. */
+    public static SpendCounters daily(BigDecimal dailySpent) {
+        return new SpendCounters(dailySpent, null, null);
+    }
+
+    /** First day of the week of {@code today}, from which weekly spend counts. */
+    public static LocalDate weekStart(LocalDate today) {
+        return today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    /** All three counters of a column-mode account as of {@code today}. */
+    public static SpendCounters of(Account account, BigDecimal dailySpent, LocalDate today) {
+        return of(dailySpent, account.getWeeklySpent(), account.getMonthlySpent(), account.getLastSpendDate(), today);
+    }
+
+    /** Counters written on {@code last}, as of {@code today}; unset ones read as zero. */
+    public static SpendCounters of(BigDecimal dailySpent, @Nullable BigDecimal weeklySpent,
+            @Nullable BigDecimal monthlySpent, @Nullable LocalDate last, LocalDate today) {
+        return new SpendCounters(dailySpent,
+                sameWeek(last, today) ? orZero(weeklySpent) : BigDecimal.ZERO,
+                sameMonth(last, today) ? orZero(monthlySpent) : BigDecimal.ZERO);
+    }
+
+    /** Adds {@code amount} to the weekly and monthly counters of the account row, rolling them over first. */
+    public static void accumulate(Account account, BigDecimal amount, LocalDate today) {
+        SpendCounters current = of(account, BigDecimal.ZERO, today);
+        account.setWeeklySpent(current.weekly().add(amount));
+        account.setMonthlySpent(current.monthly().add(amount));
+        account.setLastSpendDate(today);
+    }
+
+    public @Nullable BigDecimal get(CapPeriod period) {
+        return switch (period) {
+            case DAILY -> daily;
+            case WEEKLY -> weekly;
+            case MONTHLY -> monthly;
+        };
+    }
+
+    /** Counters after a further debit of {@code amount}. */
+    public SpendCounters plus(BigDecimal amount) {
+        if (amount.signum() == 0) {
+            return this;
+        }
+        return new SpendCounters(daily.add(amount),
+                weekly != null ? weekly.add(amount) : null,
+                monthly != null ? monthly.add(amount) : null);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private static boolean sameWeek(@Nullable LocalDate last, LocalDate today) {
+        return last != null && !last.isBefore(weekStart(today));
+    }
+
+    private static boolean sameMonth(@Nullable LocalDate last, LocalDate today) {
+        return last != null && last.getYear() == today.getYear() && last.getMonth() == today.getMonth();
+    }
+
+    private static BigDecimal orZero(@Nullable BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
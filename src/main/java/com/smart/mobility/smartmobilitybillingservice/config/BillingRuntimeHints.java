@@ -0,0 +1,63 @@
+package com.smart.mobility.smartmobilitybillingservice.config;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.*;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceSnapshot;
+import com.smart.mobility.smartmobilitybillingservice.model.LedgerEntry;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRun;
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.model.TransactionReasonConverter;
+import com.smart.mobility.smartmobilitybillingservice.model.TripShard;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.LedgerEntryRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationRangeRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and proxy hints for AOT/native builds ({@code -Pfast-startup},
+ * {@code -Pnative}) covering what Spring cannot discover on its own:
+ * <ul>
+ * <li>AMQP payload records, (de)serialized by Jackson outside any
+ * {@code @RequestBody}/{@code @ResponseBody} signature.</li>
+ * <li>Lombok-generated accessors of the entities, also serialized as JSON by
+ * the transaction endpoints.</li>
+ * <li>Interface projections of JPA queries, backed by JDK proxies.</li>
+ * </ul>
+ */
+public class BillingRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                TripPricedEvent.class, PaymentEvent.class, AccountCreditedEvent.class,
+                AccountResponse.class, DailySpentResponse.class,
+                CreateAccountRequest.class, TopUpRequest.class, ChargeRequest.class,
+                Transaction.class);
+
+        for (Class<?> entity : new Class<?>[] { Account.class, Transaction.class, LedgerEntry.class,
+                BalanceSnapshot.class, ReconciliationRun.class, ReconciliationMismatch.class, TripShard.class }) {
+            hints.reflection().registerType(entity,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS,
+                    MemberCategory.ACCESS_DECLARED_FIELDS);
+        }
+
+        hints.reflection().registerType(TransactionReasonConverter.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+        for (Class<?> projection : new Class<?>[] { LedgerEntryRepository.LedgerTail.class,
+                TransactionRepository.AccountNet.class, BalanceShardRepository.ShardTotal.class,
+                BalanceShardRepository.ShardSpend.class,
+                ReconciliationRangeRepository.RunTotals.class }) {
+            hints.proxies().registerJdkProxy(AopProxyUtils.completeJdkProxyInterfaces(projection));
+        }
+    }
+}
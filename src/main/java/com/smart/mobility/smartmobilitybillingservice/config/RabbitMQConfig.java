@@ -1,5 +1,8 @@
 package com.smart.mobility.smartmobilitybillingservice.config;
 
+import com.smart.mobility.smartmobilitybillingservice.enums.TripLane;
+import com.smart.mobility.smartmobilitybillingservice.messaging.JacksonCborMessageConverter;
+import com.smart.mobility.smartmobilitybillingservice.messaging.NegotiatingMessageConverter;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
@@ -7,8 +10,13 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.JacksonJavaTypeMapper;
 import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.Arrays;
 
 @Configuration
 public class RabbitMQConfig {
@@ -21,6 +29,9 @@ public class RabbitMQConfig {
     // ─── Queues ──────────────────────────────────────────────────────────────
     public static final String TRIP_PRICED_QUEUE = "trip-priced-queue";
     public static final String TRIP_PRICED_DLQ = "trip-priced-queue.dlq";
+    public static final String TRIP_PRICED_LIVE_QUEUE = "trip-priced-queue.live";
+    public static final String TRIP_PRICED_BACKLOG_QUEUE = "trip-priced-queue.backlog";
+    public static final String TRIP_PRICED_PENALTY_QUEUE = "trip-priced-queue.penalty";
 
     // ─── Routing keys ────────────────────────────────────────────────────────
     public static final String ROUTING_TRIP_PRICED = "trip.priced";
@@ -74,28 +85,135 @@ public class RabbitMQConfig {
                 .with(ROUTING_TRIP_PRICED);
     }
 
-    // ─── JSON Message Converter ───────────────────────────────────────────────
+    // ─── Payment outcomes of every replica (long-poll wake-ups) ───────────────
+    /**
+     * This replica's own copy of the PAYMENT_COMPLETED/FAILED events of all
+     * replicas: exclusive and auto-deleted with the connection.
+     */
     @Bean
-    public MessageConverter jsonMessageConverter() {
+    public AnonymousQueue paymentOutcomesQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Declarables paymentOutcomesBindings() {
+        return new Declarables(
+                BindingBuilder.bind(paymentOutcomesQueue()).to(paymentExchange()).with(ROUTING_PAYMENT_COMPLETED),
+                BindingBuilder.bind(paymentOutcomesQueue()).to(paymentExchange()).with(ROUTING_PAYMENT_FAILED));
+    }
+
+    // ─── Priority lanes (billing.lanes.enabled) ──────────────────────────────
+    /**
+     * One queue per {@link TripLane}, fed by the intake listener of
+     * {@link #TRIP_PRICED_QUEUE} through the default exchange. Same dead
+     * lettering as the main queue.
+     */
+    @Bean
+    @ConditionalOnBooleanProperty("billing.lanes.enabled")
+    public Declarables tripLaneQueues() {
+        return new Declarables(Arrays.stream(TripLane.values())
+                .map(lane -> QueueBuilder.durable(lane.getQueue())
+                        .withArgument("x-dead-letter-exchange", PAYMENT_EXCHANGE)
+                        .withArgument("x-dead-letter-routing-key", ROUTING_DLQ)
+                        .build())
+                .toList());
+    }
+
+    // ─── Message Converters (content-type negotiated) ─────────────────────────
+    /**
+     * Encoding used for outgoing events: {@code application/json} (default) or
+     * {@code application/cbor}. Incoming messages are always decoded according
+     * to their own content type.
+     */
+    @Value("${billing.messaging.outbound-content-type:" + MessageProperties.CONTENT_TYPE_JSON + "}")
+    private String outboundContentType;
+
+    @Bean
+    public JacksonJsonMessageConverter jsonMessageConverter() {
         JacksonJsonMessageConverter converter = new JacksonJsonMessageConverter();
         // Ignore __TypeId__ header, infer type from method signature logic
         converter.setTypePrecedence(JacksonJavaTypeMapper.TypePrecedence.INFERRED);
         return converter;
     }
 
+    @Bean
+    public JacksonCborMessageConverter cborMessageConverter() {
+        return new JacksonCborMessageConverter();
+    }
+
+    @Bean
+    @Primary
+    public MessageConverter messageConverter() {
+        MessageConverter outbound = JacksonCborMessageConverter.CONTENT_TYPE_CBOR.equals(outboundContentType)
+                ? cborMessageConverter()
+                : jsonMessageConverter();
+        NegotiatingMessageConverter converter = new NegotiatingMessageConverter(jsonMessageConverter(), outbound);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, jsonMessageConverter());
+        converter.addDelegate(JacksonCborMessageConverter.CONTENT_TYPE_CBOR, cborMessageConverter());
+        return converter;
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
-        template.setMessageConverter(jsonMessageConverter());
+        template.setMessageConverter(messageConverter());
+        // Unroutable events come back as returns instead of being silently dropped
+        template.setMandatory(true);
         return template;
     }
 
+    /** Events per batch delivered to the catch-up listener. */
+    @Value("${billing.catch-up.batch-size:500}")
+    private int catchUpBatchSize;
+
+    /**
+     * Batch listeners for catch-up mode: a batch is handed over once
+     * {@code billing.catch-up.batch-size} messages are in, or after a second
+     * without new ones, and acked as a whole.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory catchUpListenerContainerFactory(
+            ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(catchUpBatchSize);
+        factory.setPrefetchCount(catchUpBatchSize);
+        factory.setReceiveTimeout(1000L);
+        return factory;
+    }
+
+    /** Intake messages handed to the lanes per round of publisher confirms. */
+    @Value("${billing.lanes.triage-batch-size:100}")
+    private int triageBatchSize;
+
+    /**
+     * Batch listener triaging {@code trip-priced-queue} into the lanes: a
+     * batch is handed over once {@code billing.lanes.triage-batch-size}
+     * messages are in, or after 100 ms without new ones, and acked as a whole.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory triageListenerContainerFactory(
+            ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(triageBatchSize);
+        factory.setPrefetchCount(triageBatchSize);
+        factory.setReceiveTimeout(100L);
+        return factory;
+    }
+
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
             ConnectionFactory connectionFactory) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setMessageConverter(jsonMessageConverter());
+        factory.setMessageConverter(messageConverter());
         return factory;
     }
 }
@@ -5,6 +5,10 @@ import com.smart.mobility.smartmobilitybillingservice.dto.ChargeRequest;
 import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
 import com.smart.mobility.smartmobilitybillingservice.dto.TopUpRequest;
 import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.ChargeResult;
+import com.smart.mobility.smartmobilitybillingservice.service.IdempotencyService;
+import com.smart.mobility.smartmobilitybillingservice.service.IdempotencyService.IdempotentResult;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardedBy;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,13 +16,20 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
 @RestController
 @RequestMapping("/accounts")
 @RequiredArgsConstructor
 @Slf4j
 public class AccountController {
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final BillingService billingService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * POST /accounts
@@ -41,26 +52,53 @@ public class AccountController {
         return ResponseEntity.ok(billingService.getAccountByUserId(userId));
     }
 
+    /**
+     * POST /accounts/{userId}/topup
+     * Optional {@code Idempotency-Key} header: retries with the same key replay the first response.
+     * Routed here, not in the service: the idempotency record shares the top-up's transaction.
+     */
     @PostMapping("/{userId}/topup")
+    @ShardedBy("#userId")
     public ResponseEntity<AccountResponse> topUp(
             @PathVariable String userId,
-            @RequestBody TopUpRequest request) {
+            @RequestBody TopUpRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("REST: Top-up {} for userId={}", request.amount(), userId);
-        AccountResponse response = billingService.topUp(userId, request.amount(), request.description());
-        return ResponseEntity.ok(response);
+        IdempotentResult<AccountResponse> result = idempotencyService.execute(idempotencyKey, userId,
+                IdempotencyService.fingerprint("topup", userId, request.amount(), request.description()),
+                AccountResponse.class,
+                () -> billingService.topUp(userId, request.amount(), request.description()));
+        return toResponse(result);
     }
 
     /**
      * POST /accounts/{userId}/charge
      * Synchronous charge (debit) of the user's account for purchases (passes/subscriptions).
+     * Optional {@code Idempotency-Key} header: retries with the same key replay the first response.
+     * A refused charge is recorded as FAILED with or without a key, and leaves the key unused.
      */
     @PostMapping("/{userId}/charge")
+    @ShardedBy("#userId")
     public ResponseEntity<AccountResponse> charge(
             @PathVariable String userId,
-            @RequestBody ChargeRequest request) {
+            @RequestBody ChargeRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("REST: Charge {} for userId={}", request.amount(), userId);
-        AccountResponse response = billingService.charge(userId, request.amount(), request.description());
-        return ResponseEntity.ok(response);
+        AtomicReference<ChargeResult> charged = new AtomicReference<>();
+        IdempotentResult<AccountResponse> result = idempotencyService.execute(idempotencyKey, userId,
+                IdempotencyService.fingerprint("charge", userId, request.amount(), request.description()),
+                AccountResponse.class,
+                () -> {
+                    ChargeResult charge = billingService.charge(userId, request.amount(), request.description());
+                    charged.set(charge);
+                    return charge.account();
+                },
+                Objects::nonNull);
+        if (charged.get() != null) {
+            // Thrown once the FAILED transaction of a refusal has committed
+            charged.get().orElseThrow();
+        }
+        return toResponse(result);
     }
 
     /**
@@ -73,4 +111,10 @@ public class AccountController {
         log.info("REST: Get transactions for userId={}", userId);
         return ResponseEntity.ok(billingService.getTransactionsByUserId(userId));
     }
+
+    private ResponseEntity<AccountResponse> toResponse(IdempotentResult<AccountResponse> result) {
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.body());
+    }
 }
@@ -1,21 +1,47 @@
 package com.smart.mobility.smartmobilitybillingservice.controller;
 
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
 import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentResponse;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRun;
 import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.DailySpentLookup;
+import com.smart.mobility.smartmobilitybillingservice.service.LedgerService;
+import com.smart.mobility.smartmobilitybillingservice.service.ReconciliationService;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardMigrationService;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardMigrationService.MigrationReport;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/internal/accounts")
 public class InterneAccountController {
 
     private final BillingService billingService;
+    private final DailySpentLookup dailySpentLookup;
+    private final LedgerService ledgerService;
+    private final ReconciliationService reconciliationService;
+    private final ShardRouter shardRouter;
+    private final ShardMigrationService shardMigrationService;
 
     /**
      * GET /internal/accounts/daily-spent/{userId}
@@ -24,4 +50,99 @@ public class InterneAccountController {
     public ResponseEntity<DailySpentResponse> getDailySpent(@PathVariable String userId) {
         return ResponseEntity.ok(billingService.getDailySpent(userId));
     }
+
+    /**
+     * POST /internal/accounts/daily-spent:batch
+     * Daily spent and remaining cap of many users in one call; unknown users are
+     * listed in {@code missingUserIds} instead of failing the whole batch.
+     * With sharding, one lookup per shard holding some of the users.
+     */
+    @PostMapping("/daily-spent:batch")
+    public ResponseEntity<DailySpentBatchResponse> getDailySpentBatch(@RequestBody DailySpentBatchRequest request) {
+        return ResponseEntity.ok(dailySpentLookup.lookup(request.userIds()));
+    }
+
+    /**
+     * POST /internal/accounts/ledger/rebuild
+     * Recomputes all balances from ledger snapshots and refreshes the account rows.
+     */
+    @PostMapping("/ledger/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildLedger() {
+        return ResponseEntity.ok(Map.of("rebuiltAccounts", ledgerService.rebuildAll()));
+    }
+
+    /**
+     * PUT /internal/accounts/{userId}/balance-shards/{count}
+     * Splits a hot fleet/corporate account across {count} sub-balances (1 to undo).
+     */
+    @PutMapping("/{userId}/balance-shards/{count}")
+    public ResponseEntity<AccountResponse> reshardBalance(@PathVariable String userId, @PathVariable int count) {
+        return ResponseEntity.ok(billingService.reshardBalance(userId, count));
+    }
+
+    /**
+     * PUT /internal/accounts/{userId}/cap-tier/{tier}
+     * Assigns the spending-cap tier of an account (student, senior, fleet, ...).
+     */
+    @PutMapping("/{userId}/cap-tier/{tier}")
+    public ResponseEntity<AccountResponse> setCapTier(@PathVariable String userId, @PathVariable String tier) {
+        return ResponseEntity.ok(billingService.setCapTier(userId, tier));
+    }
+
+    /**
+     * DELETE /internal/accounts/{userId}/cap-tier
+     * Puts the account back on the default tier.
+     */
+    @DeleteMapping("/{userId}/cap-tier")
+    public ResponseEntity<AccountResponse> clearCapTier(@PathVariable String userId) {
+        return ResponseEntity.ok(billingService.setCapTier(userId, null));
+    }
+
+    /**
+     * POST /internal/accounts/reconciliation
+     * Starts (or resumes) the balance reconciliation in the background; 409 if one is running,
+     * here or on another replica (which then holds the reconciliation lease).
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<Map<String, Boolean>> startReconciliation() {
+        boolean started = reconciliationService.reconcileAsync();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(Map.of("started", started));
+    }
+
+    /**
+     * GET /internal/accounts/reconciliation?shard=
+     * Progress and totals of the latest reconciliation run (of the first shard if none is given).
+     */
+    @GetMapping("/reconciliation")
+    public ResponseEntity<ReconciliationRun> getLatestReconciliation(@RequestParam(required = false) String shard) {
+        return ResponseEntity.of(onShard(shard, reconciliationService::latestRun));
+    }
+
+    /**
+     * GET /internal/accounts/reconciliation/{runId}/mismatches?limit=100&shard=
+     */
+    @GetMapping("/reconciliation/{runId}/mismatches")
+    public ResponseEntity<List<ReconciliationMismatch>> getReconciliationMismatches(@PathVariable Long runId,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String shard) {
+        return ResponseEntity.ok(onShard(shard,
+                () -> reconciliationService.mismatches(runId, Math.min(limit, 1000))));
+    }
+
+    /**
+     * POST /internal/accounts/shards/migrate
+     * After a shard map change, moves every account to the shard its userId now hashes to.
+     */
+    @PostMapping("/shards/migrate")
+    public ResponseEntity<MigrationReport> migrateShards() {
+        return ResponseEntity.ok(shardMigrationService.migrate());
+    }
+
+    private <T> T onShard(String shard, Supplier<T> work) {
+        if (shard != null && !shardRouter.shardIds().contains(shard)) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return shardRouter.onShard(shard != null ? shard : shardRouter.defaultShard(), work);
+    }
 }
@@ -1,14 +1,17 @@
 package com.smart.mobility.smartmobilitybillingservice.controller;
 
 import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
-import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import com.smart.mobility.smartmobilitybillingservice.service.PaymentStatusNotifier;
+import com.smart.mobility.smartmobilitybillingservice.sharding.TripShardIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Optional;
 
@@ -18,15 +21,35 @@ import java.util.Optional;
 @Slf4j
 public class PaymentController {
 
-    private final TransactionRepository transactionRepository;
+    private final TripShardIndex tripShardIndex;
+    private final PaymentStatusNotifier paymentStatusNotifier;
 
+    /**
+     * GET /api/payments/{tripId}
+     * Carries an ETag; a poll with a matching {@code If-None-Match} gets an empty 304.
+     */
     @GetMapping("/{tripId}")
     public ResponseEntity<Transaction> getPaymentStatusByTripId(@PathVariable String tripId) {
         log.info("REST: Get payment status for tripId={}", tripId);
-        Optional<Transaction> transaction = transactionRepository.findByTripId(tripId);
+        Optional<Transaction> transaction = tripShardIndex.findTransaction(tripId);
 
         return transaction
-                .map(ResponseEntity::ok)
+                .map(tx -> ResponseEntity.ok().eTag(PaymentStatusNotifier.etag(tx)).body(tx))
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    /**
+     * GET /api/payments/{tripId}/await?timeoutMs=
+     * Long-poll: answers with the payment as soon as it is recorded, 204 if
+     * still pending when the timeout expires (at most
+     * {@code billing.payments.await-max-timeout-ms}, at least 1 ms), whichever
+     * replica bills the trip.
+     */
+    @GetMapping("/{tripId}/await")
+    public DeferredResult<ResponseEntity<Transaction>> awaitPaymentStatus(
+            @PathVariable String tripId,
+            @RequestParam(defaultValue = "30000") long timeoutMs) {
+        log.debug("REST: Await payment status for tripId={}", tripId);
+        return paymentStatusNotifier.await(tripId, timeoutMs);
+    }
 }
@@ -0,0 +1,7 @@
+package com.smart.mobility.smartmobilitybillingservice.dto;
+
+import java.util.List;
+
+public record DailySpentBatchRequest(
+        List<String> userIds) {
+}
@@ -0,0 +1,12 @@
+package com.smart.mobility.smartmobilitybillingservice.dto;
+
+import java.util.List;
+
+/**
+ * Daily spent of every requested user that has an account, in request order;
+ * requested userIds without an account are listed in {@code missingUserIds}.
+ */
+public record DailySpentBatchResponse(
+        List<DailySpentEntry> accounts,
+        List<String> missingUserIds) {
+}
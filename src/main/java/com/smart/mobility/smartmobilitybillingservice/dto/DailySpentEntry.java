@@ -0,0 +1,9 @@
+package com.smart.mobility.smartmobilitybillingservice.dto;
+
+import java.math.BigDecimal;
+
+public record DailySpentEntry(
+        String userId,
+        BigDecimal dailySpent,
+        BigDecimal remainingCap) {
+}
@@ -0,0 +1,21 @@
+package com.smart.mobility.smartmobilitybillingservice.enums;
+
+/**
+ * Spending windows a cap can apply to. Weeks are ISO weeks (Monday to
+ * Sunday), months are calendar months, both in the server time zone like the
+ * midnight daily reset.
+ */
+public enum CapPeriod {
+    DAILY,
+    WEEKLY,
+    MONTHLY;
+
+    /** Text of a debit refused because this period's cap is reached. */
+    public String capReachedMessage() {
+        return switch (this) {
+            case DAILY -> "Daily spending cap has been reached. No further transactions allowed today.";
+            case WEEKLY -> "Weekly spending cap has been reached. No further transactions allowed this week.";
+            case MONTHLY -> "Monthly spending cap has been reached. No further transactions allowed this month.";
+        };
+    }
+}
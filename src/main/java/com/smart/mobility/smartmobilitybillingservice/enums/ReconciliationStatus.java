@@ -0,0 +1,12 @@
+package com.smart.mobility.smartmobilitybillingservice.enums;
+
+public enum ReconciliationStatus {
+    /** Ranges are being processed. */
+    RUNNING,
+    /** Stopped at the end of its time window or on shutdown; the next run resumes it. */
+    PAUSED,
+    /** Every range reconciled. */
+    COMPLETED,
+    /** Aborted by an error; the next run resumes it. */
+    FAILED
+}
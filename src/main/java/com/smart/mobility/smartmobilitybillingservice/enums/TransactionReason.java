@@ -0,0 +1,63 @@
+package com.smart.mobility.smartmobilitybillingservice.enums;
+
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Why a transaction was recorded. Stored as a stable numeric {@link #code}
+ * (never the ordinal), so constants may be reordered or added freely; the
+ * human-readable description is rendered from it at read time, unless the row
+ * keeps its own text.
+ */
+public enum TransactionReason {
+    OTHER(0),
+    TRIP_PAYMENT(1),
+    TOP_UP(2),
+    PURCHASE(3),
+    ACCOUNT_NOT_FOUND(4),
+    INSUFFICIENT_BALANCE(5),
+    DAILY_CAP_EXCEEDED(6),
+    WEEKLY_CAP_EXCEEDED(7),
+    MONTHLY_CAP_EXCEEDED(8);
+
+    private final short code;
+
+    TransactionReason(int code) {
+        this.code = (short) code;
+    }
+
+    public short getCode() {
+        return code;
+    }
+
+    public static TransactionReason fromCode(short code) {
+        return Arrays.stream(values())
+                .filter(r -> r.code == code)
+                .findFirst()
+                .orElse(OTHER);
+    }
+
+    /**
+     * Description shown to users, as previously stored in the {@code description}
+     * column; amounts always use a dot, whatever the JVM locale. Refusals for a
+     * missing account or an insufficient balance keep their stored text, which
+     * names the userId and the available balance; the texts below are only the
+     * fallback for rows without it.
+     */
+    public String render(Transaction tx) {
+        return switch (this) {
+            case TRIP_PAYMENT -> "Trip payment for tripId: " + tx.getTripId()
+                    + (tx.isPenalty() ? " (PENALTY)" : "");
+            case TOP_UP -> "Account top-up";
+            case PURCHASE -> "Purchase charge";
+            case ACCOUNT_NOT_FOUND -> "Account not found";
+            case INSUFFICIENT_BALANCE -> String.format(Locale.ROOT, "Insufficient balance: required %.2f", tx.getAmount());
+            case DAILY_CAP_EXCEEDED -> CapPeriod.DAILY.capReachedMessage();
+            case WEEKLY_CAP_EXCEEDED -> CapPeriod.WEEKLY.capReachedMessage();
+            case MONTHLY_CAP_EXCEEDED -> CapPeriod.MONTHLY.capReachedMessage();
+            case OTHER -> null;
+        };
+    }
+}
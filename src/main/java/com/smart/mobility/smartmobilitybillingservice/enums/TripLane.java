@@ -0,0 +1,34 @@
+package com.smart.mobility.smartmobilitybillingservice.enums;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+
+import java.util.Locale;
+
+/**
+ * Consumer lanes of TRIP_PRICED events when {@code billing.lanes.enabled=true}.
+ * Each lane is its own queue with its own consumers, so a busy lane slows the
+ * others down but never starves them.
+ */
+public enum TripLane {
+    /** Trips that just ended: billed first, with the most consumers. */
+    LIVE(RabbitMQConfig.TRIP_PRICED_LIVE_QUEUE),
+    /** Events older than {@code billing.lanes.backlog-age}, e.g. queued during an outage. */
+    BACKLOG(RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE),
+    /** Penalty charges, unless {@code billing.lanes.penalty-lane} sends them elsewhere. */
+    PENALTY(RabbitMQConfig.TRIP_PRICED_PENALTY_QUEUE);
+
+    private final String queue;
+
+    TripLane(String queue) {
+        this.queue = queue;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    /** Value of the {@code lane} metric tag. */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
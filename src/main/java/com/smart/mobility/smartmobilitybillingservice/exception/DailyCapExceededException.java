@@ -1,16 +1,33 @@
 package com.smart.mobility.smartmobilitybillingservice.exception;
 
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * A spending cap has been reached. Mostly the daily cap; {@link #getPeriod()}
+ * tells when a weekly or monthly tier cap was the limit.
+ */
 @ResponseStatus(HttpStatus.FORBIDDEN)
 public class DailyCapExceededException extends RuntimeException {
 
+    private final CapPeriod period;
+
     public DailyCapExceededException() {
-        super("Daily spending cap has been reached. No further transactions allowed today.");
+        this(CapPeriod.DAILY);
+    }
+
+    public DailyCapExceededException(CapPeriod period) {
+        super(period.capReachedMessage());
+        this.period = period;
     }
 
     public DailyCapExceededException(String message) {
         super(message);
+        this.period = CapPeriod.DAILY;
+    }
+
+    public CapPeriod getPeriod() {
+        return period;
     }
 }
@@ -28,10 +28,16 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(DailyCapExceededException.class)
     public ResponseEntity<Map<String, Object>> handleDailyCap(DailyCapExceededException ex) {
-        log.warn("Daily cap exceeded: {}", ex.getMessage());
+        log.warn("{} cap exceeded: {}", ex.getPeriod(), ex.getMessage());
         return buildResponse(HttpStatus.FORBIDDEN, ex.getMessage());
     }
 
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+        log.warn("Idempotency key reused: {}", ex.getMessage());
+        return buildResponse(HttpStatus.UNPROCESSABLE_CONTENT, ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGeneral(Exception ex) {
         log.error("Unexpected error", ex);
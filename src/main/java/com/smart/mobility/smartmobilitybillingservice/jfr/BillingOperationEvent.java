@@ -0,0 +1,114 @@
+package com.smart.mobility.smartmobilitybillingservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One billing operation ({@code processDebit}, {@code charge}, {@code topUp},
+ * {@code resetDailySpent}) with the time spent in each of its stages.
+ * <p>
+ * When the event is not enabled in the running recording every method is a
+ * no-op and no clock is read; an operation already under way when a
+ * recording starts is not recorded. Stage durations exclude the commit, which
+ * happens after the service method returns.
+ */
+@Name("billing.Operation")
+@Label("Billing Operation")
+@Category("Billing")
+@Description("Billing hot-path operation with per-stage durations")
+@StackTrace(false)
+public class BillingOperationEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Trip ID Hash")
+    @Description("hashCode() of the tripId, 0 when the operation is not tied to a trip")
+    private int tripIdHash;
+
+    @Label("Outcome")
+    private String outcome;
+
+    @Label("Lookup")
+    @Description("Idempotence check, account lookup and balance read")
+    @Timespan(Timespan.NANOSECONDS)
+    private long lookupTime;
+
+    @Label("Apply")
+    @Description("Balance update: row, slot or ledger append")
+    @Timespan(Timespan.NANOSECONDS)
+    private long applyTime;
+
+    @Label("Record")
+    @Description("Transaction row insert")
+    @Timespan(Timespan.NANOSECONDS)
+    private long recordTime;
+
+    @Label("Publish")
+    @Description("Hand-off of the outgoing event to the publisher")
+    @Timespan(Timespan.NANOSECONDS)
+    private long publishTime;
+
+    @Label("Retries")
+    @Description("Earlier deliveries of the message: x-death count, at least 1 when redelivered")
+    private int retries;
+
+    /** Whether the event was enabled at {@link #start}: only then are stages timed and committed. */
+    private transient boolean started;
+    private transient long lap;
+
+    public static BillingOperationEvent start(String operation, String tripId) {
+        return start(operation, tripId, 0);
+    }
+
+    public static BillingOperationEvent start(String operation, String tripId, int retries) {
+        BillingOperationEvent event = new BillingOperationEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.tripIdHash = tripId != null ? tripId.hashCode() : 0;
+            event.retries = retries;
+            event.begin();
+            event.lap = System.nanoTime();
+            event.started = true;
+        }
+        return event;
+    }
+
+    public void lookedUp() {
+        lookupTime += lap();
+    }
+
+    public void applied() {
+        applyTime += lap();
+    }
+
+    public void recorded() {
+        recordTime += lap();
+    }
+
+    public void published() {
+        publishTime += lap();
+    }
+
+    public void finish(String outcome) {
+        if (started) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    private long lap() {
+        if (!started) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long elapsed = now - lap;
+        lap = now;
+        return elapsed;
+    }
+}
@@ -0,0 +1,56 @@
+package com.smart.mobility.smartmobilitybillingservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One outgoing AMQP message, from the send to the broker's publisher confirm
+ * (the event is committed on the thread that receives the confirm).
+ */
+@Name("billing.Publish")
+@Label("Event Publish")
+@Category("Billing")
+@Description("Outgoing payment/account event, send to publisher confirm")
+@StackTrace(false)
+public class EventPublishEvent extends Event {
+
+    @Label("Exchange")
+    private String exchange;
+
+    @Label("Routing Key")
+    private String routingKey;
+
+    @Label("Attempt")
+    @Description("0 for the first send, then one per retry")
+    private int attempt;
+
+    @Label("Blocking")
+    @Description("Sent on the caller thread because the buffer was full or the publisher stopped")
+    private boolean blocking;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public static EventPublishEvent start(String exchange, String routingKey, int attempt, boolean blocking) {
+        EventPublishEvent event = new EventPublishEvent();
+        if (event.isEnabled()) {
+            event.exchange = exchange;
+            event.routingKey = routingKey;
+            event.attempt = attempt;
+            event.blocking = blocking;
+            event.begin();
+        }
+        return event;
+    }
+
+    public void finish(String outcome) {
+        if (isEnabled()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
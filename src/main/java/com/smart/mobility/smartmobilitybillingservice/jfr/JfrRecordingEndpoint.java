@@ -0,0 +1,156 @@
+package com.smart.mobility.smartmobilitybillingservice.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/jfr}: one on-demand flight recording at a time, bounded
+ * in size, age and duration so it can be left running in production.
+ * <ul>
+ * <li>{@code GET /actuator/jfr}: state of the current recording</li>
+ * <li>{@code POST /actuator/jfr} {@code {"settings":"profile","maxSizeMb":64,"durationSeconds":300}}:
+ * starts a new recording (all parameters optional, capped by configuration)</li>
+ * <li>{@code DELETE /actuator/jfr}: stops it, the data stays downloadable</li>
+ * <li>{@code GET /actuator/jfr/recording}: downloads the data recorded so far</li>
+ * </ul>
+ * Besides the JVM's own GC, lock, socket and thread-park events, the recording
+ * carries {@link BillingOperationEvent} and {@link EventPublishEvent}.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@Slf4j
+public class JfrRecordingEndpoint {
+
+    @Value("${billing.jfr.max-size-mb:256}")
+    private long maxSizeMb;
+
+    @Value("${billing.jfr.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${billing.jfr.max-duration-minutes:60}")
+    private long maxDurationMinutes;
+
+    private Recording recording;
+    private Path dumpFile;
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("name", recording.getName());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("maxSizeBytes", recording.getMaxSize());
+        status.put("maxAge", recording.getMaxAge());
+        status.put("duration", recording.getDuration());
+        status.put("sizeBytes", recording.getSize());
+        return status;
+    }
+
+    /**
+     * Starts a new recording, discarding the previous one.
+     *
+     * @param settings        JFR configuration, {@code default} (about 1% overhead) or {@code profile}
+     * @param maxSizeMb       size of the in-memory/on-disk ring, capped by {@code billing.jfr.max-size-mb}
+     * @param durationSeconds auto-stop delay, capped by {@code billing.jfr.max-duration-minutes}
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable String settings, @Nullable Long maxSizeMb,
+            @Nullable Long durationSeconds) {
+        close();
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings != null ? settings : "profile");
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings: " + settings, e);
+        }
+        long sizeMb = Math.min(maxSizeMb != null ? maxSizeMb : this.maxSizeMb, this.maxSizeMb);
+        Duration duration = Duration.ofMinutes(maxDurationMinutes);
+        if (durationSeconds != null && Duration.ofSeconds(durationSeconds).compareTo(duration) < 0) {
+            duration = Duration.ofSeconds(durationSeconds);
+        }
+
+        recording = new Recording(configuration);
+        recording.setName("billing-on-demand");
+        recording.setToDisk(true);
+        recording.setMaxSize(sizeMb * 1024 * 1024);
+        recording.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+        recording.setDuration(duration);
+        recording.start();
+        log.info("JFR recording started: settings={}, maxSize={}MB, duration={}",
+                configuration.getName(), sizeMb, duration);
+        return status();
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+            log.info("JFR recording stopped, {} bytes", recording.getSize());
+        }
+        return status();
+    }
+
+    /** Dumps what has been recorded so far; works while running and after stop. */
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> recording(@Selector String name) {
+        if (!"recording".equals(name)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        if (recording == null || recording.getState() == RecordingState.NEW) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        try {
+            // A single dump file per instance: disk use stays bounded by one recording
+            if (dumpFile == null) {
+                dumpFile = Files.createTempFile("billing-", ".jfr");
+            }
+            recording.dump(dumpFile);
+            return new WebEndpointResponse<>(new FileSystemResource(dumpFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    synchronized void destroy() throws IOException {
+        close();
+        if (dumpFile != null) {
+            Files.deleteIfExists(dumpFile);
+        }
+    }
+
+    private void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
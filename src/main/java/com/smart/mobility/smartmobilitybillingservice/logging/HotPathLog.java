@@ -0,0 +1,186 @@
+package com.smart.mobility.smartmobilitybillingservice.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging of the TRIP_PRICED hot path ({@code billing.logging.hot-path.enabled=true}).
+ * <p>
+ * Each event is billed inside a {@link Scope} that puts {@value #TRIP_ID} and
+ * {@value #USER_ID} in the MDC, so every line written while it is billed
+ * carries them as fields (see {@code logging.structured.format.console}).
+ * The routine lines of a billed event (receipt, processing, PAYMENT_COMPLETED,
+ * success) are only written for one event in
+ * {@code billing.logging.hot-path.success-log-every}: the decision is taken
+ * once per scope, so a sampled event keeps its whole trail and the others
+ * skip the formatting of their amounts altogether. Warnings and errors
+ * (duplicates, refusals, PAYMENT_FAILED) are always written. With the mode
+ * off every line is written, as before.
+ * <p>
+ * {@code billing.logging.async.enabled} (on with the hot-path mode) moves
+ * appender I/O off the listener threads: each appender of the root logger is
+ * wrapped in a bounded {@link AsyncAppender} of
+ * {@code billing.logging.async.queue-size} events. Once the queue is 80% full
+ * info and debug lines are dropped; warnings and errors wait for room
+ * instead, so failures are never lost. The wrappers stay until the logging
+ * system shuts down, which drains their queues.
+ */
+@Component
+@Slf4j
+public class HotPathLog {
+
+    public static final String TRIP_ID = "tripId";
+    public static final String USER_ID = "userId";
+
+    /** Name prefix of the async appenders wrapping the root appenders. */
+    public static final String ASYNC_APPENDER_PREFIX = "ASYNC-";
+
+    private static final ThreadLocal<@Nullable Scope> CURRENT = new ThreadLocal<>();
+
+    @Value("${billing.logging.hot-path.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.logging.hot-path.success-log-every:100}")
+    private long successLogEvery;
+
+    @Value("${billing.logging.async.enabled:${billing.logging.hot-path.enabled:false}}")
+    private boolean asyncEnabled;
+
+    @Value("${billing.logging.async.queue-size:8192}")
+    private int asyncQueueSize;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @PostConstruct
+    void installAsyncAppenders() {
+        if (!asyncEnabled || !(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+            return;
+        }
+        List<AsyncAppender> wrapped = wrapAppenders(context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME),
+                asyncQueueSize);
+        log.info("Asynchronous logging on: {} appender(s), queue of {} events", wrapped.size(), asyncQueueSize);
+    }
+
+    /**
+     * Opens the logging scope of one event on the calling thread. Opening it
+     * again for the same trip (the intake listener handing over to
+     * {@code bill}) reuses the outer scope and its sampling decision.
+     */
+    public Scope open(String tripId, String userId) {
+        Scope outer = CURRENT.get();
+        if (outer != null && Objects.equals(outer.tripId, tripId)) {
+            return Scope.NESTED;
+        }
+        Scope scope = new Scope(outer, tripId, userId, sample());
+        MDC.put(TRIP_ID, tripId);
+        MDC.put(USER_ID, userId);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Whether the routine lines of the current event are written: always with
+     * the mode off, otherwise the decision of the open scope (or a fresh one
+     * outside a scope).
+     */
+    public boolean sampled() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope.sampled : sample();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSuccessLogEvery() {
+        return successLogEvery;
+    }
+
+    /**
+     * Wraps every appender of {@code logger} in its own started
+     * {@link AsyncAppender} (it takes a single appender) of {@code queueSize}
+     * events that never drops warnings or errors. Appenders that are already
+     * asynchronous are left alone.
+     */
+    public static List<AsyncAppender> wrapAppenders(Logger logger, int queueSize) {
+        List<Appender<ILoggingEvent>> appenders = new ArrayList<>();
+        logger.iteratorForAppenders().forEachRemaining(appenders::add);
+        List<AsyncAppender> wrappers = new ArrayList<>(appenders.size());
+        for (Appender<ILoggingEvent> appender : appenders) {
+            if (appender instanceof AsyncAppender) {
+                continue;
+            }
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(logger.getLoggerContext());
+            async.setName(ASYNC_APPENDER_PREFIX + appender.getName());
+            async.setQueueSize(queueSize);
+            async.setNeverBlock(false);
+            async.addAppender(appender);
+            async.start();
+            logger.addAppender(async);
+            logger.detachAppender(appender);
+            wrappers.add(async);
+        }
+        return wrappers;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private boolean sample() {
+        return !enabled || successLogEvery <= 1 || sequence.getAndIncrement() % successLogEvery == 0;
+    }
+
+    /**
+     * MDC fields and sampling decision of the event being billed; closing it
+     * restores the enclosing scope, if any.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private static final Scope NESTED = new Scope(null, null, null, true);
+
+        private final @Nullable Scope outer;
+        private final @Nullable String tripId;
+        private final @Nullable String userId;
+        private final boolean sampled;
+
+        private Scope(@Nullable Scope outer, @Nullable String tripId, @Nullable String userId, boolean sampled) {
+            this.outer = outer;
+            this.tripId = tripId;
+            this.userId = userId;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void close() {
+            if (this == NESTED) {
+                return;
+            }
+            if (outer != null) {
+                MDC.put(TRIP_ID, outer.tripId);
+                MDC.put(USER_ID, outer.userId);
+                CURRENT.set(outer);
+            } else {
+                MDC.remove(TRIP_ID);
+                MDC.remove(USER_ID);
+                CURRENT.remove();
+            }
+        }
+    }
+}
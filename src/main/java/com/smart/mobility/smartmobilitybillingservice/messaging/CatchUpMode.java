@@ -0,0 +1,211 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Automatic catch-up mode for draining a TRIP_PRICED backlog after an outage
+ * ({@code billing.catch-up.enabled=true}).
+ * <p>
+ * Every {@code billing.catch-up.check-ms} the depth of the drained queue
+ * ({@code trip-priced-queue}, or its backlog lane when
+ * {@code billing.lanes.enabled=true}) and the oldest event age seen since the
+ * previous check are compared with the thresholds. Crossing
+ * {@code enter-depth} or {@code enter-age} swaps the per-event listener for
+ * the batch listener ({@link TripPricedConsumer#onTripPricedBatch}), which
+ * bills whole batches with per-account coalesced updates and samples its
+ * logs; once both fall under {@code exit-depth} and {@code exit-age} the
+ * per-event listener takes over again. The gap between the two thresholds
+ * keeps the mode from flapping.
+ * <p>
+ * Metrics: {@code billing.catch-up.active} (1 in catch-up mode),
+ * {@code billing.catch-up.transitions} (tagged {@code mode}),
+ * {@code billing.catch-up.depth}, {@code billing.catch-up.drained} (events
+ * billed in batches) and {@code billing.catch-up.drain-rate} (events/s over
+ * the last check interval).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatchUpMode {
+
+    /** Queue drained by the batch listener, as a {@code @RabbitListener(queues = ...)} expression. */
+    public static final String DRAINED_QUEUE = "#{'${billing.lanes.enabled:false}' == 'true' ? '"
+            + RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE + "' : '" + RabbitMQConfig.TRIP_PRICED_QUEUE + "'}";
+
+    private final AmqpAdmin amqpAdmin;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.catch-up.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.lanes.enabled:false}")
+    private boolean lanesEnabled;
+
+    @Value("${billing.catch-up.enter-depth:50000}")
+    private long enterDepth;
+
+    @Value("${billing.catch-up.enter-age:PT5M}")
+    private Duration enterAge;
+
+    @Value("${billing.catch-up.exit-depth:1000}")
+    private long exitDepth;
+
+    @Value("${billing.catch-up.exit-age:PT30S}")
+    private Duration exitAge;
+
+    @Value("${billing.catch-up.log-every:1000}")
+    private long logEvery;
+
+    private volatile boolean active;
+    private volatile double drainRate;
+    private final AtomicLong oldestAgeMs = new AtomicLong();
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong drainedTotal = new AtomicLong();
+    private final AtomicLong logSequence = new AtomicLong();
+    private long lastDrained;
+    private long lastCheckNanos = System.nanoTime();
+
+    private Counter drained;
+    private Counter enteredCatchUp;
+    private Counter returnedToNormal;
+    private Counter deadLettered;
+
+    @PostConstruct
+    void registerMeters() {
+        drained = meterRegistry.counter("billing.catch-up.drained");
+        enteredCatchUp = meterRegistry.counter("billing.catch-up.transitions", "mode", "catch-up");
+        returnedToNormal = meterRegistry.counter("billing.catch-up.transitions", "mode", "normal");
+        deadLettered = meterRegistry.counter("billing.catch-up.dead-lettered");
+        Gauge.builder("billing.catch-up.active", this, m -> m.active ? 1 : 0).register(meterRegistry);
+        Gauge.builder("billing.catch-up.depth", depth, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("billing.catch-up.drain-rate", this, m -> m.drainRate).register(meterRegistry);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /** Notes the age of a consumed event (its AMQP timestamp) for the next check. */
+    public void observe(@Nullable Date timestamp) {
+        if (enabled && timestamp != null) {
+            long age = System.currentTimeMillis() - timestamp.getTime();
+            oldestAgeMs.accumulateAndGet(age, Math::max);
+        }
+    }
+
+    /** Counts events billed by the batch listener. */
+    public void drained(int events) {
+        drained.increment(events);
+        drainedTotal.addAndGet(events);
+    }
+
+    /** Counts events of a failed batch that could not be billed on their own either. */
+    public void deadLettered() {
+        deadLettered.increment();
+    }
+
+    /** {@code true} for one event in {@code billing.catch-up.log-every}. */
+    public boolean sampleLog() {
+        return logSequence.getAndIncrement() % logEvery == 0;
+    }
+
+    public long getLogEvery() {
+        return logEvery;
+    }
+
+    /**
+     * Decides the mode for a queue of {@code ready} messages whose oldest
+     * consumed event was {@code ageMs} old: enter above either enter
+     * threshold, leave only when both are under the exit thresholds.
+     */
+    public boolean shouldCatchUp(long ready, long ageMs) {
+        if (!active) {
+            return ready >= enterDepth || ageMs >= enterAge.toMillis();
+        }
+        return ready > exitDepth || ageMs >= exitAge.toMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${billing.catch-up.check-ms:5000}")
+    public synchronized void check() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long total = drainedTotal.get();
+        drainRate = (total - lastDrained) / ((now - lastCheckNanos) / 1e9);
+        lastDrained = total;
+        lastCheckNanos = now;
+
+        long ageMs = oldestAgeMs.getAndSet(0);
+        Long ready = queueDepth();
+        if (ready == null) {
+            // Broker unreachable: keep the current mode
+            return;
+        }
+        depth.set(ready);
+        boolean catchUp = shouldCatchUp(ready, ageMs);
+        if (catchUp && !active) {
+            log.warn("Entering catch-up mode: {} events queued, oldest {} ms old", ready, ageMs);
+            switchTo(TripPricedConsumer.CATCH_UP_LISTENER, normalListener());
+            active = true;
+            enteredCatchUp.increment();
+        } else if (!catchUp && active) {
+            log.info("Leaving catch-up mode: {} events queued, drained at {} events/s", ready,
+                    String.format("%.0f", drainRate));
+            switchTo(normalListener(), TripPricedConsumer.CATCH_UP_LISTENER);
+            active = false;
+            returnedToNormal.increment();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private String normalListener() {
+        return lanesEnabled ? TripPricedConsumer.BACKLOG_LISTENER : TripPricedConsumer.INTAKE_LISTENER;
+    }
+
+    /** Starts the new consumer before stopping the old one so the queue is never left unattended. */
+    private void switchTo(String startId, String stopId) {
+        MessageListenerContainer start = listenerRegistry.getListenerContainer(startId);
+        MessageListenerContainer stop = listenerRegistry.getListenerContainer(stopId);
+        if (start != null) {
+            start.start();
+        }
+        if (stop != null) {
+            stop.stop();
+        }
+    }
+
+    private @Nullable Long queueDepth() {
+        String queue = lanesEnabled ? RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE : RabbitMQConfig.TRIP_PRICED_QUEUE;
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queue);
+            return info != null ? (long) info.getMessageCount() : null;
+        } catch (AmqpException e) {
+            log.debug("Could not read depth of {}: {}", queue, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJacksonMessageConverter;
+import org.springframework.amqp.support.converter.JacksonJavaTypeMapper;
+import org.springframework.util.MimeType;
+import tools.jackson.databind.cfg.DateTimeFeature;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Binary (CBOR, RFC 8949) counterpart of the JSON message converter.
+ * <p>
+ * Timestamps are written as numeric arrays and {@code BigDecimal} amounts as
+ * native CBOR decimal fractions, so a payload is roughly half the size of its
+ * JSON form and needs no text parsing on the way in.
+ */
+public class JacksonCborMessageConverter extends AbstractJacksonMessageConverter {
+
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    public JacksonCborMessageConverter() {
+        this(CBORMapper.builder()
+                .enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+    }
+
+    public JacksonCborMessageConverter(CBORMapper cborMapper) {
+        super(cborMapper, MimeType.valueOf(CONTENT_TYPE_CBOR), "*");
+        // Same policy as the JSON converter: infer type from the listener signature
+        setTypePrecedence(JacksonJavaTypeMapper.TypePrecedence.INFERRED);
+    }
+
+    /**
+     * CBOR is binary: ignore any {@code content_encoding} so the base class
+     * reads the raw bytes instead of decoding them as a character string.
+     */
+    @Override
+    protected Object convertContent(Message message, Object conversionHint,
+            MessageProperties properties, String encoding) throws IOException {
+        return super.convertContent(message, conversionHint, properties, null);
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties, Type genericType) {
+        Message message = super.createMessage(object, messageProperties, genericType);
+        message.getMessageProperties().setContentEncoding(null);
+        return message;
+    }
+}
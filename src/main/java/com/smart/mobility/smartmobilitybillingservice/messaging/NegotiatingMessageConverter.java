@@ -0,0 +1,46 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * Picks the converter from the {@code content_type} header of each message.
+ * <ul>
+ * <li>Inbound: the header selects the delegate; messages without a known
+ * content type fall back to JSON so producers that have not migrated keep
+ * working.</li>
+ * <li>Outbound: {@code RabbitTemplate} does not set a content type before
+ * conversion, so messages are written with the configured outbound
+ * encoding unless the caller asked for a registered one explicitly.</li>
+ * </ul>
+ */
+public class NegotiatingMessageConverter extends ContentTypeDelegatingMessageConverter {
+
+    private final MessageConverter outboundConverter;
+
+    public NegotiatingMessageConverter(MessageConverter inboundDefault, MessageConverter outboundConverter) {
+        super(inboundDefault);
+        this.outboundConverter = outboundConverter;
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        if (properties.getContentType() == null) {
+            // Legacy producers may omit the header entirely: treat the body as JSON
+            properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        }
+        return super.fromMessage(message);
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        String contentType = messageProperties.getContentType();
+        if (contentType != null && getDelegates().containsKey(contentType)) {
+            return super.toMessage(object, messageProperties);
+        }
+        return outboundConverter.toMessage(object, messageProperties);
+    }
+}
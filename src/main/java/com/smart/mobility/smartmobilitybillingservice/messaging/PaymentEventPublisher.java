@@ -3,29 +3,137 @@ package com.smart.mobility.smartmobilitybillingservice.messaging;
 import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
 import com.smart.mobility.smartmobilitybillingservice.dto.AccountCreditedEvent;
 import com.smart.mobility.smartmobilitybillingservice.dto.PaymentEvent;
+import com.smart.mobility.smartmobilitybillingservice.jfr.EventPublishEvent;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Publishes payment and account events through a bounded in-memory buffer.
+ * <p>
+ * Callers only enqueue; a dedicated sender thread drains the buffer in
+ * batches, groups messages by exchange and routing key and sends each group
+ * on a single channel. Every message carries {@link CorrelationData} so the
+ * broker's publisher confirm (and, for unroutable messages, the return) is
+ * tracked per message. Nacks are retried with exponential backoff.
+ * <p>
+ * When the buffer is full the caller falls back to a blocking send that
+ * waits for the confirm, so back-pressure reaches the debit path instead of
+ * events being dropped.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentEventPublisher {
 
         private final RabbitTemplate rabbitTemplate;
+        private final MeterRegistry meterRegistry;
+        private final HotPathLog hotPathLog;
+
+        @Value("${billing.publisher.buffer-capacity:10000}")
+        private int bufferCapacity;
+
+        @Value("${billing.publisher.batch-size:200}")
+        private int batchSize;
+
+        @Value("${billing.publisher.max-retries:5}")
+        private int maxRetries;
+
+        @Value("${billing.publisher.retry-backoff-ms:200}")
+        private long retryBackoffMs;
+
+        @Value("${billing.publisher.confirm-timeout-ms:5000}")
+        private long confirmTimeoutMs;
+
+        private BlockingQueue<OutboundMessage> buffer;
+        private ScheduledExecutorService retryScheduler;
+        private Thread sender;
+        private volatile boolean running;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private Counter confirmed;
+        private Counter nacked;
+        private Counter returned;
+        private Counter retried;
+        private Counter blockingFallbacks;
+        private Counter confirmTimeouts;
+
+        @PostConstruct
+        void start() {
+                buffer = new ArrayBlockingQueue<>(bufferCapacity);
+                confirmed = meterRegistry.counter("billing.publisher.confirmed");
+                nacked = meterRegistry.counter("billing.publisher.nacked");
+                returned = meterRegistry.counter("billing.publisher.returned");
+                retried = meterRegistry.counter("billing.publisher.retried");
+                blockingFallbacks = meterRegistry.counter("billing.publisher.blocking-fallbacks");
+                confirmTimeouts = meterRegistry.counter("billing.publisher.confirm-timeouts");
+                Gauge.builder("billing.publisher.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+                Gauge.builder("billing.publisher.buffered", buffer, BlockingQueue::size).register(meterRegistry);
+
+                retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "payment-publisher-retry");
+                        t.setDaemon(true);
+                        return t;
+                });
+                running = true;
+                sender = new Thread(this::drainLoop, "payment-publisher");
+                sender.setDaemon(true);
+                sender.start();
+        }
+
+        /**
+         * Stops accepting background work and flushes whatever is still
+         * buffered on the calling thread before the connection factory closes.
+         */
+        @PreDestroy
+        void stop() throws InterruptedException {
+                running = false;
+                sender.interrupt();
+                sender.join(confirmTimeoutMs);
+                retryScheduler.shutdownNow();
+                List<OutboundMessage> remaining = new ArrayList<>();
+                buffer.drainTo(remaining);
+                remaining.forEach(this::sendBlocking);
+        }
 
         public void publishPaymentCompleted(String tripId, String userId, BigDecimal amount, boolean penalty) {
                 PaymentEvent event = new PaymentEvent(
                                 tripId, userId, amount, "COMPLETED", null, LocalDateTime.now(), penalty);
-                log.info("Publishing PAYMENT_COMPLETED for tripId={}, penalty={}", tripId, penalty);
-                rabbitTemplate.convertAndSend(
+                if (hotPathLog.sampled()) {
+                        log.info("Publishing PAYMENT_COMPLETED for tripId={}, penalty={}", tripId, penalty);
+                }
+                enqueue(new OutboundMessage(
                                 RabbitMQConfig.PAYMENT_EXCHANGE,
                                 RabbitMQConfig.ROUTING_PAYMENT_COMPLETED,
-                                event);
+                                event, 0));
         }
 
         public void publishPaymentFailed(String tripId, String userId, BigDecimal amount, String reason,
@@ -33,18 +141,180 @@ public class PaymentEventPublisher {
                 PaymentEvent event = new PaymentEvent(
                                 tripId, userId, amount, "FAILED", reason, LocalDateTime.now(), penalty);
                 log.warn("Publishing PAYMENT_FAILED for tripId={}, reason={}, penalty={}", tripId, reason, penalty);
-                rabbitTemplate.convertAndSend(
+                enqueue(new OutboundMessage(
                                 RabbitMQConfig.PAYMENT_EXCHANGE,
                                 RabbitMQConfig.ROUTING_PAYMENT_FAILED,
-                                event);
+                                event, 0));
         }
 
         public void publishAccountCredited(String userId, BigDecimal amount) {
                 AccountCreditedEvent event = new AccountCreditedEvent(userId, amount, LocalDateTime.now());
                 log.info("Publishing ACCOUNT_CREDITED for userId={}, amount={}", userId, amount);
-                rabbitTemplate.convertAndSend(
+                enqueue(new OutboundMessage(
                                 RabbitMQConfig.ACCOUNT_EXCHANGE,
                                 RabbitMQConfig.ROUTING_ACCOUNT_CREDITED,
-                                event);
+                                event, 0));
+        }
+
+        /** Number of messages sent but not yet confirmed by the broker. */
+        public int getInFlight() {
+                return inFlight.get();
+        }
+
+        // ─────────────────────────────────────────────────────────────
+        // Pipeline
+        // ─────────────────────────────────────────────────────────────
+
+        private void enqueue(OutboundMessage message) {
+                if (!running || !buffer.offer(message)) {
+                        blockingFallbacks.increment();
+                        sendBlocking(message);
+                }
+        }
+
+        private void drainLoop() {
+                List<OutboundMessage> batch = new ArrayList<>(batchSize);
+                Set<OutboundMessage> handedOver = Collections.newSetFromMap(new IdentityHashMap<>());
+                while (running) {
+                        try {
+                                OutboundMessage first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                                if (first == null) {
+                                        continue;
+                                }
+                                batch.add(first);
+                                buffer.drainTo(batch, batchSize - 1);
+                                sendBatch(batch, handedOver);
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                        } catch (RuntimeException e) {
+                                // Broker unavailable: retry what it did not take, keep the loop alive.
+                                // Messages already handed over are tracked by their confirm.
+                                List<OutboundMessage> unsent = batch.stream()
+                                                .filter(message -> !handedOver.contains(message))
+                                                .toList();
+                                log.error("Failed to publish {} of a batch of {} events",
+                                                unsent.size(), batch.size(), e);
+                                unsent.forEach(this::retryLater);
+                        } finally {
+                                batch.clear();
+                                handedOver.clear();
+                        }
+                }
+        }
+
+        /**
+         * Sends one batch, one channel checkout per exchange/routing-key group,
+         * adding every message the broker accepted to {@code handedOver}.
+         */
+        private void sendBatch(List<OutboundMessage> batch, Set<OutboundMessage> handedOver) {
+                Map<String, List<OutboundMessage>> groups = new LinkedHashMap<>();
+                for (OutboundMessage message : batch) {
+                        groups.computeIfAbsent(message.exchange() + '/' + message.routingKey(),
+                                        k -> new ArrayList<>()).add(message);
+                }
+                for (List<OutboundMessage> group : groups.values()) {
+                        rabbitTemplate.invoke(operations -> {
+                                for (OutboundMessage message : group) {
+                                        send(operations, message, false);
+                                        handedOver.add(message);
+                                }
+                                return null;
+                        });
+                }
+        }
+
+        /**
+         * Sends on the calling thread and waits for the confirm. A confirm that
+         * does not arrive within {@code confirm-timeout-ms} fails the send, which
+         * then goes through the nack path and is retried.
+         */
+        private void sendBlocking(OutboundMessage message) {
+                CorrelationData correlation = send(rabbitTemplate, message, true);
+                if (rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+                        try {
+                                correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+                        } catch (TimeoutException e) {
+                                confirmTimeouts.increment();
+                                correlation.getFuture().completeExceptionally(new TimeoutException(
+                                                "No publisher confirm within " + confirmTimeoutMs + " ms"));
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        } catch (Exception e) {
+                                log.error("Publisher confirm failed for {} -> {}",
+                                                message.exchange(), message.routingKey(), e);
+                        }
+                }
+        }
+
+        /**
+         * Hands one message to the broker and tracks its confirm. Only a message
+         * the broker accepted counts as in flight: a send that throws leaves no
+         * state behind.
+         */
+        private CorrelationData send(RabbitOperations operations, OutboundMessage message, boolean blocking) {
+                CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+                EventPublishEvent jfr = EventPublishEvent.start(message.exchange(), message.routingKey(),
+                                message.attempt(), blocking);
+                try {
+                        operations.convertAndSend(message.exchange(), message.routingKey(), message.payload(),
+                                        correlation);
+                } catch (RuntimeException e) {
+                        jfr.finish("FAILED");
+                        throw e;
+                }
+                if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+                        // Confirms disabled: nothing will ever complete the future
+                        confirmed.increment();
+                        jfr.finish("UNCONFIRMED");
+                        return correlation;
+                }
+                inFlight.incrementAndGet();
+                correlation.getFuture().whenComplete((confirm, error) -> {
+                        inFlight.decrementAndGet();
+                        if (error == null && confirm.ack()) {
+                                if (correlation.getReturned() != null) {
+                                        jfr.finish("RETURNED");
+                                        returned.increment();
+                                        log.error("Event returned as unroutable: {} -> {} ({})",
+                                                        message.exchange(), message.routingKey(),
+                                                        correlation.getReturned().getReplyText());
+                                } else {
+                                        jfr.finish("ACK");
+                                        confirmed.increment();
+                                }
+                        } else {
+                                jfr.finish("NACK");
+                                nacked.increment();
+                                log.warn("Broker nack for {} -> {}: {}", message.exchange(), message.routingKey(),
+                                                error != null ? error.getMessage() : confirm.reason());
+                                retryLater(message);
+                        }
+                });
+                return correlation;
+        }
+
+        private void retryLater(OutboundMessage message) {
+                if (message.attempt() >= maxRetries) {
+                        log.error("Giving up on event {} -> {} after {} attempts: {}",
+                                        message.exchange(), message.routingKey(), message.attempt() + 1,
+                                        message.payload());
+                        return;
+                }
+                retried.increment();
+                long delay = retryBackoffMs << message.attempt();
+                OutboundMessage next = message.nextAttempt();
+                if (retryScheduler.isShutdown()) {
+                        sendBlocking(next);
+                        return;
+                }
+                retryScheduler.schedule(() -> enqueue(next), delay, TimeUnit.MILLISECONDS);
+        }
+
+        private record OutboundMessage(String exchange, String routingKey, Object payload, int attempt) {
+
+                OutboundMessage nextAttempt() {
+                        return new OutboundMessage(exchange, routingKey, payload, attempt + 1);
+                }
         }
 }
@@ -0,0 +1,24 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.PaymentEvent;
+import com.smart.mobility.smartmobilitybillingservice.service.PaymentStatusNotifier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Receives the payment events published by every replica on this replica's
+ * anonymous queue, so that long-poll requests parked here are answered as
+ * soon as any replica has billed their trip.
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentOutcomeListener {
+
+    private final PaymentStatusNotifier paymentStatusNotifier;
+
+    @RabbitListener(queues = "#{paymentOutcomesQueue.name}")
+    public void onPaymentOutcome(PaymentEvent event) {
+        paymentStatusNotifier.onPaymentPublished(event.tripId());
+    }
+}
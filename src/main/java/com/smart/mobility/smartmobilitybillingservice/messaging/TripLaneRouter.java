@@ -0,0 +1,208 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TripLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Triage of TRIP_PRICED events into {@link TripLane}s
+ * ({@code billing.lanes.enabled=true}).
+ * <p>
+ * The triage listener of {@code trip-priced-queue} takes a batch of intake
+ * messages and classifies each event by age (the AMQP {@code timestamp} set by
+ * the producer, or the triage time when absent) and penalty flag. It then
+ * republishes the batch to the lane queues, live events first, without waiting
+ * between publishes, and awaits the publisher confirms once for the whole
+ * batch. Only then is the batch acked, so a failed hand-off is redelivered
+ * rather than lost. A fresh trip queued behind an outage backlog thus reaches
+ * its lane after one round trip per batch instead of one per aged event.
+ * Duplicates after a redelivery are absorbed by the tripId check of the debit
+ * path.
+ * <p>
+ * Metrics, tagged with {@code lane}: {@code billing.lanes.routed} (events
+ * handed to the lane), {@code billing.lanes.lag} (time from the original
+ * publish to the start of billing) and {@code billing.lanes.depth} (ready
+ * messages, polled every {@code billing.lanes.depth-poll-ms}).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripLaneRouter {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.lanes.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.lanes.backlog-age:PT2M}")
+    private Duration backlogAge;
+
+    @Value("${billing.lanes.penalty-lane:PENALTY}")
+    private TripLane penaltyLane;
+
+    @Value("${billing.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    /** An intake message: the event and its AMQP timestamp, if the producer set one. */
+    public record Intake(TripPricedEvent event, @Nullable Date timestamp) {
+    }
+
+    /** An event on its way to its lane, until the broker confirms it. */
+    private record HandOff(TripPricedEvent event, TripLane lane, Date sentAt, CorrelationData correlation) {
+    }
+
+    private final Map<TripLane, Counter> routed = new EnumMap<>(TripLane.class);
+    private final Map<TripLane, Timer> lag = new EnumMap<>(TripLane.class);
+    private final Map<TripLane, AtomicLong> depth = new EnumMap<>(TripLane.class);
+
+    @PostConstruct
+    void registerMeters() {
+        for (TripLane lane : TripLane.values()) {
+            routed.put(lane, meterRegistry.counter("billing.lanes.routed", "lane", lane.tag()));
+            lag.put(lane, Timer.builder("billing.lanes.lag")
+                    .tag("lane", lane.tag())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            AtomicLong ready = new AtomicLong();
+            depth.put(lane, ready);
+            Gauge.builder("billing.lanes.depth", ready, AtomicLong::get)
+                    .tag("lane", lane.tag())
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Lane of an event published at {@code sentAt}, as seen at {@code now}. */
+    public TripLane classify(TripPricedEvent event, Instant sentAt, Instant now) {
+        if (event.penalty()) {
+            return penaltyLane;
+        }
+        return Duration.between(sentAt, now).compareTo(backlogAge) >= 0 ? TripLane.BACKLOG : TripLane.LIVE;
+    }
+
+    /** Hands a single event to its lane; see {@link #routeAll}. */
+    public TripLane route(TripPricedEvent event, @Nullable Date timestamp) {
+        return routeAll(List.of(new Intake(event, timestamp))).get(0);
+    }
+
+    /**
+     * Hands a batch of intake events to their lanes and returns, lane per
+     * event, once the broker has taken all of them. Live events are published
+     * first; confirms are awaited after the last publish, within one
+     * {@code billing.publisher.confirm-timeout-ms} for the batch. Throws when
+     * the broker nacks, returns or does not confirm an event in time, so the
+     * whole batch is redelivered.
+     */
+    public List<TripLane> routeAll(List<Intake> batch) {
+        Instant now = Instant.now();
+        List<HandOff> handOffs = new ArrayList<>(batch.size());
+        for (Intake intake : batch) {
+            // Keep the original publish time so that lag and later triage see the real age
+            Date sentAt = intake.timestamp() != null ? intake.timestamp() : Date.from(now);
+            handOffs.add(new HandOff(intake.event(), classify(intake.event(), sentAt.toInstant(), now), sentAt,
+                    new CorrelationData(UUID.randomUUID().toString())));
+        }
+
+        List<HandOff> liveFirst = new ArrayList<>(handOffs);
+        liveFirst.sort(Comparator.comparing(handOff -> handOff.lane() != TripLane.LIVE));
+        for (HandOff handOff : liveFirst) {
+            rabbitTemplate.convertAndSend("", handOff.lane().getQueue(), handOff.event(), message -> {
+                message.getMessageProperties().setTimestamp(handOff.sentAt());
+                return message;
+            }, handOff.correlation());
+        }
+        if (rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+            liveFirst.forEach(handOff -> awaitConfirm(handOff, deadline));
+        }
+        for (HandOff handOff : handOffs) {
+            routed.get(handOff.lane()).increment();
+            log.debug("Routed tripId={} to lane {}", handOff.event().tripId(), handOff.lane());
+        }
+        return handOffs.stream().map(HandOff::lane).toList();
+    }
+
+    /** Records how long the event waited before its lane started billing it. */
+    public void recordLag(TripLane lane, @Nullable Date timestamp) {
+        if (timestamp != null) {
+            lag.get(lane).record(Math.max(0, System.currentTimeMillis() - timestamp.getTime()),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${billing.lanes.depth-poll-ms:5000}")
+    public void pollDepth() {
+        if (!enabled) {
+            return;
+        }
+        for (TripLane lane : TripLane.values()) {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(lane.getQueue());
+                depth.get(lane).set(info != null ? info.getMessageCount() : 0);
+            } catch (AmqpException e) {
+                log.debug("Could not read depth of {}: {}", lane.getQueue(), e.getMessage());
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void awaitConfirm(HandOff handOff, long deadline) {
+        TripPricedEvent event = handOff.event();
+        TripLane lane = handOff.lane();
+        CorrelationData correlation = handOff.correlation();
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while routing tripId=" + event.tripId(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("No confirm routing tripId=" + event.tripId() + " to " + lane, e);
+        }
+        if (!confirm.ack()) {
+            throw new IllegalStateException("Broker nacked tripId=" + event.tripId() + " for " + lane
+                    + ": " + confirm.reason());
+        }
+        if (correlation.getReturned() != null) {
+            throw new IllegalStateException("Lane queue " + lane.getQueue() + " is not declared: "
+                    + correlation.getReturned().getReplyText());
+        }
+    }
+}
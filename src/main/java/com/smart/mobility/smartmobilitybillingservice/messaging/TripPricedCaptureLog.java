@@ -0,0 +1,225 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Capture mode for TRIP_PRICED traffic ({@code billing.capture.enabled=true}):
+ * every consumed event is appended, with its arrival time, to a memory-mapped
+ * segment file so that a real rush hour can be replayed later (see the
+ * {@code TripPricedReplay} tool in the test sources).
+ * <p>
+ * Segment layout: an int magic, then records of
+ * {@code [int length][long arrival epoch micros][short+utf8 tripId][short+utf8 userId]
+ * [int scale][int+bytes unscaled amount][byte penalty]}; a zero length ends
+ * the segment. Segments of the earlier layout (byte scale and length) are
+ * skipped on read. A full segment is forced to disk and a new one is mapped; only
+ * the newest {@code billing.capture.max-segments} are kept. Appending is a
+ * few buffer puts under a lock, and a capture failure never fails the debit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripPricedCaptureLog {
+
+    static final int MAGIC = 0x54504332; // "TPC2": scale and unscaled length as ints
+    static final String SEGMENT_PREFIX = "trip-priced-";
+    static final String SEGMENT_SUFFIX = ".cap";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.capture.enabled:false}")
+    private boolean enabled;
+
+    @Value("${billing.capture.directory:capture}")
+    private Path directory;
+
+    @Value("${billing.capture.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${billing.capture.max-segments:16}")
+    private int maxSegments;
+
+    /** A captured event and the time it reached the consumer. */
+    public record CapturedTripPriced(long arrivalEpochMicros, TripPricedEvent event) {
+    }
+
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int sequence;
+    private Counter captured;
+    private Counter dropped;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        captured = meterRegistry.counter("billing.capture.records");
+        dropped = meterRegistry.counter("billing.capture.dropped");
+        Files.createDirectories(directory);
+        segments.addAll(listSegments(directory));
+        rotate();
+        log.info("Capturing TRIP_PRICED events to {} ({} segments of {})", directory, maxSegments, segmentSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void append(TripPricedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            byte[] tripId = utf8(event.tripId());
+            byte[] userId = utf8(event.userId());
+            byte[] unscaled = event.finalAmount().unscaledValue().toByteArray();
+            int length = Long.BYTES + Short.BYTES + tripId.length + Short.BYTES + userId.length
+                    + Integer.BYTES + Integer.BYTES + unscaled.length + 1;
+            if (Integer.BYTES * 3L + length > segmentSize.toBytes()) {
+                throw new IllegalArgumentException("record of " + length + " bytes exceeds the segment size");
+            }
+            long arrival = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+
+            synchronized (this) {
+                if (channel == null) {
+                    throw new IllegalStateException("capture log closed");
+                }
+                // Keep room for the zero length that terminates the segment
+                if (buffer.remaining() < Integer.BYTES + length + Integer.BYTES) {
+                    rotate();
+                }
+                buffer.putInt(length)
+                        .putLong(arrival)
+                        .putShort((short) tripId.length).put(tripId)
+                        .putShort((short) userId.length).put(userId)
+                        .putInt(event.finalAmount().scale())
+                        .putInt(unscaled.length).put(unscaled)
+                        .put((byte) (event.penalty() ? 1 : 0));
+            }
+            captured.increment();
+        } catch (RuntimeException | IOException e) {
+            dropped.increment();
+            log.warn("Could not capture TRIP_PRICED event tripId={}: {}", event.tripId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Reading (replay)
+    // ─────────────────────────────────────────────────────────────
+
+    /** Every event captured in {@code directory}, oldest segment first. */
+    public static List<CapturedTripPriced> readAll(Path directory) throws IOException {
+        List<CapturedTripPriced> events = new ArrayList<>();
+        for (Path segment : listSegments(directory)) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                if (data.remaining() < Integer.BYTES || data.getInt() != MAGIC) {
+                    log.warn("Skipping {}: not a capture segment", segment);
+                    continue;
+                }
+                while (data.remaining() >= Integer.BYTES) {
+                    int length = data.getInt();
+                    if (length <= 0 || length > data.remaining()) {
+                        break;
+                    }
+                    events.add(readRecord(data));
+                }
+            }
+        }
+        return events;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private static CapturedTripPriced readRecord(ByteBuffer data) {
+        long arrival = data.getLong();
+        String tripId = readUtf8(data);
+        String userId = readUtf8(data);
+        int scale = data.getInt();
+        byte[] unscaled = new byte[data.getInt()];
+        data.get(unscaled);
+        boolean penalty = data.get() != 0;
+        return new CapturedTripPriced(arrival,
+                new TripPricedEvent(tripId, userId, new BigDecimal(new BigInteger(unscaled), scale), penalty));
+    }
+
+    private void rotate() throws IOException {
+        close();
+        Path segment = directory.resolve(String.format("%s%d-%04d%s",
+                SEGMENT_PREFIX, System.currentTimeMillis(), sequence++ % 10000, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize.toBytes());
+        buffer.putInt(MAGIC);
+        segments.addLast(segment);
+        while (segments.size() > maxSegments) {
+            Files.deleteIfExists(segments.removeFirst());
+        }
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("identifier too long to capture");
+        }
+        return bytes;
+    }
+
+    private static String readUtf8(ByteBuffer data) {
+        byte[] bytes = new byte[data.getShort()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
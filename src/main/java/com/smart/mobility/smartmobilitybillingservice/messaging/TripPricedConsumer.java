@@ -2,28 +2,263 @@ package com.smart.mobility.smartmobilitybillingservice.messaging;
 
 import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
 import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TripLane;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
 import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitBatchResult;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitOutcome;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
+import com.smart.mobility.smartmobilitybillingservice.sharding.TripShardIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class TripPricedConsumer {
 
+    /** Listener container ids, switched by {@link CatchUpMode}. */
+    public static final String INTAKE_LISTENER = "trip-priced";
+    public static final String TRIAGE_LISTENER = "trip-priced-triage";
+    public static final String BACKLOG_LISTENER = "trip-priced-backlog";
+    public static final String CATCH_UP_LISTENER = "trip-priced-catch-up";
+
+    /** Dead-letter history the broker adds to a message each time it is dead-lettered. */
+    private static final String X_DEATH = "x-death";
+
     private final BillingService billingService;
+    private final TripPricedCaptureLog captureLog;
+    private final TripShardIndex tripShardIndex;
+    private final TripLaneRouter laneRouter;
+    private final CatchUpMode catchUpMode;
+    private final ShardRouter shardRouter;
+    private final HotPathLog hotPathLog;
+    private final RabbitTemplate rabbitTemplate;
 
     /**
      * Listens to the trip-priced-queue and delegates processing to BillingService.
      * On failure, messages will be sent to the DLQ after exhausting retries
      * (configured in properties).
+     * <p>
+     * With {@code billing.lanes.enabled=true} this listener does not start:
+     * {@link #onTripPricedTriage} hands the queue to the {@link TripLane}s.
+     * <p>
+     * The event is handled inside its {@link HotPathLog} scope: tripId and
+     * userId in the MDC, routine lines sampled.
+     */
+    @RabbitListener(id = INTAKE_LISTENER, queues = RabbitMQConfig.TRIP_PRICED_QUEUE,
+            autoStartup = "#{'${billing.lanes.enabled:false}' != 'true'}")
+    public void onTripPriced(TripPricedEvent event,
+            @Header(name = AmqpHeaders.TIMESTAMP, required = false) @Nullable Date timestamp,
+            @Header(name = AmqpHeaders.REDELIVERED, required = false) @Nullable Boolean redelivered,
+            @Header(name = X_DEATH, required = false) @Nullable List<Map<String, ?>> xDeath) {
+        try (HotPathLog.Scope scope = hotPathLog.open(event.tripId(), event.userId())) {
+            if (hotPathLog.sampled()) {
+                log.info("Received TRIP_PRICED event: tripId={}, userId={}, amount={}",
+                        event.tripId(), event.userId(), event.finalAmount());
+            }
+            captureLog.append(event);
+            catchUpMode.observe(timestamp);
+            bill(event, redeliveries(redelivered, xDeath));
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Priority lanes: every lane keeps its own consumers, so backlog
+    // and penalties progress at their own pace behind live trips
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Moves a batch of {@code trip-priced-queue} to the lanes in one round of
+     * publisher confirms, live events first, and acks it once all are
+     * confirmed; a failed hand-off sends the whole batch back.
+     */
+    @RabbitListener(id = TRIAGE_LISTENER, queues = RabbitMQConfig.TRIP_PRICED_QUEUE,
+            containerFactory = "triageListenerContainerFactory",
+            autoStartup = "${billing.lanes.enabled:false}")
+    public void onTripPricedTriage(List<Message<TripPricedEvent>> messages) {
+        List<TripLaneRouter.Intake> batch = new ArrayList<>(messages.size());
+        for (Message<TripPricedEvent> message : messages) {
+            TripPricedEvent event = message.getPayload();
+            Date timestamp = message.getHeaders().get(AmqpHeaders.TIMESTAMP, Date.class);
+            captureLog.append(event);
+            catchUpMode.observe(timestamp);
+            batch.add(new TripLaneRouter.Intake(event, timestamp));
+        }
+        laneRouter.routeAll(batch);
+        log.debug("Triaged {} TRIP_PRICED events", messages.size());
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.TRIP_PRICED_LIVE_QUEUE,
+            concurrency = "${billing.lanes.live.concurrency:4}",
+            autoStartup = "${billing.lanes.enabled:false}")
+    public void onLiveTrip(TripPricedEvent event,
+            @Header(name = AmqpHeaders.TIMESTAMP, required = false) @Nullable Date timestamp,
+            @Header(name = AmqpHeaders.REDELIVERED, required = false) @Nullable Boolean redelivered,
+            @Header(name = X_DEATH, required = false) @Nullable List<Map<String, ?>> xDeath) {
+        laneRouter.recordLag(TripLane.LIVE, timestamp);
+        bill(event, redeliveries(redelivered, xDeath));
+    }
+
+    @RabbitListener(id = BACKLOG_LISTENER, queues = RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE,
+            concurrency = "${billing.lanes.backlog.concurrency:1}",
+            autoStartup = "${billing.lanes.enabled:false}")
+    public void onBacklogTrip(TripPricedEvent event,
+            @Header(name = AmqpHeaders.TIMESTAMP, required = false) @Nullable Date timestamp,
+            @Header(name = AmqpHeaders.REDELIVERED, required = false) @Nullable Boolean redelivered,
+            @Header(name = X_DEATH, required = false) @Nullable List<Map<String, ?>> xDeath) {
+        laneRouter.recordLag(TripLane.BACKLOG, timestamp);
+        catchUpMode.observe(timestamp);
+        bill(event, redeliveries(redelivered, xDeath));
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.TRIP_PRICED_PENALTY_QUEUE,
+            concurrency = "${billing.lanes.penalty.concurrency:1}",
+            autoStartup = "${billing.lanes.enabled:false}")
+    public void onPenaltyTrip(TripPricedEvent event,
+            @Header(name = AmqpHeaders.TIMESTAMP, required = false) @Nullable Date timestamp,
+            @Header(name = AmqpHeaders.REDELIVERED, required = false) @Nullable Boolean redelivered,
+            @Header(name = X_DEATH, required = false) @Nullable List<Map<String, ?>> xDeath) {
+        laneRouter.recordLag(TripLane.PENALTY, timestamp);
+        bill(event, redeliveries(redelivered, xDeath));
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Catch-up mode: started and stopped by CatchUpMode
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Bills a whole batch of the drained queue: one transaction per shard,
+     * debits coalesced per account, one log line per
+     * {@code billing.catch-up.log-every} events. The batch is acked together.
+     * <p>
+     * When the transaction of a shard fails, its events are billed again one
+     * by one, so that one bad event (or a conflict of the whole transaction)
+     * does not send the batch back forever: an event that still fails is
+     * published to {@link RabbitMQConfig#TRIP_PRICED_DLQ} and the others are
+     * billed. Only an unavailable database fails the batch, which is then
+     * redelivered and its already billed trips skipped as duplicates.
+     */
+    @RabbitListener(id = CATCH_UP_LISTENER, queues = CatchUpMode.DRAINED_QUEUE,
+            containerFactory = "catchUpListenerContainerFactory",
+            concurrency = "${billing.catch-up.concurrency:2}",
+            autoStartup = "false")
+    public void onTripPricedBatch(List<Message<TripPricedEvent>> messages) {
+        Map<String, List<TripPricedEvent>> byShard = new LinkedHashMap<>();
+        Map<TripPricedEvent, Integer> redeliveries = new HashMap<>();
+        for (Message<TripPricedEvent> message : messages) {
+            TripPricedEvent event = message.getPayload();
+            redeliveries.put(event, redeliveries(message.getHeaders()));
+            Date timestamp = message.getHeaders().get(AmqpHeaders.TIMESTAMP, Date.class);
+            if (laneRouter.isEnabled()) {
+                laneRouter.recordLag(TripLane.BACKLOG, timestamp);
+            } else {
+                captureLog.append(event);
+            }
+            catchUpMode.observe(timestamp);
+            if (catchUpMode.sampleLog()) {
+                log.info("Catch-up TRIP_PRICED event (1 in {} logged): tripId={}, userId={}, amount={}",
+                        catchUpMode.getLogEvery(), event.tripId(), event.userId(), event.finalAmount());
+            }
+            tripShardIndex.register(event.tripId(), event.userId());
+            byShard.computeIfAbsent(shardRouter.shardOf(event.userId()), k -> new ArrayList<>()).add(event);
+        }
+        byShard.forEach((shard, events) -> {
+            DebitBatchResult result;
+            try {
+                result = shardRouter.onShard(shard, () -> billingService.processDebitBatch(events));
+            } catch (RuntimeException e) {
+                if (isUnavailable(e)) {
+                    throw e;
+                }
+                log.warn("Catch-up batch of {} events on shard {} failed, billing them one by one: {}",
+                        events.size(), shard, e.getMessage());
+                events.forEach(event -> billOrDeadLetter(event, redeliveries.getOrDefault(event, 0)));
+                return;
+            }
+            log.debug("Catch-up batch on shard {}: {} paid, {} failed, {} duplicates",
+                    shard, result.paid(), result.failed(), result.duplicates());
+        });
+        catchUpMode.drained(messages.size());
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void billOrDeadLetter(TripPricedEvent event, int redeliveries) {
+        try {
+            bill(event, redeliveries);
+        } catch (RuntimeException e) {
+            if (isUnavailable(e)) {
+                throw e;
+            }
+            log.error("Catch-up event tripId={} could not be billed, moved to {}: {}",
+                    event.tripId(), RabbitMQConfig.TRIP_PRICED_DLQ, e.getMessage());
+            rabbitTemplate.convertAndSend(RabbitMQConfig.PAYMENT_EXCHANGE, RabbitMQConfig.ROUTING_DLQ, event,
+                    message -> {
+                        message.getMessageProperties().setHeader("x-exception-message", String.valueOf(e.getMessage()));
+                        return message;
+                    });
+            catchUpMode.deadLettered();
+        }
+    }
+
+    /** The database cannot be reached: nothing to learn from billing event by event. */
+    private static boolean isUnavailable(RuntimeException e) {
+        return e instanceof CannotCreateTransactionException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessResourceException;
+    }
+
+    /**
+     * Earlier deliveries of a message, recorded on the JFR event: the rounds
+     * counted in {@code x-death}, at least 1 when the broker flags it as
+     * redelivered (a plain requeue keeps no count).
+     */
+    static int redeliveries(@Nullable Boolean redelivered, @Nullable List<Map<String, ?>> xDeath) {
+        long deaths = xDeath == null ? 0 : xDeath.stream()
+                .map(death -> death.get("count"))
+                .filter(Number.class::isInstance)
+                .mapToLong(count -> ((Number) count).longValue())
+                .sum();
+        return (int) Math.max(deaths, Boolean.TRUE.equals(redelivered) ? 1 : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int redeliveries(MessageHeaders headers) {
+        return redeliveries(headers.get(AmqpHeaders.REDELIVERED, Boolean.class),
+                (List<Map<String, ?>>) headers.get(X_DEATH, List.class));
+    }
+
+    /**
+     * A failure rolls the debit back and propagates: the message is rejected
+     * and redelivered.
      */
-    @RabbitListener(queues = RabbitMQConfig.TRIP_PRICED_QUEUE)
-    public void onTripPriced(TripPricedEvent event) {
-        log.info("Received TRIP_PRICED event: tripId={}, userId={}, amount={}",
-                event.tripId(), event.userId(), event.finalAmount());
-        billingService.processDebit(event);
+    private void bill(TripPricedEvent event, int redeliveries) {
+        try (HotPathLog.Scope scope = hotPathLog.open(event.tripId(), event.userId())) {
+            // Indexed before the debit: a recorded payment can always be located by tripId
+            tripShardIndex.register(event.tripId(), event.userId());
+            DebitOutcome outcome = billingService.processDebit(event, redeliveries);
+            log.debug("TRIP_PRICED tripId={} billed: {}", event.tripId(), outcome.status());
+        }
     }
 }
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
@@ -33,12 +34,40 @@ public class Account {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal dailySpent;
 
+    /**
+     * Spend of the current ISO week and calendar month, as of
+     * {@link #lastSpendDate}; stale counters read as zero (see
+     * {@code SpendCounters}). Column-mode accounts only; {@code null} means
+     * nothing spent yet.
+     */
+    @Column(precision = 19, scale = 2)
+    private BigDecimal weeklySpent;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal monthlySpent;
+
+    private LocalDate lastSpendDate;
+
+    /**
+     * Cap tier ({@code billing.caps.tiers.*}), e.g. {@code student} or
+     * {@code fleet}. {@code null} means the default tier.
+     */
+    @Column(length = 32)
+    private String tier;
+
     /**
      * ISO 4217 currency code. Default is XOF (West-African CFA franc).
      */
     @Column(nullable = false, length = 3)
     private String currency;
 
+    /**
+     * Number of sub-balance rows ({@link BalanceShard}) the balance is split
+     * across for hot fleet/corporate wallets. {@code null} or 1 means the
+     * balance lives in the columns above.
+     */
+    private Integer balanceShards;
+
     /** Timestamp of the last modification. */
     private LocalDateTime updatedAt;
 
@@ -54,4 +83,8 @@ public class Account {
     public void updateTimestamp() {
         this.updatedAt = LocalDateTime.now();
     }
+
+    public boolean isSharded() {
+        return balanceShards != null && balanceShards > 1;
+    }
 }
@@ -0,0 +1,69 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One slot of a sharded account balance. The account's balance and spend
+ * are the sums over its slots; each slot may only spend its share of each
+ * cap, so the caps hold exactly without a shared counter row.
+ */
+@Entity
+@Table(name = "balance_shards", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_balance_shard_account_slot", columnNames = { "accountId", "slot" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    /** 0 .. balanceShards-1. Slot 0 absorbs rounding remainders. */
+    @Column(nullable = false)
+    private Integer slot;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal dailySpent;
+
+    /**
+     * Spend of the current ISO week and calendar month, as of
+     * {@link #spendDate}; stale counters read as zero, {@code null} is
+     * nothing spent yet.
+     */
+    @Column(precision = 19, scale = 2)
+    private BigDecimal weeklySpent;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal monthlySpent;
+
+    private LocalDate spendDate;
+
+    private LocalDateTime updatedAt;
+
+    /** Optimistic locking per slot: concurrent debits only conflict on the same slot. */
+    @Version
+    private Long version;
+
+    @PrePersist
+    @PreUpdate
+    public void updateTimestamp() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
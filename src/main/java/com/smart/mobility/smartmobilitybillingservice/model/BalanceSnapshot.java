@@ -0,0 +1,52 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Folded state of an account's ledger up to {@link #seqNo}. Taken every N
+ * entries or T minutes so reads only have to sum a short tail.
+ */
+@Entity
+@Table(name = "balance_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceSnapshot {
+
+    /** One snapshot per account; a newer one replaces the previous. */
+    @Id
+    private Long accountId;
+
+    /** Last ledger entry included in this snapshot. */
+    @Column(nullable = false)
+    private Long seqNo;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal dailySpent;
+
+    /** Spend of the ISO week and calendar month of {@link #spendDate}; {@code null} in older snapshots. */
+    @Column(precision = 19, scale = 2)
+    private BigDecimal weeklySpent;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal monthlySpent;
+
+    /** Day the spend counters refer to; each is ignored once its day, week or month is over. */
+    @Column(nullable = false)
+    private LocalDate spendDate;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+}
@@ -0,0 +1,50 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored outcome of a REST request sent with an {@code Idempotency-Key}
+ * header. The row is inserted in the same transaction as the balance change,
+ * so a key is claimed exactly once even across replicas.
+ */
+@Entity
+@Table(name = "idempotency_records", indexes = {
+        @Index(name = "idx_idempotency_expires_at", columnList = "expiresAt"),
+        @Index(name = "idx_idempotency_user_id", columnList = "userId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    /** Client-supplied key. */
+    @Id
+    @Column(length = 128)
+    private String idempotencyKey;
+
+    /** User the request was for: the record moves with the account when shards are rebalanced. */
+    @Column(length = 64)
+    private String userId;
+
+    /** SHA-256 of operation + parameters: a reused key with a different payload is rejected. */
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    /** JSON body of the response replayed to retries. */
+    @Lob
+    private String responseBody;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /** Purged after this instant. */
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,38 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cluster-wide lease on a scheduled job: the replica named in {@code owner}
+ * runs the job until {@code leasedUntil}, renewing it while it works. An
+ * expired lease can be taken over by any replica.
+ */
+@Entity
+@Table(name = "job_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobLease {
+
+    /** Job name, e.g. {@code reconciliation}. */
+    @Id
+    @Column(length = 128)
+    private String name;
+
+    /** Instance ID of the holder ({@code billing.scheduling.instance-id}). */
+    @Column(nullable = false, length = 128)
+    private String owner;
+
+    @Column(nullable = false)
+    private LocalDateTime leasedUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime acquiredAt;
+}
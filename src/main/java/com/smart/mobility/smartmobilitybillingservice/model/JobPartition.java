@@ -0,0 +1,62 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One account ID range of a partitioned job run. Replicas claim open ranges
+ * (never claimed, or claimed by a replica whose claim expired) and mark them
+ * completed in the same transaction as the range's work.
+ */
+@Entity
+@Table(name = "job_partitions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_job_partition_run_from", columnNames = { "jobName", "runKey", "fromAccountId" })
+}, indexes = {
+        @Index(name = "idx_job_partition_created_at", columnList = "createdAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 128)
+    private String jobName;
+
+    /** Identifies one run of the job, e.g. the date of a nightly reset. */
+    @Column(nullable = false, length = 128)
+    private String runKey;
+
+    @Column(nullable = false)
+    private Long fromAccountId;
+
+    @Column(nullable = false)
+    private Long toAccountId;
+
+    /** Replica that claimed the range last; {@code null} while unclaimed. */
+    @Column(length = 128)
+    private String owner;
+
+    private LocalDateTime leasedUntil;
+
+    /** Claims so far; above 1 the range was taken over from a failed replica. */
+    @Column(nullable = false)
+    private Integer attempts;
+
+    /** Rows the work reported for the range. */
+    private Integer processed;
+
+    private LocalDateTime completedAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,74 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One immutable balance movement in ledger mode ({@code billing.ledger.enabled}).
+ * Rows are only ever inserted; the current balance is the latest
+ * {@link BalanceSnapshot} plus the entries appended after it.
+ */
+@Entity
+@Table(name = "ledger_entries", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ledger_account_seq", columnNames = { "accountId", "seqNo" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    /**
+     * Per-account position, starting at 1. The unique constraint turns two
+     * concurrent appends at the same position into a conflict on insert, which
+     * replaces the row-level {@code @Version} check of column mode.
+     */
+    @Column(nullable = false)
+    private Long seqNo;
+
+    /** DEBIT or CREDIT. */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType type;
+
+    /** Signed change to the balance (negative for debits). */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balanceDelta;
+
+    /** Change to the daily spend, counted only on {@link #spendDate}. */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal dailySpentDelta;
+
+    /** Day the daily spend belongs to: no midnight reset is needed in ledger mode. */
+    @Column(nullable = false)
+    private LocalDate spendDate;
+
+    /** The trip that triggered this entry, if any. */
+    private String tripId;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /** Keeps an existing timestamp, e.g. when a row is copied to another shard. */
+    @PrePersist
+    public void onCreate() {
+        if (this.createdAt == null) {
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+}
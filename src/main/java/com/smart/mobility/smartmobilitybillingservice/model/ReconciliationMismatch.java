@@ -0,0 +1,47 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/** An account whose balance differs from the net of its successful transactions. */
+@Entity
+@Table(name = "reconciliation_mismatches", indexes = {
+        @Index(name = "idx_reconciliation_mismatch_run", columnList = "runId, accountId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationMismatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long runId;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    /** Balance as read by the billing path (account row, shard slots or ledger). */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    /** Successful credits minus successful debits. */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal transactionTotal;
+
+    /** {@code balance - transactionTotal}. */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal difference;
+
+    @Column(nullable = false)
+    private LocalDateTime detectedAt;
+}
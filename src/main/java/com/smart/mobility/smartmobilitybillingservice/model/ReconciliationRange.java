@@ -0,0 +1,51 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of a reconciled account ID range, written in the same
+ * transaction as the range's mismatches: a range is either fully reported or
+ * reconciled again on resume.
+ */
+@Entity
+@Table(name = "reconciliation_ranges", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reconciliation_range_run_from", columnNames = { "runId", "fromAccountId" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long runId;
+
+    @Column(nullable = false)
+    private Long fromAccountId;
+
+    @Column(nullable = false)
+    private Long toAccountId;
+
+    /** Accounts found in the range (IDs may have gaps). */
+    @Column(nullable = false)
+    private Integer accounts;
+
+    @Column(nullable = false)
+    private Integer mismatches;
+
+    @Column(nullable = false)
+    private Long durationMs;
+
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,60 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.ReconciliationStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One pass of the balance reconciliation job. The ID bounds and chunk size
+ * are fixed when the run starts, so a resumed run splits the table into
+ * exactly the same ranges and skips those already in
+ * {@link ReconciliationRange}.
+ */
+@Entity
+@Table(name = "reconciliation_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReconciliationStatus status;
+
+    /** Lowest account ID when the run started; {@code null} if there were no accounts. */
+    private Long minAccountId;
+
+    /** Highest account ID when the run started; later accounts belong to the next run. */
+    private Long maxAccountId;
+
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Column(nullable = false)
+    private Integer rangesTotal;
+
+    @Column(nullable = false)
+    private Integer rangesDone;
+
+    @Column(nullable = false)
+    private Long accountsChecked;
+
+    @Column(nullable = false)
+    private Long mismatches;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+
+    /** End of the latest execution, whether it completed the run or not. */
+    private LocalDateTime finishedAt;
+}
@@ -1,5 +1,7 @@
 package com.smart.mobility.smartmobilitybillingservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
 import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
 import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
 import jakarta.persistence.*;
@@ -13,7 +15,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "transactions", indexes = {
-        @Index(name = "idx_transaction_trip_id", columnList = "tripId", unique = true)
+        @Index(name = "idx_transaction_trip_id", columnList = "tripId", unique = true),
+        @Index(name = "idx_transaction_account_status", columnList = "accountId, status")
 })
 @Data
 @NoArgsConstructor
@@ -50,15 +53,49 @@ public class Transaction {
     @Column(nullable = false)
     private TransactionStatus status;
 
-    /** Human-readable description of the transaction. */
+    /**
+     * Why the transaction was recorded; drives the rendered description. The
+     * structured columns stay out of the JSON, which keeps its former shape.
+     */
+    @JsonIgnore
+    @Convert(converter = TransactionReasonConverter.class)
+    private TransactionReason reasonCode;
+
+    /** Trip payment charged as a penalty. */
+    @JsonIgnore
+    @Column(nullable = false)
+    private boolean penalty;
+
+    /** Requested amount when {@link #amount} was trimmed to the daily-cap remainder. */
+    @JsonIgnore
+    @Column(precision = 19, scale = 2)
+    private BigDecimal cappedFrom;
+
+    /**
+     * Free text supplied by the caller (top-up, purchase), or a refusal text
+     * naming data no column holds (missing account's userId, available
+     * balance); {@code null} when the description is fully derived from
+     * {@link #reasonCode}.
+     */
     private String description;
 
     /** Timestamp when the transaction was recorded. */
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /** Stored text if any, otherwise rendered from the structured columns. */
+    public String getDescription() {
+        if (description != null || reasonCode == null) {
+            return description;
+        }
+        return reasonCode.render(this);
+    }
+
+    /** Keeps an existing timestamp, e.g. when a row is copied to another shard. */
     @PrePersist
     public void onCreate() {
-        this.createdAt = LocalDateTime.now();
+        if (this.createdAt == null) {
+            this.createdAt = LocalDateTime.now();
+        }
     }
 }
@@ -0,0 +1,20 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/** Maps {@link TransactionReason} to its stable SMALLINT code. */
+@Converter
+public class TransactionReasonConverter implements AttributeConverter<TransactionReason, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(TransactionReason reason) {
+        return reason != null ? reason.getCode() : null;
+    }
+
+    @Override
+    public TransactionReason convertToEntityAttribute(Short code) {
+        return code != null ? TransactionReason.fromCode(code) : null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Directory entry locating the shard that holds a trip's payment, so that
+ * payment-status lookups by tripId go to one shard instead of all of them.
+ * Only written when sharding is enabled, in the directory database.
+ */
+@Entity
+@Table(name = "trip_shards")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TripShard {
+
+    @Id
+    private String tripId;
+
+    @Column(nullable = false, length = 64)
+    private String shardId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
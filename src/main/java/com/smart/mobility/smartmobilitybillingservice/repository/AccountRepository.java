@@ -2,8 +2,14 @@ package com.smart.mobility.smartmobilitybillingservice.repository;
 
 import com.smart.mobility.smartmobilitybillingservice.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +18,26 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByUserId(String userId);
 
     boolean existsByUserId(String userId);
+
+    /** One {@code IN} query; callers keep {@code userIds} within the database's parameter limits. */
+    List<Account> findByUserIdIn(Collection<String> userIds);
+
+    /** Accounts of one ID range, for jobs that split the table into chunks. */
+    List<Account> findByIdBetween(Long fromId, Long toId);
+
+    @Query("select min(a.id) from Account a")
+    Long findMinId();
+
+    @Query("select max(a.id) from Account a")
+    Long findMaxId();
+
+    /** Daily cap reset of one ID range, in one statement (bumps the version like an entity update would). */
+    @Modifying
+    @Query("""
+            update Account a
+            set a.dailySpent = 0, a.updatedAt = :now, a.version = a.version + 1
+            where a.id between :fromId and :toId and a.dailySpent <> 0
+            """)
+    int resetDailySpentBetween(@Param("fromId") Long fromId, @Param("toId") Long toId,
+            @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,73 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BalanceShardRepository extends JpaRepository<BalanceShard, Long> {
+
+    /** Balance and daily spend of a sharded account: the sums over its slots. */
+    interface ShardTotal {
+        Long getAccountId();
+
+        BigDecimal getBalance();
+
+        BigDecimal getDailySpent();
+    }
+
+    /** {@link ShardTotal} plus the weekly and monthly spend, rolled over to the current period. */
+    interface ShardSpend extends ShardTotal {
+        BigDecimal getWeeklySpent();
+
+        BigDecimal getMonthlySpent();
+    }
+
+    List<BalanceShard> findByAccountIdOrderBySlotAsc(Long accountId);
+
+    /** All slots locked in slot order (consistent order avoids deadlocks), used by rebalancing. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from BalanceShard s where s.accountId = :accountId order by s.slot")
+    List<BalanceShard> lockAllByAccountId(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query("""
+            update BalanceShard s set s.dailySpent = 0, s.version = s.version + 1
+            where s.accountId between :fromId and :toId and s.dailySpent <> 0
+            """)
+    int resetDailySpentBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    void deleteByAccountId(Long accountId);
+
+    @Query("""
+            select s.accountId as accountId, sum(s.balance) as balance, sum(s.dailySpent) as dailySpent
+            from BalanceShard s
+            where s.accountId between :fromAccountId and :toAccountId
+            group by s.accountId
+            """)
+    List<ShardTotal> sumBalancesInRange(@Param("fromAccountId") Long fromAccountId,
+            @Param("toAccountId") Long toAccountId);
+
+    /** Slots whose spend was last counted before {@code weekStart} or {@code monthStart} add nothing to that period. */
+    @Query("""
+            select s.accountId as accountId, sum(s.balance) as balance, sum(s.dailySpent) as dailySpent,
+                   coalesce(sum(case when s.spendDate >= :weekStart then s.weeklySpent else 0 end), 0) as weeklySpent,
+                   coalesce(sum(case when s.spendDate >= :monthStart then s.monthlySpent else 0 end), 0) as monthlySpent
+            from BalanceShard s
+            where s.accountId in :accountIds
+            group by s.accountId
+            """)
+    List<ShardSpend> sumByAccountIdIn(@Param("accountIds") Collection<Long> accountIds,
+            @Param("weekStart") LocalDate weekStart,
+            @Param("monthStart") LocalDate monthStart);
+}
@@ -0,0 +1,13 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    List<BalanceSnapshot> findByAccountIdBetween(Long fromAccountId, Long toAccountId);
+}
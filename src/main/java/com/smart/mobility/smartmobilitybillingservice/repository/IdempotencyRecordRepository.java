@@ -0,0 +1,25 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    List<IdempotencyRecord> findByUserId(String userId);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.userId = :userId")
+    int deleteByUserId(@Param("userId") String userId);
+}
@@ -0,0 +1,45 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Lease times are read from the database clock ({@code local datetime}), so
+ * that replicas with skewed clocks agree on when a lease expires.
+ */
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /** Takes the lease if it is free, expired or already ours; 1 on success. */
+    @Modifying
+    @Query("""
+            update JobLease l
+            set l.owner = :owner, l.leasedUntil = local datetime + :ttlNanos nanosecond,
+                l.acquiredAt = local datetime
+            where l.name = :name and (l.owner = :owner or l.leasedUntil < local datetime)
+            """)
+    int acquire(@Param("name") String name, @Param("owner") String owner, @Param("ttlNanos") long ttlNanos);
+
+    /** Extends a lease still held by {@code owner} to {@code ttlNanos} from now; 0 once it has been lost. */
+    @Modifying
+    @Query("""
+            update JobLease l set l.leasedUntil = local datetime + :ttlNanos nanosecond
+            where l.name = :name and l.owner = :owner
+            """)
+    int renew(@Param("name") String name, @Param("owner") String owner, @Param("ttlNanos") long ttlNanos);
+
+    /** Ends a lease held by {@code owner}, keeping it until {@code minHoldNanos} after it was taken. */
+    @Modifying
+    @Query("""
+            update JobLease l
+            set l.leasedUntil = case when l.acquiredAt + :minHoldNanos nanosecond > local datetime
+                                     then l.acquiredAt + :minHoldNanos nanosecond else local datetime end
+            where l.name = :name and l.owner = :owner
+            """)
+    int release(@Param("name") String name, @Param("owner") String owner,
+            @Param("minHoldNanos") long minHoldNanos);
+}
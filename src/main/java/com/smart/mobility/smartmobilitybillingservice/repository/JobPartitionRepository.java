@@ -0,0 +1,83 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.JobPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Claims are timed on the database clock ({@code local datetime}), so that
+ * replicas with skewed clocks agree on when a claim expires.
+ */
+@Repository
+public interface JobPartitionRepository extends JpaRepository<JobPartition, Long> {
+
+    boolean existsByJobNameAndRunKey(String jobName, String runKey);
+
+    List<JobPartition> findByJobNameAndRunKeyOrderByFromAccountIdAsc(String jobName, String runKey);
+
+    /**
+     * Ranges that may be claimed now: unclaimed, or claimed by a replica
+     * whose claim expired, and not yet failed {@code maxAttempts} times.
+     */
+    @Query("""
+            select p.id from JobPartition p
+            where p.jobName = :jobName and p.runKey = :runKey and p.completedAt is null
+              and (p.owner is null or p.leasedUntil < local datetime) and p.attempts < :maxAttempts
+            order by p.fromAccountId
+            """)
+    List<Long> findClaimable(@Param("jobName") String jobName, @Param("runKey") String runKey,
+            @Param("maxAttempts") int maxAttempts);
+
+    /** Ranges another replica is working on right now. */
+    @Query("""
+            select count(p) from JobPartition p
+            where p.jobName = :jobName and p.runKey = :runKey and p.completedAt is null
+              and p.owner is not null and p.leasedUntil >= local datetime
+            """)
+    long countInFlight(@Param("jobName") String jobName, @Param("runKey") String runKey);
+
+    /** Ranges left undone after failing {@code maxAttempts} times, and no longer in flight. */
+    @Query("""
+            select count(p) from JobPartition p
+            where p.jobName = :jobName and p.runKey = :runKey and p.completedAt is null
+              and p.attempts >= :maxAttempts and (p.owner is null or p.leasedUntil < local datetime)
+            """)
+    long countAbandoned(@Param("jobName") String jobName, @Param("runKey") String runKey,
+            @Param("maxAttempts") int maxAttempts);
+
+    /** Claims a range for {@code ttlNanos} if it is still claimable; 1 on success. */
+    @Modifying
+    @Query("""
+            update JobPartition p
+            set p.owner = :owner, p.leasedUntil = local datetime + :ttlNanos nanosecond,
+                p.attempts = p.attempts + 1
+            where p.id = :id and p.completedAt is null
+              and (p.owner is null or p.leasedUntil < local datetime) and p.attempts < :maxAttempts
+            """)
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("ttlNanos") long ttlNanos,
+            @Param("maxAttempts") int maxAttempts);
+
+    /** Marks a range done if the claim is still ours; 0 if it expired and was taken over. */
+    @Modifying
+    @Query("""
+            update JobPartition p
+            set p.completedAt = local datetime, p.processed = :processed
+            where p.id = :id and p.owner = :owner and p.completedAt is null
+            """)
+    int complete(@Param("id") Long id, @Param("owner") String owner, @Param("processed") int processed);
+
+    /** Gives up a claim after a failure so that any replica can retry the range at once. */
+    @Modifying
+    @Query("update JobPartition p set p.leasedUntil = local datetime where p.id = :id and p.owner = :owner")
+    int release(@Param("id") Long id, @Param("owner") String owner);
+
+    @Modifying
+    @Query("delete from JobPartition p where p.jobName = :jobName and p.createdAt < :before")
+    int deleteCreatedBefore(@Param("jobName") String jobName, @Param("before") LocalDateTime before);
+}
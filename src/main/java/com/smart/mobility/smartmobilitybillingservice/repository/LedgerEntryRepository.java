@@ -0,0 +1,99 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /** Aggregate of the entries appended after a snapshot. */
+    interface LedgerTail {
+        Long getAccountId();
+
+        BigDecimal getBalanceDelta();
+
+        BigDecimal getDailySpentDelta();
+
+        /** Spend of the tail counted in the week and in the month of {@code today}. */
+        BigDecimal getWeeklySpentDelta();
+
+        BigDecimal getMonthlySpentDelta();
+
+        Long getLastSeqNo();
+
+        Long getEntries();
+    }
+
+    /** Sums one account's entries after {@code afterSeqNo}: a single indexed range scan. */
+    @Query("""
+            select e.accountId as accountId,
+                   coalesce(sum(e.balanceDelta), 0) as balanceDelta,
+                   coalesce(sum(case when e.spendDate = :today then e.dailySpentDelta else 0 end), 0) as dailySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :weekStart then e.dailySpentDelta else 0 end), 0) as weeklySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :monthStart then e.dailySpentDelta else 0 end), 0) as monthlySpentDelta,
+                   max(e.seqNo) as lastSeqNo,
+                   count(e) as entries
+            from LedgerEntry e
+            where e.accountId = :accountId and e.seqNo > :afterSeqNo
+            group by e.accountId
+            """)
+    List<LedgerTail> sumTail(@Param("accountId") Long accountId,
+            @Param("afterSeqNo") long afterSeqNo,
+            @Param("today") LocalDate today,
+            @Param("weekStart") LocalDate weekStart,
+            @Param("monthStart") LocalDate monthStart);
+
+    /** Tails of every account in an ID range, each measured from its own snapshot (used by rebuild). */
+    @Query("""
+            select e.accountId as accountId,
+                   coalesce(sum(e.balanceDelta), 0) as balanceDelta,
+                   coalesce(sum(case when e.spendDate = :today then e.dailySpentDelta else 0 end), 0) as dailySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :weekStart then e.dailySpentDelta else 0 end), 0) as weeklySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :monthStart then e.dailySpentDelta else 0 end), 0) as monthlySpentDelta,
+                   max(e.seqNo) as lastSeqNo,
+                   count(e) as entries
+            from LedgerEntry e
+            where e.accountId between :fromAccountId and :toAccountId
+              and e.seqNo > coalesce((select s.seqNo from BalanceSnapshot s where s.accountId = e.accountId), 0)
+            group by e.accountId
+            """)
+    List<LedgerTail> sumTailsInRange(@Param("fromAccountId") Long fromAccountId,
+            @Param("toAccountId") Long toAccountId,
+            @Param("today") LocalDate today,
+            @Param("weekStart") LocalDate weekStart,
+            @Param("monthStart") LocalDate monthStart);
+
+    /** Tails of the given accounts, each measured from its own snapshot (used by batch reads). */
+    @Query("""
+            select e.accountId as accountId,
+                   coalesce(sum(e.balanceDelta), 0) as balanceDelta,
+                   coalesce(sum(case when e.spendDate = :today then e.dailySpentDelta else 0 end), 0) as dailySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :weekStart then e.dailySpentDelta else 0 end), 0) as weeklySpentDelta,
+                   coalesce(sum(case when e.spendDate >= :monthStart then e.dailySpentDelta else 0 end), 0) as monthlySpentDelta,
+                   max(e.seqNo) as lastSeqNo,
+                   count(e) as entries
+            from LedgerEntry e
+            where e.accountId in :accountIds
+              and e.seqNo > coalesce((select s.seqNo from BalanceSnapshot s where s.accountId = e.accountId), 0)
+            group by e.accountId
+            """)
+    List<LedgerTail> sumTailsOf(@Param("accountIds") Collection<Long> accountIds,
+            @Param("today") LocalDate today,
+            @Param("weekStart") LocalDate weekStart,
+            @Param("monthStart") LocalDate monthStart);
+
+    List<LedgerEntry> findByAccountIdOrderBySeqNoAsc(Long accountId);
+
+    @Modifying
+    @Query("delete from LedgerEntry e where e.accountId = :accountId")
+    int deleteByAccountId(@Param("accountId") Long accountId);
+}
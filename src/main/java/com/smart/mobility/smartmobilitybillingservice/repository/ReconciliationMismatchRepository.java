@@ -0,0 +1,23 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, Long> {
+
+    List<ReconciliationMismatch> findByRunIdOrderByAccountIdAsc(Long runId, Limit limit);
+
+    List<ReconciliationMismatch> findByAccountId(Long accountId);
+
+    @Modifying
+    @Query("delete from ReconciliationMismatch m where m.accountId = :accountId")
+    int deleteByAccountId(@Param("accountId") Long accountId);
+}
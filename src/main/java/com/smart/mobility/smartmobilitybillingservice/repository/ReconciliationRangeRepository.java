@@ -0,0 +1,35 @@
+package com.smart.mobility.smartmobilitybillingservice.repository;
+
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Set;
+
+@Repository
+public interface ReconciliationRangeRepository extends JpaRepository<ReconciliationRange, Long> {
+
+    /** Progress of a run, summed over its completed ranges. */
+    interface RunTotals {
+        Long getRanges();
+
+        Long getAccounts();
+
+        Long getMismatches();
+    }
+
+    /** Ranges of a run already reconciled, identified by their first account ID. */
+    @Query("select r.fromAccountId from ReconciliationRange r where r.runId = :runId")
+    Set<Long> findCompletedFromAccountIds(@Param("runId") Long runId);
+
+    @Query("""
+            select count(r) as ranges,
+                   coalesce(sum(r.accounts), 0) as accounts,
+                   coalesce(sum(r.mismatches), 0) as mismatches
+            from ReconciliationRange r
+            where r.runId = :runId
+            """)
+    RunTotals sumByRunId(@Param("runId") Long runId);
+}
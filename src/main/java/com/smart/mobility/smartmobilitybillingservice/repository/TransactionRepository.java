@@ -1,18 +1,56 @@
 package com.smart.mobility.smartmobilitybillingservice.repository;
 
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
 import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    /** Net effect of an account's transactions on its balance. */
+    interface AccountNet {
+        Long getAccountId();
+
+        BigDecimal getNet();
+    }
+
     /** Used for idempotence: check if a trip was already processed. */
     Optional<Transaction> findByTripId(String tripId);
 
+    /** Batched idempotence check: which of {@code tripIds} were already processed. */
+    @Query("select t.tripId from Transaction t where t.tripId in :tripIds")
+    List<String> findTripIdsIn(@Param("tripIds") Collection<String> tripIds);
+
     /** Retrieve all transactions for an account (for statements, etc.) */
     List<Transaction> findByAccountIdOrderByCreatedAtDesc(Long accountId);
+
+    /**
+     * Credits minus debits with status {@code status}, per account of an ID
+     * range: the database aggregates, no transaction row is loaded.
+     */
+    @Query("""
+            select t.accountId as accountId,
+                   coalesce(sum(case when t.type = :credit then t.amount else -t.amount end), 0) as net
+            from Transaction t
+            where t.accountId between :fromAccountId and :toAccountId and t.status = :status
+            group by t.accountId
+            """)
+    List<AccountNet> sumNetInRange(@Param("fromAccountId") Long fromAccountId,
+            @Param("toAccountId") Long toAccountId,
+            @Param("credit") TransactionType credit,
+            @Param("status") TransactionStatus status);
+
+    @Modifying
+    @Query("delete from Transaction t where t.accountId = :accountId")
+    int deleteByAccountId(@Param("accountId") Long accountId);
 }
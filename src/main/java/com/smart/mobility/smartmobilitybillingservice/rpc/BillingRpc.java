@@ -0,0 +1,102 @@
+package com.smart.mobility.smartmobilitybillingservice.rpc;
+
+import com.google.protobuf.ByteString;
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentEntry;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BalanceReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeStatus;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatchReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.Decimal;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.StreamError;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitOutcome;
+import io.grpc.Status;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Conversions between the messages of the internal gRPC API
+ * ({@code src/main/proto/billing_internal.proto}, generated into
+ * {@code rpc.proto}) and the REST DTOs and service types.
+ * <p>
+ * Amounts travel as {@link Decimal} (unscaled value and scale), never as a
+ * string or a double, so they keep their exact value and scale.
+ */
+public final class BillingRpc {
+
+    private BillingRpc() {
+    }
+
+    public static Decimal decimal(BigDecimal value) {
+        return Decimal.newBuilder()
+                .setUnscaled(ByteString.copyFrom(value.unscaledValue().toByteArray()))
+                .setScale(value.scale())
+                .build();
+    }
+
+    public static BigDecimal decimal(Decimal value) {
+        BigInteger unscaled = value.getUnscaled().isEmpty() ? BigInteger.ZERO
+                : new BigInteger(value.getUnscaled().toByteArray());
+        return new BigDecimal(unscaled, value.getScale());
+    }
+
+    public static DailySpentReply dailySpentReply(DailySpentEntry entry) {
+        DailySpentReply.Builder reply = DailySpentReply.newBuilder().setUserId(entry.userId());
+        if (entry.dailySpent() != null) {
+            reply.setDailySpent(decimal(entry.dailySpent()));
+        }
+        if (entry.remainingCap() != null) {
+            reply.setRemainingCap(decimal(entry.remainingCap()));
+        }
+        return reply.build();
+    }
+
+    public static BalanceReply balanceReply(AccountResponse account) {
+        BalanceReply.Builder reply = BalanceReply.newBuilder().setUserId(account.userId());
+        if (account.id() != null) {
+            reply.setId(account.id());
+        }
+        if (account.balance() != null) {
+            reply.setBalance(decimal(account.balance()));
+        }
+        if (account.dailySpent() != null) {
+            reply.setDailySpent(decimal(account.dailySpent()));
+        }
+        if (account.currency() != null) {
+            reply.setCurrency(account.currency());
+        }
+        return reply.build();
+    }
+
+    public static DailySpentBatchReply batchReply(DailySpentBatchResponse batch) {
+        DailySpentBatchReply.Builder reply = DailySpentBatchReply.newBuilder();
+        batch.accounts().forEach(entry -> reply.addAccounts(dailySpentReply(entry)));
+        if (batch.missingUserIds() != null) {
+            reply.addAllMissingUserIds(batch.missingUserIds());
+        }
+        return reply.build();
+    }
+
+    /** Wire value of a charge outcome; the enum constants share their names. */
+    public static ChargeStatus chargeStatus(DebitOutcome.Status status) {
+        return ChargeStatus.valueOf(status.name());
+    }
+
+    public static DebitOutcome.Status status(ChargeStatus status) {
+        if (status == ChargeStatus.CHARGE_STATUS_UNSPECIFIED || status == ChargeStatus.UNRECOGNIZED) {
+            throw new IllegalArgumentException("Unknown charge status " + status);
+        }
+        return DebitOutcome.Status.valueOf(status.name());
+    }
+
+    public static StreamError streamError(Status status) {
+        StreamError.Builder error = StreamError.newBuilder().setCode(status.getCode().value());
+        String description = status.getDescription();
+        if (description != null) {
+            error.setDescription(description);
+        }
+        return error.build();
+    }
+}
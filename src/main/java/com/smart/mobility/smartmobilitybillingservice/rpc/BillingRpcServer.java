@@ -0,0 +1,145 @@
+package com.smart.mobility.smartmobilitybillingservice.rpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Internal gRPC server ({@code billing.rpc.enabled=true}) on its own port,
+ * {@code billing.rpc.port}, next to the REST API.
+ * <p>
+ * Callers keep one HTTP/2 connection open and multiplex concurrent calls
+ * and streams over it (up to {@code max-concurrent-streams} per connection);
+ * keep-alive pings hold idle connections open through load balancers. Calls
+ * run on a fixed pool of {@code threads} workers, like servlet requests:
+ * the handlers block on the database.
+ * <p>
+ * Metrics: {@code billing.rpc.calls} (timer tagged {@code method} and
+ * {@code status}).
+ */
+@Component
+@ConditionalOnBooleanProperty("billing.rpc.enabled")
+@RequiredArgsConstructor
+@Slf4j
+public class BillingRpcServer implements SmartLifecycle {
+
+    private final BillingRpcService service;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.rpc.port:9090}")
+    private int port;
+
+    @Value("${billing.rpc.threads:16}")
+    private int threads;
+
+    @Value("${billing.rpc.max-concurrent-streams:256}")
+    private int maxConcurrentStreams;
+
+    @Value("${billing.rpc.max-message-size:4MB}")
+    private DataSize maxMessageSize;
+
+    @Value("${billing.rpc.keep-alive-time:30s}")
+    private Duration keepAliveTime;
+
+    @Value("${billing.rpc.shutdown-grace:10s}")
+    private Duration shutdownGrace;
+
+    private volatile Server server;
+    private ExecutorService workers;
+
+    @Override
+    public void start() {
+        AtomicInteger workerNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "billing-rpc-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = NettyServerBuilder.forPort(port)
+                .executor(workers)
+                .addService(ServerInterceptors.intercept(service, new CallMetrics()))
+                .maxConcurrentCallsPerConnection(maxConcurrentStreams)
+                .maxInboundMessageSize((int) maxMessageSize.toBytes())
+                .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                .permitKeepAliveTime(keepAliveTime.toMillis() / 2, TimeUnit.MILLISECONDS)
+                .permitKeepAliveWithoutCalls(true)
+                .build();
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the internal RPC server on port " + port, e);
+        }
+        log.info("Internal RPC server listening on port {}", server.getPort());
+    }
+
+    @Override
+    public void stop() {
+        Server running = server;
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(shutdownGrace.toMillis(), TimeUnit.MILLISECONDS)) {
+                running.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            running.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /** Bound port: {@code billing.rpc.port}, or the one picked for port 0. */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /** Times every call from its start to its close. */
+    private final class CallMetrics implements ServerInterceptor {
+
+        @Override
+        public <Q, R> ServerCall.Listener<Q> interceptCall(ServerCall<Q, R> call, Metadata headers,
+                ServerCallHandler<Q, R> next) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String method = call.getMethodDescriptor().getBareMethodName();
+            return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    sample.stop(meterRegistry.timer("billing.rpc.calls",
+                            "method", method, "status", status.getCode().name()));
+                    super.close(status, trailers);
+                }
+            }, headers);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.smart.mobility.smartmobilitybillingservice.rpc;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentEntry;
+import com.smart.mobility.smartmobilitybillingservice.exception.AccountNotFoundException;
+import com.smart.mobility.smartmobilitybillingservice.exception.IdempotencyKeyReusedException;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BalanceReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BillingInternalGrpc;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeRequest;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeStatus;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatch;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.StreamError;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.UserRequest;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.ChargeResult;
+import com.smart.mobility.smartmobilitybillingservice.service.DailySpentLookup;
+import com.smart.mobility.smartmobilitybillingservice.service.IdempotencyService;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Handlers of the internal gRPC API ({@code billing_internal.proto}, see
+ * {@link BillingRpc} for the conversions), calling the same services as
+ * {@code InterneAccountController} and {@code AccountController.charge}.
+ * Stream elements are handled one at a time, in arrival order, on the
+ * server's worker pool; an element that fails is answered with its
+ * {@link StreamError} and the stream goes on.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BillingRpcService extends BillingInternalGrpc.BillingInternalImplBase {
+
+    private final BillingService billingService;
+    private final DailySpentLookup dailySpentLookup;
+    private final IdempotencyService idempotencyService;
+    private final ShardRouter shardRouter;
+
+    @Override
+    public void getDailySpent(UserRequest request, StreamObserver<DailySpentReply> responses) {
+        unary(responses, () -> BillingRpc.dailySpentReply(getDailySpent(request.getUserId())));
+    }
+
+    @Override
+    public void getBalance(UserRequest request, StreamObserver<BalanceReply> responses) {
+        unary(responses, () -> BillingRpc.balanceReply(billingService.getAccountByUserId(request.getUserId())));
+    }
+
+    @Override
+    public void charge(ChargeRequest request, StreamObserver<ChargeReply> responses) {
+        unary(responses, () -> charge(request));
+    }
+
+    @Override
+    public StreamObserver<DailySpentBatch> dailySpentStream(StreamObserver<DailySpentStreamReply> responses) {
+        return stream(responses,
+                request -> DailySpentStreamReply.newBuilder()
+                        .setBatch(BillingRpc.batchReply(getDailySpentBatch(request))).build(),
+                error -> DailySpentStreamReply.newBuilder().setError(error).build());
+    }
+
+    @Override
+    public StreamObserver<ChargeRequest> chargeStream(StreamObserver<ChargeStreamReply> responses) {
+        return stream(responses,
+                request -> ChargeStreamReply.newBuilder().setReply(charge(request)).build(),
+                error -> ChargeStreamReply.newBuilder().setError(error).build());
+    }
+
+    DailySpentEntry getDailySpent(String userId) {
+        DailySpentBatchResponse found = dailySpentLookup.lookup(List.of(userId));
+        if (found.accounts().isEmpty()) {
+            throw new AccountNotFoundException(userId);
+        }
+        return found.accounts().get(0);
+    }
+
+    DailySpentBatchResponse getDailySpentBatch(DailySpentBatch request) {
+        return dailySpentLookup.lookup(request.getUserIdsList());
+    }
+
+    /**
+     * Same semantics as the REST charge: with an idempotency key the charge
+     * runs inside the idempotent operation; a refusal is recorded either way
+     * and leaves the key unused.
+     */
+    ChargeReply charge(ChargeRequest request) {
+        String userId = request.getUserId();
+        BigDecimal amount = request.hasAmount() ? BillingRpc.decimal(request.getAmount()) : null;
+        String description = request.hasDescription() ? request.getDescription() : null;
+        if (!request.hasIdempotencyKey()) {
+            return reply(billingService.charge(userId, amount, description));
+        }
+        return shardRouter.onShardOf(userId, () -> {
+            AtomicReference<ChargeResult> charged = new AtomicReference<>();
+            AccountResponse account = idempotencyService.execute(request.getIdempotencyKey(), userId,
+                    IdempotencyService.fingerprint("charge", userId, amount, description),
+                    AccountResponse.class,
+                    () -> {
+                        ChargeResult result = billingService.charge(userId, amount, description);
+                        charged.set(result);
+                        return result.account();
+                    },
+                    Objects::nonNull).body();
+            if (charged.get() != null && !charged.get().outcome().isSuccess()) {
+                return reply(charged.get());
+            }
+            return ChargeReply.newBuilder()
+                    .setUserId(userId)
+                    .setStatus(ChargeStatus.PAID)
+                    .setBalance(BillingRpc.decimal(account.balance()))
+                    .build();
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private static ChargeReply reply(ChargeResult result) {
+        ChargeReply.Builder reply = ChargeReply.newBuilder()
+                .setUserId(result.userId())
+                .setStatus(BillingRpc.chargeStatus(result.outcome().status()));
+        if (result.outcome().isSuccess()) {
+            return reply.setBalance(BillingRpc.decimal(result.account().balance())).build();
+        }
+        return reply.setMessage(result.outcome().failureMessage(result.userId())).build();
+    }
+
+    private static <R> void unary(StreamObserver<R> responses, Supplier<R> handler) {
+        R response;
+        try {
+            response = handler.get();
+        } catch (RuntimeException e) {
+            responses.onError(toStatus(e));
+            return;
+        }
+        responses.onNext(response);
+        responses.onCompleted();
+    }
+
+    private static <Q, R> StreamObserver<Q> stream(StreamObserver<R> responses, Function<Q, R> handler,
+            Function<StreamError, R> failed) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(Q request) {
+                R reply;
+                try {
+                    reply = handler.apply(request);
+                } catch (RuntimeException e) {
+                    reply = failed.apply(BillingRpc.streamError(toStatus(e).getStatus()));
+                }
+                responses.onNext(reply);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.debug("Client cancelled stream: {}", t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                responses.onCompleted();
+            }
+        };
+    }
+
+    /** Same mapping as {@code GlobalExceptionHandler}. */
+    private static StatusRuntimeException toStatus(RuntimeException e) {
+        Status status;
+        if (e instanceof AccountNotFoundException) {
+            status = Status.NOT_FOUND.withDescription(e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
+            status = Status.INVALID_ARGUMENT.withDescription(e.getMessage());
+        } else if (e instanceof IdempotencyKeyReusedException) {
+            status = Status.FAILED_PRECONDITION.withDescription(e.getMessage());
+        } else {
+            log.error("Unexpected error in internal RPC", e);
+            status = Status.INTERNAL.withDescription("An unexpected error occurred.");
+        }
+        return status.asRuntimeException();
+    }
+}
@@ -0,0 +1,22 @@
+package com.smart.mobility.smartmobilitybillingservice.scheduling;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a scheduled job on one replica only: the method runs while this
+ * replica holds the database lease {@link #value()} and is skipped
+ * (returning {@code 0} or {@code null}) when another replica holds it.
+ * Combined with {@code @OnEachShard}, each shard has its own lease.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ClusterLease {
+
+    /** Lease (job) name. */
+    String value();
+}
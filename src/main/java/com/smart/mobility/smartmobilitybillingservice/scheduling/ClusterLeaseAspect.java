@@ -0,0 +1,44 @@
+package com.smart.mobility.smartmobilitybillingservice.scheduling;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies {@link ClusterLease}. Ordered inside the shard routing aspect, so
+ * the lease is taken on the shard being processed, and outside the
+ * transaction interceptor, so the lease is committed before the job starts.
+ * The lease is the job's {@link JobLeaseService#current()} while it runs.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterLeaseAspect {
+
+    private final JobLeaseService leaseService;
+
+    @Around("@annotation(clusterLease)")
+    public Object runUnderLease(ProceedingJoinPoint joinPoint, ClusterLease clusterLease) throws Throwable {
+        try (JobLeaseService.Lease lease = leaseService.tryAcquire(clusterLease.value())) {
+            if (lease == null) {
+                log.debug("Skipping {}: lease held by another replica", clusterLease.value());
+                Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+                return returnType == int.class || returnType == Integer.class ? 0 : null;
+            }
+            Object result = leaseService.runUnder(lease, joinPoint::proceed);
+            if (!lease.isHeld()) {
+                log.warn("{} ended after its lease was lost: another replica may have run it too",
+                        clusterLease.value());
+            }
+            return result;
+        }
+    }
+}
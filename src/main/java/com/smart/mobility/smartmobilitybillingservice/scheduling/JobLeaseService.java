@@ -0,0 +1,254 @@
+package com.smart.mobility.smartmobilitybillingservice.scheduling;
+
+import com.smart.mobility.smartmobilitybillingservice.model.JobLease;
+import com.smart.mobility.smartmobilitybillingservice.repository.JobLeaseRepository;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Database leases that keep a scheduled job to one replica at a time.
+ * <p>
+ * A lease is a {@code job_leases} row naming its owner (this replica's
+ * {@code billing.scheduling.instance-id}) and an expiry {@code lease-ttl}
+ * ahead. It is taken with a conditional update (free, expired or already
+ * ours) and renewed every third of the TTL while the job runs, so a replica
+ * that dies mid-job hands the lease over once its last renewal expires. On
+ * release the lease stays held until {@code min-hold} after it was taken:
+ * a replica whose cron fires a few seconds late then skips the job instead
+ * of running it a second time. Expiry is reckoned on the database clock, so
+ * clock skew between replicas does not matter.
+ * <p>
+ * A job checks {@link Lease#isHeld()} between chunks of work and stops once
+ * it is false: the lease was taken over, or has not been confirmed for a
+ * whole TTL (the heartbeat stalled, e.g. in a long GC pause) and may be.
+ * {@code @ClusterLease} jobs find their lease with {@link #current()}.
+ * <p>
+ * With sharding, leases live in the shard bound when they are taken.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLeaseService {
+
+    /** Leasing time of a lease row created free, to be taken by a conditional update. */
+    private static final LocalDateTime NEVER = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final ThreadLocal<@Nullable Lease> CURRENT = new ThreadLocal<>();
+
+    private final JobLeaseRepository repository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.scheduling.instance-id:}")
+    private String configuredInstanceId;
+
+    @Value("${billing.scheduling.lease-ttl:2m}")
+    private Duration leaseTtl;
+
+    @Value("${billing.scheduling.min-hold:1m}")
+    private Duration minHold;
+
+    private String instanceId;
+    private TransactionTemplate leaseTransaction;
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    void init() {
+        instanceId = configuredInstanceId.isBlank() ? defaultInstanceId() : configuredInstanceId;
+        // Lease changes commit on their own, whatever the caller is doing
+        leaseTransaction = new TransactionTemplate(transactionManager);
+        leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Scheduled jobs coordinate as instance {}", instanceId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Takes the lease {@code name} for this replica.
+     *
+     * @return the held lease, to be closed when the job ends, or {@code null}
+     *         if another replica holds it
+     */
+    public @Nullable Lease tryAcquire(String name) {
+        long confirmedAt = System.nanoTime();
+        boolean acquired = leaseTransaction.execute(status -> acquire(name));
+        if (!acquired) {
+            acquired = insert(name);
+        }
+        meterRegistry.counter("billing.scheduling.leases", "job", name,
+                "outcome", acquired ? "acquired" : "skipped").increment();
+        if (!acquired) {
+            return null;
+        }
+        log.debug("Lease {} acquired by {}", name, instanceId);
+        return new Lease(name, ShardContext.current(), confirmedAt);
+    }
+
+    /** The lease of the {@code @ClusterLease} job running on this thread, if any. */
+    public @Nullable Lease current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code job} with {@code lease} as the {@link #current()} lease of
+     * this thread; for {@code ClusterLeaseAspect}.
+     */
+    <T> T runUnder(Lease lease, ThrowingSupplier<T> job) throws Throwable {
+        Lease outer = CURRENT.get();
+        CURRENT.set(lease);
+        try {
+            return job.get();
+        } finally {
+            if (outer != null) {
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface ThrowingSupplier<T> {
+        T get() throws Throwable;
+    }
+
+    /** A held lease; renewed in the background until closed. */
+    public final class Lease implements AutoCloseable {
+
+        private final String name;
+        private final @Nullable String shardId;
+        private final ScheduledFuture<?> renewal;
+        private volatile boolean held = true;
+        /** {@link System#nanoTime()} when the last successful acquire or renewal was sent. */
+        private volatile long confirmedAt;
+
+        private Lease(String name, @Nullable String shardId, long confirmedAt) {
+            this.name = name;
+            this.shardId = shardId;
+            this.confirmedAt = confirmedAt;
+            long period = Math.max(1, leaseTtl.toMillis() / 3);
+            this.renewal = heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * {@code false} once a renewal found the lease taken over, or when no
+         * renewal has succeeded for a whole TTL: the job must stop there.
+         */
+        public boolean isHeld() {
+            return held && System.nanoTime() - confirmedAt < leaseTtl.toNanos();
+        }
+
+        @Override
+        public void close() {
+            renewal.cancel(false);
+            if (!held) {
+                return;
+            }
+            held = false;
+            try {
+                onShard(() -> leaseTransaction.execute(status -> repository.release(
+                        name, instanceId, minHold.toNanos())));
+            } catch (DataAccessException e) {
+                // The lease simply expires at its last renewal
+                log.warn("Could not release lease {}: {}", name, e.getMessage());
+            }
+        }
+
+        private void renew() {
+            try {
+                long sentAt = System.nanoTime();
+                Integer renewed = onShard(() -> leaseTransaction.execute(status -> repository.renew(
+                        name, instanceId, leaseTtl.toNanos())));
+                if (renewed == null || renewed == 0) {
+                    held = false;
+                    renewal.cancel(false);
+                    log.warn("Lease {} was lost: another replica took it over", name);
+                } else {
+                    confirmedAt = sentAt;
+                }
+            } catch (RuntimeException e) {
+                // Retried at the next beat; the lease only goes if the TTL runs out
+                log.warn("Could not renew lease {}: {}", name, e.getMessage());
+            }
+        }
+
+        private <T> T onShard(Supplier<T> work) {
+            return shardId != null ? ShardContext.callIn(shardId, work) : work.get();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private boolean acquire(String name) {
+        return repository.acquire(name, instanceId, leaseTtl.toNanos()) > 0;
+    }
+
+    /**
+     * First use of a lease: creates its row, free, and takes it on the
+     * database clock; loses gracefully to a replica doing the same.
+     */
+    private boolean insert(String name) {
+        try {
+            return leaseTransaction.execute(status -> {
+                if (repository.existsById(name)) {
+                    return false;
+                }
+                repository.saveAndFlush(new JobLease(name, instanceId, NEVER, NEVER));
+                return acquire(name);
+            });
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
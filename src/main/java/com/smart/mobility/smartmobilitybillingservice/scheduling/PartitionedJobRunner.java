@@ -0,0 +1,193 @@
+package com.smart.mobility.smartmobilitybillingservice.scheduling;
+
+import com.smart.mobility.smartmobilitybillingservice.model.JobPartition;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.JobPartitionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a job over all accounts into account ID ranges that every replica
+ * works through together, so that more replicas finish it sooner instead of
+ * repeating it.
+ * <p>
+ * The first replica to start a run ({@code jobName} + {@code runKey}) plans
+ * it into {@code job_partitions} rows; the others find the plan already
+ * there (the unique key on the range start settles a tie). Each replica then
+ * claims open ranges one at a time with a conditional update and runs the
+ * range's work in the same transaction that marks it completed, so a range
+ * is applied exactly once. A claim lasts {@code partition-ttl}: ranges of a
+ * replica that dies are claimed again by the others, which wait for ranges
+ * in flight elsewhere before returning. Claims are timed on the database
+ * clock, and a range is only marked completed by the replica that holds its
+ * claim, which fences off a replica whose claim was taken over mid-range.
+ * A range that fails is retried up to {@code max-attempts} times; ranges
+ * still undone after that are abandoned, logged as an error and counted as
+ * {@code billing.scheduling.ranges{outcome=abandoned}} by each replica.
+ * <p>
+ * Runs on the shard bound by the caller, which keeps its own plan.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionedJobRunner {
+
+    /** Work on one inclusive account ID range, in the range's transaction; returns rows processed. */
+    @FunctionalInterface
+    public interface RangeWork {
+        int apply(long fromAccountId, long toAccountId);
+    }
+
+    private final JobPartitionRepository partitionRepository;
+    private final AccountRepository accountRepository;
+    private final JobLeaseService leaseService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.scheduling.partition-ttl:5m}")
+    private Duration partitionTtl;
+
+    @Value("${billing.scheduling.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${billing.scheduling.poll-ms:1000}")
+    private long pollMs;
+
+    @Value("${billing.scheduling.retention:7d}")
+    private Duration retention;
+
+    private TransactionTemplate transaction;
+
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Takes part in run {@code runKey} of {@code jobName} until every range
+     * is completed or has exhausted its attempts (see above for the latter).
+     *
+     * @return rows processed by this replica
+     */
+    public int run(String jobName, String runKey, int chunkSize, RangeWork work) {
+        plan(jobName, runKey, chunkSize);
+        String owner = leaseService.getInstanceId();
+        int processed = 0;
+        int ranges = 0;
+        while (true) {
+            List<Long> claimable = partitionRepository.findClaimable(jobName, runKey, maxAttempts);
+            if (claimable.isEmpty()) {
+                if (partitionRepository.countInFlight(jobName, runKey) == 0) {
+                    break;
+                }
+                // Another replica holds the rest: wait in case it dies and its ranges expire
+                sleep();
+                continue;
+            }
+            // Start at a different range on each replica so they rarely race for the same claim
+            int offset = Math.floorMod(owner.hashCode(), claimable.size());
+            for (int i = 0; i < claimable.size(); i++) {
+                Integer done = runRange(jobName, claimable.get((offset + i) % claimable.size()), owner, work);
+                if (done != null) {
+                    processed += done;
+                    ranges++;
+                }
+            }
+        }
+        log.info("{} run {}: this replica completed {} ranges, {} rows", jobName, runKey, ranges, processed);
+        long abandoned = partitionRepository.countAbandoned(jobName, runKey, maxAttempts);
+        if (abandoned > 0) {
+            log.error("{} run {}: {} ranges abandoned after {} failed attempts each", jobName, runKey,
+                    abandoned, maxAttempts);
+            meterRegistry.counter("billing.scheduling.ranges", "job", jobName, "outcome", "abandoned")
+                    .increment(abandoned);
+        }
+        return processed;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void plan(String jobName, String runKey, int chunkSize) {
+        if (partitionRepository.existsByJobNameAndRunKey(jobName, runKey)) {
+            return;
+        }
+        try {
+            transaction.executeWithoutResult(status -> {
+                Long minId = accountRepository.findMinId();
+                Long maxId = accountRepository.findMaxId();
+                if (minId == null) {
+                    return;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                List<JobPartition> partitions = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += chunkSize) {
+                    partitions.add(JobPartition.builder()
+                            .jobName(jobName)
+                            .runKey(runKey)
+                            .fromAccountId(from)
+                            .toAccountId(Math.min(from + chunkSize - 1, maxId))
+                            .attempts(0)
+                            .createdAt(now)
+                            .build());
+                }
+                partitionRepository.deleteCreatedBefore(jobName, now.minus(retention));
+                partitionRepository.saveAllAndFlush(partitions);
+                log.info("{} run {}: planned {} ranges of {} accounts", jobName, runKey, partitions.size(), chunkSize);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("{} run {} was planned by another replica", jobName, runKey);
+        }
+    }
+
+    /** Claims and runs one range; {@code null} if it was not ours to run or did not complete. */
+    private Integer runRange(String jobName, Long id, String owner, RangeWork work) {
+        Integer claimed = transaction.execute(status -> partitionRepository.claim(
+                id, owner, partitionTtl.toNanos(), maxAttempts));
+        if (claimed == null || claimed == 0) {
+            return null;
+        }
+        try {
+            Integer processed = transaction.execute(status -> {
+                JobPartition range = partitionRepository.findById(id).orElseThrow();
+                int rows = work.apply(range.getFromAccountId(), range.getToAccountId());
+                if (partitionRepository.complete(id, owner, rows) == 0) {
+                    // Our claim expired and the range went to another replica: undo our copy of the work
+                    status.setRollbackOnly();
+                    return null;
+                }
+                return rows;
+            });
+            meterRegistry.counter("billing.scheduling.ranges", "job", jobName,
+                    "outcome", processed != null ? "completed" : "lost").increment();
+            return processed;
+        } catch (RuntimeException e) {
+            log.warn("{} range {} failed, released for retry: {}", jobName, id, e.getMessage());
+            meterRegistry.counter("billing.scheduling.ranges", "job", jobName, "outcome", "failed").increment();
+            transaction.execute(status -> partitionRepository.release(id, owner));
+            return null;
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ranges held by other replicas", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.cap.SpendCounters;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Balance and spend of an account as seen by the debit/credit logic. Weekly
+ * and monthly spend are as of today: a counter of an earlier week or month
+ * reads as zero.
+ *
+ * @param seqNo last ledger entry folded in; always 0 in column mode
+ */
+public record AccountBalance(BigDecimal balance, BigDecimal dailySpent, BigDecimal weeklySpent,
+        BigDecimal monthlySpent, long seqNo) {
+
+    /** State held directly on the account row (column mode). */
+    public static AccountBalance of(Account account) {
+        SpendCounters spent = SpendCounters.of(account, account.getDailySpent(), LocalDate.now());
+        return new AccountBalance(account.getBalance(), account.getDailySpent(), spent.weekly(), spent.monthly(), 0L);
+    }
+
+    /** Spend counted against the caps. */
+    public SpendCounters spent() {
+        return new SpendCounters(dailySpent, weeklySpent, monthlySpent);
+    }
+
+    /** State after a debit of {@code amount} counting {@code spend} towards the caps. */
+    public AccountBalance debited(BigDecimal amount, BigDecimal spend) {
+        return new AccountBalance(balance.subtract(amount), dailySpent.add(spend), weeklySpent.add(spend),
+                monthlySpent.add(spend), seqNo);
+    }
+}
@@ -0,0 +1,102 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for account reads: concurrent reads of the same userId share
+ * one in-flight lookup and every waiter gets its result (or its exception).
+ * <p>
+ * Nothing is kept once the lookup completes, so this is not a cache: a read
+ * can only get a result at most one lookup old, as if it had arrived a few
+ * milliseconds earlier. A cache, if one is added, belongs inside the loader
+ * so that cache misses are coalesced too.
+ * <p>
+ * Metrics: {@code billing.reads.lookups} (lookups actually run),
+ * {@code billing.reads.coalesced} (reads served by another thread's lookup),
+ * {@code billing.reads.waiters} (waiters per lookup),
+ * {@code billing.reads.wait} (time waiters spent blocked) and
+ * {@code billing.reads.in-flight}.
+ */
+@Component
+@Slf4j
+public class AccountReadCoalescer {
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final Counter lookups;
+    private final Counter coalesced;
+    private final DistributionSummary waitersPerLookup;
+    private final Timer waitTime;
+
+    public AccountReadCoalescer(MeterRegistry meterRegistry) {
+        lookups = meterRegistry.counter("billing.reads.lookups");
+        coalesced = meterRegistry.counter("billing.reads.coalesced");
+        waitersPerLookup = meterRegistry.summary("billing.reads.waiters");
+        waitTime = meterRegistry.timer("billing.reads.wait");
+        Gauge.builder("billing.reads.in-flight", flights, Map::size).register(meterRegistry);
+    }
+
+    private record Flight(CompletableFuture<AccountResponse> result, AtomicInteger waiters) {
+    }
+
+    /** Runs {@code loader} unless a lookup for {@code userId} is already in flight, then shares its result. */
+    public AccountResponse load(String userId, Supplier<AccountResponse> loader) {
+        Flight mine = new Flight(new CompletableFuture<>(), new AtomicInteger());
+        Flight running = flights.putIfAbsent(userId, mine);
+        if (running != null) {
+            return await(running);
+        }
+
+        lookups.increment();
+        try {
+            AccountResponse response = loader.get();
+            mine.result().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(userId, mine);
+            int waiters = mine.waiters().get();
+            waitersPerLookup.record(waiters);
+            if (waiters > 0) {
+                log.debug("Account lookup for userId={} shared with {} concurrent reads", userId, waiters);
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private AccountResponse await(Flight flight) {
+        flight.waiters().incrementAndGet();
+        coalesced.increment();
+        long start = System.nanoTime();
+        try {
+            return flight.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -1,27 +1,48 @@
 package com.smart.mobility.smartmobilitybillingservice.service;
 
+import com.smart.mobility.smartmobilitybillingservice.cap.CapDecision;
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicyEngine;
+import com.smart.mobility.smartmobilitybillingservice.cap.SpendCounters;
 import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
 import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentEntry;
 import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentResponse;
 import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
 import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
 import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
 import com.smart.mobility.smartmobilitybillingservice.exception.AccountNotFoundException;
-import com.smart.mobility.smartmobilitybillingservice.exception.DailyCapExceededException;
-import com.smart.mobility.smartmobilitybillingservice.exception.InsufficientBalanceException;
+import com.smart.mobility.smartmobilitybillingservice.jfr.BillingOperationEvent;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
 import com.smart.mobility.smartmobilitybillingservice.messaging.PaymentEventPublisher;
 import com.smart.mobility.smartmobilitybillingservice.model.Account;
 import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
 import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
 import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import com.smart.mobility.smartmobilitybillingservice.scheduling.PartitionedJobRunner;
+import com.smart.mobility.smartmobilitybillingservice.sharding.OnEachShard;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardedBy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -29,16 +50,42 @@ import java.util.Optional;
 @Slf4j
 public class BillingService {
 
+    /** Job name of the midnight reset in {@code job_partitions}. */
+    public static final String DAILY_RESET_JOB = "daily-reset";
+
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
     private final PaymentEventPublisher eventPublisher;
+    private final LedgerService ledgerService;
+    private final ShardedBalanceService shardedBalanceService;
+    private final AccountReadCoalescer accountReads;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     /**
-     * Daily spending ceiling in XOF (or the account currency). Configurable per
-     * environment.
+     * Daily, weekly and monthly spending ceilings per account tier, in XOF (or
+     * the account currency). See {@link CapPolicyEngine}.
      */
-    @Value("${billing.daily-cap:50000}")
-    private BigDecimal dailyCap;
+    private final CapPolicyEngine capPolicy;
+
+    private final PartitionedJobRunner partitionedJobs;
+
+    /** Samples the routine lines of {@link #processDebit}; failures are always logged. */
+    private final HotPathLog hotPathLog;
+
+    /**
+     * Ledger mode: balance changes are appended to the ledger instead of
+     * updating the {@code accounts} row in place. See {@link LedgerService}.
+     */
+    @Value("${billing.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    /** Accounts per range of the partitioned midnight reset. */
+    @Value("${billing.reset.chunk-size:10000}")
+    private int resetChunkSize;
+
+    /** Maximum number of userIds bound into one {@code IN} query by batch lookups. */
+    @Value("${billing.query.in-chunk-size:1000}")
+    private int inChunkSize;
 
     // ─────────────────────────────────────────────────────────────
     // 1. Create Account
@@ -48,6 +95,7 @@ public class BillingService {
      * Creates a new account for a user.
      * Called when a UserCreated event is received or via the REST endpoint.
      */
+    @ShardedBy("#request.userId()")
     @Transactional
     public AccountResponse createAccount(CreateAccountRequest request) {
         if (accountRepository.existsByUserId(request.userId())) {
@@ -83,23 +131,31 @@ public class BillingService {
      * @param description optional description
      * @return updated account information
      */
+    @ShardedBy("#userId")
     @Transactional
     public AccountResponse topUp(String userId, BigDecimal amount, String description) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Top-up amount must be positive.");
         }
 
+        BillingOperationEvent jfr = BillingOperationEvent.start("topUp", null);
         Account account = findAccountByUserId(userId);
-        account.setBalance(account.getBalance().add(amount));
-        account = accountRepository.save(account);
+        AccountBalance current = readBalance(account);
+        jfr.lookedUp();
+        AccountBalance balance = applyDelta(account, current, TransactionType.CREDIT,
+                amount, BigDecimal.ZERO, null);
+        jfr.applied();
 
-        saveTransaction(account.getId(), null, amount, TransactionType.CREDIT,
-                TransactionStatus.SUCCESS, description != null ? description : "Account top-up");
+        saveTransaction(account.getId(), amount, TransactionType.CREDIT, TransactionStatus.SUCCESS,
+                TransactionReason.TOP_UP, description);
+        jfr.recorded();
 
         eventPublisher.publishAccountCredited(userId, amount);
+        jfr.published();
+        jfr.finish("SUCCESS");
 
-        log.info("Top-up of {} credited to userId={}. New balance={}", amount, userId, account.getBalance());
-        return toResponse(account);
+        log.info("Top-up of {} credited to userId={}. New balance={}", amount, userId, balance.balance());
+        return toResponse(account, balance);
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -112,111 +168,342 @@ public class BillingService {
      * <li>Idempotence check — skip if already processed</li>
      * <li>Account existence check</li>
      * <li>Balance check</li>
-     * <li>Daily cap check (trims amount if needed)</li>
+     * <li>Spending cap check (trims amount if needed)</li>
      * <li>Debit the account</li>
      * <li>Publish PAYMENT_COMPLETED</li>
      * </ol>
      * On any business failure, records a FAILED transaction and publishes
-     * PAYMENT_FAILED.
+     * PAYMENT_FAILED. Failures are returned as a {@link DebitOutcome}, never
+     * thrown.
      */
+    @ShardedBy("#event.userId()")
     @Transactional
-    public void processDebit(TripPricedEvent event) {
-        log.info("Processing debit for tripId={}, userId={}, amount={}",
-                event.tripId(), event.userId(), event.finalAmount());
+    public DebitOutcome processDebit(TripPricedEvent event) {
+        return processDebit(event, 0);
+    }
+
+    /**
+     * {@link #processDebit(TripPricedEvent)} for a message delivered
+     * {@code redeliveries} times before; the count is recorded on the JFR event.
+     */
+    @ShardedBy("#event.userId()")
+    @Transactional
+    public DebitOutcome processDebit(TripPricedEvent event, int redeliveries) {
+        if (hotPathLog.sampled()) {
+            log.info("Processing debit for tripId={}, userId={}, amount={}",
+                    event.tripId(), event.userId(), event.finalAmount());
+        }
+
+        BillingOperationEvent jfr = BillingOperationEvent.start("processDebit", event.tripId(), redeliveries);
 
         // ── Idempotence ──────────────────────────────────────────
         Optional<Transaction> existing = transactionRepository.findByTripId(event.tripId());
         if (existing.isPresent()) {
             log.warn("Duplicate TRIP_PRICED event for tripId={}. Skipping.", event.tripId());
-            return;
+            jfr.lookedUp();
+            jfr.finish("DUPLICATE");
+            return DebitOutcome.duplicate(event.finalAmount());
         }
 
         // ── Account existence ─────────────────────────────────────
-        Account account;
-        try {
-            account = findAccountByUserId(event.userId());
-        } catch (AccountNotFoundException ex) {
+        Account account = accountRepository.findByUserId(event.userId()).orElse(null);
+        DebitOutcome outcome;
+        AccountBalance balance = null;
+        if (account == null) {
             log.error("No account for userId={}", event.userId());
-            saveTransaction(null, event.tripId(), event.finalAmount(), TransactionType.DEBIT,
-                    TransactionStatus.FAILED, "Account not found for userId: " + event.userId());
-            eventPublisher.publishPaymentFailed(event.tripId(), event.userId(),
-                    event.finalAmount(), ex.getMessage(), event.penalty());
-            return;
-        }
+            jfr.lookedUp();
+            outcome = DebitOutcome.noAccount(event.finalAmount());
+        } else {
+            balance = readBalance(account);
+            jfr.lookedUp();
+
+            // ── Balance check and spending caps ───────────────────
+            outcome = evaluateDebit(account, balance.balance(), balance.spent(), event.finalAmount());
+            if (outcome.status() == DebitOutcome.Status.TRIMMED) {
+                log.info("Trimming amount {} to cap remainder {} for userId={}",
+                        event.finalAmount(), outcome.amount(), event.userId());
+            }
 
-        BigDecimal amount = event.finalAmount();
-        boolean penalty = event.penalty();
+            // ── Debit ─────────────────────────────────────────────
+            if (outcome.isSuccess()) {
+                AccountBalance debited = applyDelta(account, balance, TransactionType.DEBIT,
+                        outcome.amount().negate(), outcome.amount(), event.tripId());
+                if (debited != null) {
+                    balance = debited;
+                } else {
+                    outcome = refusedBySlots(account, event.finalAmount());
+                }
+            }
+            jfr.applied();
+        }
 
-        try {
-            // ── Balance check ─────────────────────────────────────
-            if (account.getBalance().compareTo(amount) < 0) {
-                throw new InsufficientBalanceException(account.getBalance(), amount);
+        if (outcome.isSuccess()) {
+            saveTripTransaction(account.getId(), event, outcome.amount(), TransactionStatus.SUCCESS,
+                    TransactionReason.TRIP_PAYMENT, outcome.cappedFrom(), null);
+            jfr.recorded();
+
+            eventPublisher.publishPaymentCompleted(event.tripId(), event.userId(), outcome.amount(), event.penalty());
+            jfr.published();
+            jfr.finish(outcome.status() == DebitOutcome.Status.TRIMMED ? "CAPPED" : "SUCCESS");
+            if (hotPathLog.sampled()) {
+                log.info("Debit of {} for tripId={} succeeded. Remaining balance={}",
+                        outcome.amount(), event.tripId(), balance.balance());
             }
+            return outcome;
+        }
 
-            // ── Daily cap logic ───────────────────────────────────
-            BigDecimal remaining = dailyCap.subtract(account.getDailySpent());
-            if (remaining.compareTo(BigDecimal.ZERO) <= 0) {
-                throw new DailyCapExceededException();
+        TransactionReason reason = outcome.failureReason();
+        String message = outcome.failureMessage(event.userId());
+        if (account != null) {
+            log.warn("Debit failed for tripId={}: {}", event.tripId(), message);
+        }
+        saveTripTransaction(account != null ? account.getId() : null, event, event.finalAmount(),
+                TransactionStatus.FAILED, reason, null, outcome.storedDescription(event.userId()));
+        jfr.recorded();
+        eventPublisher.publishPaymentFailed(event.tripId(), event.userId(), event.finalAmount(), message,
+                event.penalty());
+        jfr.published();
+        jfr.finish(reason.name());
+        return outcome;
+    }
+
+    /**
+     * Catch-up variant of {@link #processDebit}: same rules and outcomes for a
+     * whole batch in one transaction. Duplicates are found with one query,
+     * accounts are loaded per {@code IN} chunk, and the debits of an account
+     * are folded into a single balance update (in ledger mode each debit stays
+     * its own entry so that entries keep their tripId). Per-event lines are
+     * logged at debug level only.
+     * <p>
+     * All events must live on the same shard; the caller binds it.
+     */
+    @Transactional
+    public DebitBatchResult processDebitBatch(List<TripPricedEvent> events) {
+        BillingOperationEvent jfr = BillingOperationEvent.start("processDebitBatch", null);
+
+        // ── Idempotence, within the batch and against the database ──
+        Map<String, TripPricedEvent> byTripId = new LinkedHashMap<>();
+        events.forEach(event -> byTripId.putIfAbsent(event.tripId(), event));
+        for (List<String> chunk : chunks(new ArrayList<>(byTripId.keySet()))) {
+            transactionRepository.findTripIdsIn(chunk).forEach(byTripId::remove);
+        }
+        int duplicates = events.size() - byTripId.size();
+
+        // ── Accounts ──────────────────────────────────────────────
+        Map<String, Account> accounts = new HashMap<>();
+        LinkedHashSet<String> userIds = new LinkedHashSet<>();
+        byTripId.values().forEach(event -> userIds.add(event.userId()));
+        for (List<String> chunk : chunks(new ArrayList<>(userIds))) {
+            accountRepository.findByUserIdIn(chunk).forEach(a -> accounts.put(a.getUserId(), a));
+        }
+        jfr.lookedUp();
+
+        Map<Long, PendingDebit> pending = new LinkedHashMap<>();
+        List<Transaction> recorded = new ArrayList<>(byTripId.size());
+        List<Runnable> publications = new ArrayList<>(byTripId.size());
+        int paid = 0;
+        for (TripPricedEvent event : byTripId.values()) {
+            Account account = accounts.get(event.userId());
+            if (account == null) {
+                log.debug("No account for userId={}", event.userId());
+                DebitOutcome missing = DebitOutcome.noAccount(event.finalAmount());
+                recorded.add(tripTransaction(null, event, event.finalAmount(), TransactionStatus.FAILED,
+                        TransactionReason.ACCOUNT_NOT_FOUND, null, missing.storedDescription(event.userId())));
+                String reason = missing.failureMessage(event.userId());
+                publications.add(() -> eventPublisher.publishPaymentFailed(event.tripId(), event.userId(),
+                        event.finalAmount(), reason, event.penalty()));
+                continue;
             }
-            // Trim if capped
-            if (account.getDailySpent().add(amount).compareTo(dailyCap) > 0) {
-                log.info("Trimming amount {} to daily-cap remainder {} for userId={}",
-                        amount, remaining, event.userId());
-                amount = remaining;
+            PendingDebit debit = pending.computeIfAbsent(account.getId(), id -> {
+                AccountBalance initial = readBalance(account);
+                return new PendingDebit(account, initial, initial.spent());
+            });
+            DebitOutcome outcome = evaluateDebit(account, debit.balance.balance(),
+                    debit.spent.plus(debit.debited), event.finalAmount());
+            if (!outcome.isSuccess()) {
+                log.debug("Debit failed for tripId={}: {}", event.tripId(), outcome.status());
+                recorded.add(tripTransaction(account.getId(), event, event.finalAmount(), TransactionStatus.FAILED,
+                        outcome.failureReason(), null, outcome.storedDescription(event.userId())));
+                publications.add(() -> eventPublisher.publishPaymentFailed(event.tripId(), event.userId(),
+                        event.finalAmount(), outcome.failureMessage(event.userId()), event.penalty()));
+                continue;
             }
+            BigDecimal amount = outcome.amount();
+            if (ledgerEnabled) {
+                debit.balance = applyDelta(account, debit.balance, TransactionType.DEBIT, amount.negate(),
+                        amount, event.tripId());
+                debit.debited = debit.debited.add(amount);
+            } else {
+                debit.add(amount);
+            }
+            recorded.add(tripTransaction(account.getId(), event, amount, TransactionStatus.SUCCESS,
+                    TransactionReason.TRIP_PAYMENT, outcome.cappedFrom(), null));
+            publications.add(() -> eventPublisher.publishPaymentCompleted(event.tripId(), event.userId(),
+                    amount, event.penalty()));
+            paid++;
+        }
 
-            // ── Debit ─────────────────────────────────────────────
-            account.setBalance(account.getBalance().subtract(amount));
-            account.setDailySpent(account.getDailySpent().add(amount));
-            accountRepository.save(account);
-
-            saveTransaction(account.getId(), event.tripId(), amount, TransactionType.DEBIT,
-                    TransactionStatus.SUCCESS,
-                    "Trip payment for tripId: " + event.tripId() + (penalty ? " (PENALTY)" : ""));
+        // ── One balance update per account ────────────────────────
+        if (!ledgerEnabled) {
+            for (PendingDebit debit : pending.values()) {
+                if (debit.debited.signum() > 0 && applyDelta(debit.account, debit.initial, TransactionType.DEBIT,
+                        debit.debited.negate(), debit.debited, null) == null) {
+                    // Concurrent debits drained the slots: roll back, the redelivered batch is billed again
+                    throw new IllegalStateException("Balance slots of accountId=" + debit.account.getId()
+                            + " no longer cover the batch debit");
+                }
+            }
+        }
+        jfr.applied();
 
-            eventPublisher.publishPaymentCompleted(event.tripId(), event.userId(), amount, penalty);
-            log.info("Debit of {} for tripId={} succeeded. Remaining balance={}",
-                    amount, event.tripId(), account.getBalance());
+        transactionRepository.saveAll(recorded);
+        recorded.forEach(tx -> applicationEventPublisher.publishEvent(new PaymentRecordedEvent(tx)));
+        jfr.recorded();
 
-        } catch (InsufficientBalanceException | DailyCapExceededException ex) {
-            log.warn("Debit failed for tripId={}: {}", event.tripId(), ex.getMessage());
-            saveTransaction(account.getId(), event.tripId(), event.finalAmount(), TransactionType.DEBIT,
-                    TransactionStatus.FAILED, ex.getMessage());
-            eventPublisher.publishPaymentFailed(event.tripId(), event.userId(),
-                    event.finalAmount(), ex.getMessage(), penalty);
-        }
+        publications.forEach(Runnable::run);
+        jfr.published();
+        jfr.finish("BATCH");
+        return new DebitBatchResult(paid, byTripId.size() - paid, duplicates);
     }
 
     // ─────────────────────────────────────────────────────────────
     // 4. Daily Cap Reset — every day at midnight
     // ─────────────────────────────────────────────────────────────
 
+    /**
+     * Midnight trigger. Every replica takes part: the accounts are split into
+     * ranges of {@code billing.reset.chunk-size} that the replicas claim one at
+     * a time (see {@link PartitionedJobRunner}), so each range is reset once
+     * and a replica failing mid-reset leaves its ranges to the others.
+     */
     @Scheduled(cron = "0 0 0 * * *")
-    @Transactional
+    @OnEachShard
     public void resetDailySpent() {
-        log.info("Resetting dailySpent for all accounts...");
-        accountRepository.findAll().forEach(account -> {
-            account.setDailySpent(BigDecimal.ZERO);
-            accountRepository.save(account);
-        });
+        resetDailySpent(LocalDate.now().toString());
+    }
+
+    /**
+     * Resets dailySpent of all accounts of the current shard, as run
+     * {@code runKey} of the reset: a run already completed is not repeated.
+     *
+     * @return accounts and balance slots reset by this replica
+     */
+    @OnEachShard
+    public int resetDailySpent(String runKey) {
+        if (ledgerEnabled) {
+            // Ledger entries carry their spend date: yesterday's spend simply stops counting
+            log.info("Ledger mode: dailySpent rolls over by date, nothing to reset.");
+            return 0;
+        }
+        log.info("Resetting dailySpent for all accounts (run {})...", runKey);
+        BillingOperationEvent jfr = BillingOperationEvent.start("resetDailySpent", null);
+        int reset = partitionedJobs.run(DAILY_RESET_JOB, runKey, resetChunkSize, (fromId, toId) ->
+                accountRepository.resetDailySpentBetween(fromId, toId, LocalDateTime.now())
+                        + shardedBalanceService.resetDailySpent(fromId, toId));
+        jfr.applied();
+        jfr.finish("SUCCESS");
         log.info("Daily cap reset complete.");
+        return reset;
     }
 
     // ─────────────────────────────────────────────────────────────
-    // 5. Query
+    // 5. Sharded balances (hot fleet/corporate accounts)
     // ─────────────────────────────────────────────────────────────
 
-    @Transactional(readOnly = true)
+    /**
+     * Splits the balance of a hot account across {@code shards} sub-balance
+     * rows, or folds it back into the account row when {@code shards <= 1}.
+     * Column mode only: ledger mode has no in-place updates to spread.
+     */
+    @ShardedBy("#userId")
+    @Transactional
+    public AccountResponse reshardBalance(String userId, int shards) {
+        if (ledgerEnabled) {
+            throw new IllegalStateException("Balance sharding is not available in ledger mode.");
+        }
+        Account account = findAccountByUserId(userId);
+        AccountBalance balance = shardedBalanceService.reshard(account, shards);
+        log.info("Balance of userId={} split across {} slot(s)", userId, Math.max(shards, 1));
+        return toResponse(account, balance);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // 6. Cap tier
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Moves an account to a cap tier ({@code billing.caps.tiers.*}); a blank
+     * tier puts it back on the default tier. Unknown tiers are accepted and
+     * capped like the default tier until they are configured.
+     */
+    @ShardedBy("#userId")
+    @Transactional
+    public AccountResponse setCapTier(String userId, String tier) {
+        Account account = findAccountByUserId(userId);
+        account.setTier(tier != null && !tier.isBlank() ? tier.trim().toLowerCase(Locale.ROOT) : null);
+        accountRepository.save(account);
+        log.info("Account of userId={} moved to cap tier {}", userId, account.getTier());
+        return toResponse(account, readBalance(account));
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // 7. Query
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Concurrent reads of the same user (app screens, pricing service) share one
+     * lookup, see {@link AccountReadCoalescer}. Deliberately not transactional:
+     * threads waiting on another thread's lookup must not hold a connection.
+     */
+    @ShardedBy("#userId")
     public AccountResponse getAccountByUserId(String userId) {
-        return toResponse(findAccountByUserId(userId));
+        return accountReads.load(userId, () -> {
+            Account account = findAccountByUserId(userId);
+            return toResponse(account, readBalance(account));
+        });
     }
 
-    @Transactional(readOnly = true)
+    /** Shares its lookup with {@link #getAccountByUserId(String)}. */
+    @ShardedBy("#userId")
     public DailySpentResponse getDailySpent(String userId) {
-        Account account = findAccountByUserId(userId);
-        return new DailySpentResponse(userId, account.getDailySpent().doubleValue());
+        return new DailySpentResponse(userId, getAccountByUserId(userId).dailySpent().doubleValue());
+    }
+
+    /**
+     * Daily spent and remaining cap of many users at once (pricing service, at
+     * route closure). Duplicates are ignored; userIds are looked up with one
+     * {@code IN} query per {@code billing.query.in-chunk-size} ids, and their
+     * ledger or slot balances with one grouped query per chunk. All userIds
+     * must live on the current shard: callers split by shard first.
+     */
+    @Transactional(readOnly = true)
+    public DailySpentBatchResponse getDailySpentBatch(List<String> userIds) {
+        List<String> requested = new ArrayList<>(new LinkedHashSet<>(userIds != null ? userIds : List.of()));
+        Map<String, Account> found = new HashMap<>();
+        Map<Long, AccountBalance> balances = new HashMap<>();
+        for (List<String> chunk : chunks(requested)) {
+            List<Account> accounts = accountRepository.findByUserIdIn(chunk);
+            accounts.forEach(a -> found.put(a.getUserId(), a));
+            balances.putAll(readBalances(accounts));
+        }
+
+        List<DailySpentEntry> entries = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>();
+        for (String userId : requested) {
+            Account account = found.get(userId);
+            if (account == null) {
+                missing.add(userId);
+                continue;
+            }
+            BigDecimal dailySpent = balances.get(account.getId()).dailySpent();
+            BigDecimal dailyCap = capPolicy.current().dailyCap(account.getTier());
+            entries.add(new DailySpentEntry(userId, dailySpent, dailyCap.subtract(dailySpent).max(BigDecimal.ZERO)));
+        }
+        log.debug("Daily spent batch: {} requested, {} missing", requested.size(), missing.size());
+        return new DailySpentBatchResponse(entries, missing);
     }
 
+    @ShardedBy("#userId")
     @Transactional(readOnly = true)
     public java.util.List<Transaction> getTransactionsByUserId(String userId) {
         Account account = findAccountByUserId(userId);
@@ -232,60 +519,237 @@ public class BillingService {
                 .orElseThrow(() -> new AccountNotFoundException(userId));
     }
 
-    private void saveTransaction(Long accountId, String tripId, BigDecimal amount,
-            TransactionType type, TransactionStatus status,
-            String description) {
-        Transaction tx = Transaction.builder()
+    /** Top-ups and purchases; {@code description} is the caller's free text, if any. */
+    private void saveTransaction(Long accountId, BigDecimal amount, TransactionType type,
+            TransactionStatus status, TransactionReason reason, String description) {
+        save(Transaction.builder()
                 .accountId(accountId)
-                .tripId(tripId)
                 .amount(amount)
                 .type(type)
                 .status(status)
+                .reasonCode(reason)
+                .description(description)
+                .build());
+    }
+
+    /**
+     * Trip debits: structured columns; {@code description} only for failures
+     * whose text carries data no column holds (see {@link DebitOutcome#storedDescription}).
+     */
+    private void saveTripTransaction(Long accountId, TripPricedEvent event, BigDecimal amount,
+            TransactionStatus status, TransactionReason reason, BigDecimal cappedFrom, String description) {
+        save(tripTransaction(accountId, event, amount, status, reason, cappedFrom, description));
+    }
+
+    private static Transaction tripTransaction(Long accountId, TripPricedEvent event, BigDecimal amount,
+            TransactionStatus status, TransactionReason reason, BigDecimal cappedFrom, String description) {
+        return Transaction.builder()
+                .accountId(accountId)
+                .tripId(event.tripId())
+                .amount(amount)
+                .type(TransactionType.DEBIT)
+                .status(status)
+                .reasonCode(reason)
+                .penalty(event.penalty())
+                .cappedFrom(cappedFrom)
                 .description(description)
                 .build();
+    }
+
+    private void save(Transaction tx) {
         transactionRepository.save(tx);
+        if (tx.getTripId() != null) {
+            // Wakes long-polling clients once this transaction commits
+            applicationEventPublisher.publishEvent(new PaymentRecordedEvent(tx));
+        }
+    }
+
+    /**
+     * Outcome of a trip debit of {@code amount} given the balance and spend:
+     * paid in full, trimmed to the smallest cap remainder of the account's
+     * tier, or refused for the balance or a reached cap.
+     */
+    private DebitOutcome evaluateDebit(Account account, BigDecimal balance, SpendCounters spent, BigDecimal amount) {
+        if (balance.compareTo(amount) < 0) {
+            return DebitOutcome.insufficient(balance, amount);
+        }
+        CapDecision decision = capPolicy.current().evaluate(account.getTier(), spent, amount);
+        if (decision.rejected()) {
+            return DebitOutcome.capReached(decision.limitedBy(), amount);
+        }
+        return decision.isTrimmed()
+                ? DebitOutcome.trimmed(amount, decision.amount(), decision.limitedBy())
+                : DebitOutcome.paid(amount);
+    }
+
+    /**
+     * Why the slots of a sharded account refused a debit that passed the
+     * checks on their totals: a concurrent debit took the balance or the
+     * daily allowance first. The slots are still locked by this transaction,
+     * so the totals read here are the ones that refused it.
+     */
+    private DebitOutcome refusedBySlots(Account account, BigDecimal requested) {
+        AccountBalance total = shardedBalanceService.read(account);
+        return total.balance().compareTo(requested) < 0
+                ? DebitOutcome.insufficient(total.balance(), requested)
+                : DebitOutcome.capReached(CapPeriod.DAILY, requested);
+    }
+
+    /** Splits {@code ids} into views of at most {@code billing.query.in-chunk-size} elements. */
+    private List<List<String>> chunks(List<String> ids) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += inChunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + inChunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    /** Debits of one account accumulated by {@link #processDebitBatch}. */
+    private static final class PendingDebit {
+        private final Account account;
+        private final AccountBalance initial;
+        /** Spend before the batch, read once per account. */
+        private final SpendCounters spent;
+        private AccountBalance balance;
+        private BigDecimal debited = BigDecimal.ZERO;
+
+        PendingDebit(Account account, AccountBalance initial, SpendCounters spent) {
+            this.account = account;
+            this.initial = initial;
+            this.spent = spent;
+            this.balance = initial;
+        }
+
+        void add(BigDecimal amount) {
+            debited = debited.add(amount);
+            balance = balance.debited(amount, amount);
+        }
+    }
+
+    /**
+     * Current balance: snapshot plus tail in ledger mode, the sum of the slots
+     * for a sharded account, otherwise the account row.
+     */
+    private AccountBalance readBalance(Account account) {
+        if (ledgerEnabled) {
+            return ledgerService.current(account);
+        }
+        return account.isSharded() ? shardedBalanceService.read(account) : AccountBalance.of(account);
+    }
+
+    /** {@link #readBalance} of many accounts, by account id, with one grouped query per storage mode. */
+    private Map<Long, AccountBalance> readBalances(List<Account> accounts) {
+        if (ledgerEnabled) {
+            return ledgerService.currentOf(accounts);
+        }
+        Map<Long, AccountBalance> balances = new HashMap<>();
+        List<Account> sharded = new ArrayList<>();
+        for (Account account : accounts) {
+            if (account.isSharded()) {
+                sharded.add(account);
+            } else {
+                balances.put(account.getId(), AccountBalance.of(account));
+            }
+        }
+        if (sharded.isEmpty()) {
+            return balances;
+        }
+        Map<Long, AccountBalance> totals = shardedBalanceService.readAll(sharded);
+        // Slots are created with the flag; an account without rows falls back to its own row
+        sharded.forEach(a -> balances.put(a.getId(), totals.getOrDefault(a.getId(), AccountBalance.of(a))));
+        return balances;
+    }
+
+    /**
+     * Applies a balance change: an in-place update of the account row in column
+     * mode, a single slot update for a sharded account, a pure append in
+     * ledger mode. {@code null} when the slots of a sharded account refuse a
+     * debit (see {@link #refusedBySlots}); never for credits.
+     */
+    private @Nullable AccountBalance applyDelta(Account account, AccountBalance current, TransactionType type,
+            BigDecimal balanceDelta, BigDecimal dailySpentDelta, String tripId) {
+        if (ledgerEnabled) {
+            return ledgerService.append(account, current, type, balanceDelta, dailySpentDelta, tripId);
+        }
+        if (account.isSharded()) {
+            return balanceDelta.signum() >= 0
+                    ? shardedBalanceService.credit(account, balanceDelta)
+                    : shardedBalanceService.debit(account, balanceDelta.negate(), dailySpentDelta);
+        }
+        account.setBalance(account.getBalance().add(balanceDelta));
+        account.setDailySpent(account.getDailySpent().add(dailySpentDelta));
+        if (dailySpentDelta.signum() != 0) {
+            SpendCounters.accumulate(account, dailySpentDelta, LocalDate.now());
+        }
+        accountRepository.save(account);
+        return AccountBalance.of(account);
     }
 
     private AccountResponse toResponse(Account account) {
+        return toResponse(account, AccountBalance.of(account));
+    }
+
+    private AccountResponse toResponse(Account account, AccountBalance balance) {
         return new AccountResponse(
                 account.getId(),
                 account.getUserId(),
-                account.getBalance(),
-                account.getDailySpent(),
+                balance.balance(),
+                balance.dailySpent(),
                 account.getCurrency());
     }
 
+    /**
+     * Synchronous charge for purchases (passes/subscriptions). Purchases do
+     * not count towards the spending caps. A refusal is returned, not thrown:
+     * the REST layer turns it into an error with {@link ChargeResult#orElseThrow()}.
+     */
+    @ShardedBy("#userId")
     @Transactional
-    public AccountResponse charge(String userId, java.math.BigDecimal amount, String description) {
-        if (amount == null || amount.compareTo(java.math.BigDecimal.ZERO) <= 0) {
+    public ChargeResult charge(String userId, BigDecimal amount, String description) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Charge amount must be positive.");
         }
 
-        Account account = findAccountByUserId(userId);
-
-        try {
-            // Balance check
-            if (account.getBalance().compareTo(amount) < 0) {
-                throw new com.smart.mobility.smartmobilitybillingservice.exception.InsufficientBalanceException(account.getBalance(), amount);
+        BillingOperationEvent jfr = BillingOperationEvent.start("charge", null);
+        Account account = accountRepository.findByUserId(userId).orElse(null);
+        if (account == null) {
+            jfr.lookedUp();
+            jfr.finish(TransactionReason.ACCOUNT_NOT_FOUND.name());
+            return new ChargeResult(userId, DebitOutcome.noAccount(amount), null);
+        }
+        AccountBalance balance = readBalance(account);
+        jfr.lookedUp();
+
+        // Balance check only: purchases do not touch dailySpent or the caps
+        DebitOutcome outcome = balance.balance().compareTo(amount) < 0
+                ? DebitOutcome.insufficient(balance.balance(), amount)
+                : DebitOutcome.paid(amount);
+        if (outcome.isSuccess()) {
+            AccountBalance debited = applyDelta(account, balance, TransactionType.DEBIT, amount.negate(),
+                    BigDecimal.ZERO, null);
+            if (debited != null) {
+                balance = debited;
+            } else {
+                outcome = refusedBySlots(account, amount);
             }
+            jfr.applied();
+        }
 
-            // NOTE: Purchases (passes/subscriptions) should NOT count towards the dailySpent/daily cap.
-            // Therefore we DO NOT apply daily cap logic here and we DO NOT increment dailySpent.
-
-            // Debit (only update balance)
-            account.setBalance(account.getBalance().subtract(amount));
-            account = accountRepository.save(account);
+        if (!outcome.isSuccess()) {
+            log.warn("Charge failed for userId={}: {}", userId, outcome.status());
+            saveTransaction(account.getId(), amount, TransactionType.DEBIT, TransactionStatus.FAILED,
+                    outcome.failureReason(), outcome.storedDescription(userId));
+            jfr.recorded();
+            jfr.finish(outcome.failureReason().name());
+            return new ChargeResult(userId, outcome, null);
+        }
 
-            saveTransaction(account.getId(), null, amount, TransactionType.DEBIT,
-                    TransactionStatus.SUCCESS, description != null ? description : "Purchase charge");
+        saveTransaction(account.getId(), amount, TransactionType.DEBIT, TransactionStatus.SUCCESS,
+                TransactionReason.PURCHASE, description);
+        jfr.recorded();
+        jfr.finish("SUCCESS");
 
-            log.info("Charge of {} for userId={} succeeded. Remaining balance={}", amount, userId, account.getBalance());
-            return toResponse(account);
-        } catch (InsufficientBalanceException ex) {
-            log.warn("Charge failed for userId={}: {}", userId, ex.getMessage());
-            saveTransaction(account.getId(), null, amount, TransactionType.DEBIT,
-                    TransactionStatus.FAILED, ex.getMessage());
-            throw ex;
-        }
+        log.info("Charge of {} for userId={} succeeded. Remaining balance={}", amount, userId, balance.balance());
+        return new ChargeResult(userId, outcome, toResponse(account, balance));
     }
 }
@@ -0,0 +1,20 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Outcome of {@link BillingService#charge}.
+ *
+ * @param userId  charged user
+ * @param outcome {@link DebitOutcome.Status#PAID}, or why the charge was refused
+ * @param account account after the charge; {@code null} unless paid
+ */
+public record ChargeResult(String userId, DebitOutcome outcome, @Nullable AccountResponse account) {
+
+    /** The updated account, or the exception mapped by {@code GlobalExceptionHandler} for a refusal. */
+    public AccountResponse orElseThrow() {
+        outcome.orElseThrow(userId);
+        return account;
+    }
+}
@@ -0,0 +1,56 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentEntry;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Daily spent of many users across shards, shared by the REST batch endpoint
+ * and the internal gRPC API: one {@link BillingService#getDailySpentBatch}
+ * per shard holding some of the users, merged back into request order.
+ */
+@Service
+@RequiredArgsConstructor
+public class DailySpentLookup {
+
+    private final BillingService billingService;
+    private final ShardRouter shardRouter;
+
+    public DailySpentBatchResponse lookup(List<String> requestedUserIds) {
+        List<String> userIds = new ArrayList<>(new LinkedHashSet<>(
+                requestedUserIds != null ? requestedUserIds : List.of()));
+        Map<String, List<String>> byShard = shardRouter.partition(userIds);
+        if (byShard.size() <= 1) {
+            return billingService.getDailySpentBatch(userIds);
+        }
+        Map<String, DailySpentEntry> found = new HashMap<>(userIds.size() * 2);
+        Set<String> unknown = new HashSet<>();
+        byShard.forEach((shard, ids) -> {
+            DailySpentBatchResponse part = shardRouter.onShard(shard, () -> billingService.getDailySpentBatch(ids));
+            part.accounts().forEach(entry -> found.put(entry.userId(), entry));
+            unknown.addAll(part.missingUserIds());
+        });
+        // Back to request order
+        List<DailySpentEntry> entries = new ArrayList<>(found.size());
+        List<String> missing = new ArrayList<>(unknown.size());
+        for (String userId : userIds) {
+            DailySpentEntry entry = found.get(userId);
+            if (entry != null) {
+                entries.add(entry);
+            } else if (unknown.contains(userId)) {
+                missing.add(userId);
+            }
+        }
+        return new DailySpentBatchResponse(entries, missing);
+    }
+}
@@ -0,0 +1,15 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+/**
+ * Outcome of {@link BillingService#processDebitBatch}.
+ *
+ * @param paid       trips debited (possibly trimmed to the daily cap)
+ * @param failed     trips recorded as FAILED (no account, balance or cap)
+ * @param duplicates events skipped because their tripId was already processed
+ */
+public record DebitBatchResult(int paid, int failed, int duplicates) {
+
+    public int total() {
+        return paid + failed + duplicates;
+    }
+}
@@ -0,0 +1,135 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
+import com.smart.mobility.smartmobilitybillingservice.exception.AccountNotFoundException;
+import com.smart.mobility.smartmobilitybillingservice.exception.DailyCapExceededException;
+import com.smart.mobility.smartmobilitybillingservice.exception.InsufficientBalanceException;
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Outcome of a trip debit or a charge. Business failures (empty wallet, cap
+ * reached, unknown account) are ordinary values here rather than exceptions,
+ * so a burst of them costs no stack traces; the failure message is only
+ * built when a PAYMENT_FAILED event needs it. {@link #orElseThrow(String)}
+ * turns a failure into the matching exception at the REST boundary.
+ *
+ * @param status    what happened
+ * @param requested amount asked for
+ * @param amount    amount debited; zero unless successful
+ * @param available balance seen by the check, for {@link Status#INSUFFICIENT_BALANCE}
+ * @param period    cap that trimmed or rejected the debit
+ */
+public record DebitOutcome(Status status, BigDecimal requested, BigDecimal amount,
+        @Nullable BigDecimal available, @Nullable CapPeriod period) {
+
+    public enum Status {
+        PAID,
+        TRIMMED,
+        INSUFFICIENT_BALANCE,
+        CAP_REACHED,
+        NO_ACCOUNT,
+        DUPLICATE
+    }
+
+    public static DebitOutcome paid(BigDecimal amount) {
+        return new DebitOutcome(Status.PAID, amount, amount, null, null);
+    }
+
+    public static DebitOutcome trimmed(BigDecimal requested, BigDecimal amount, CapPeriod period) {
+        return new DebitOutcome(Status.TRIMMED, requested, amount, null, period);
+    }
+
+    public static DebitOutcome insufficient(BigDecimal available, BigDecimal requested) {
+        return new DebitOutcome(Status.INSUFFICIENT_BALANCE, requested, BigDecimal.ZERO, available, null);
+    }
+
+    public static DebitOutcome capReached(CapPeriod period, BigDecimal requested) {
+        return new DebitOutcome(Status.CAP_REACHED, requested, BigDecimal.ZERO, null, period);
+    }
+
+    public static DebitOutcome noAccount(BigDecimal requested) {
+        return new DebitOutcome(Status.NO_ACCOUNT, requested, BigDecimal.ZERO, null, null);
+    }
+
+    public static DebitOutcome duplicate(BigDecimal requested) {
+        return new DebitOutcome(Status.DUPLICATE, requested, BigDecimal.ZERO, null, null);
+    }
+
+    /** Money moved (possibly trimmed to a cap). */
+    public boolean isSuccess() {
+        return status == Status.PAID || status == Status.TRIMMED;
+    }
+
+    /** Recorded as a FAILED transaction. */
+    public boolean isFailure() {
+        return !isSuccess() && status != Status.DUPLICATE;
+    }
+
+    /** Original amount of a trimmed debit, as stored in {@code cappedFrom}. */
+    public @Nullable BigDecimal cappedFrom() {
+        return status == Status.TRIMMED ? requested : null;
+    }
+
+    /** Reason of the FAILED transaction; {@code null} unless {@link #isFailure()}. */
+    public @Nullable TransactionReason failureReason() {
+        return switch (status) {
+            case INSUFFICIENT_BALANCE -> TransactionReason.INSUFFICIENT_BALANCE;
+            case CAP_REACHED -> switch (period != null ? period : CapPeriod.DAILY) {
+                case DAILY -> TransactionReason.DAILY_CAP_EXCEEDED;
+                case WEEKLY -> TransactionReason.WEEKLY_CAP_EXCEEDED;
+                case MONTHLY -> TransactionReason.MONTHLY_CAP_EXCEEDED;
+            };
+            case NO_ACCOUNT -> TransactionReason.ACCOUNT_NOT_FOUND;
+            default -> null;
+        };
+    }
+
+    /**
+     * Failure text sent in PAYMENT_FAILED, worded like the exceptions
+     * {@link #orElseThrow(String)} raises; {@code null} unless
+     * {@link #isFailure()}.
+     */
+    public @Nullable String failureMessage(String userId) {
+        return switch (status) {
+            case INSUFFICIENT_BALANCE -> "Insufficient balance: available " + twoDecimals(available)
+                    + ", required " + twoDecimals(requested);
+            case CAP_REACHED -> (period != null ? period : CapPeriod.DAILY).capReachedMessage();
+            case NO_ACCOUNT -> "Account not found for userId: " + userId;
+            default -> null;
+        };
+    }
+
+    /**
+     * Text kept in the {@code description} column of the FAILED transaction:
+     * the {@link #failureMessage} when it holds data no column does (the userId
+     * of a missing account, the balance available at the time), {@code null}
+     * when {@link TransactionReason#render} rebuilds it.
+     */
+    public @Nullable String storedDescription(String userId) {
+        return status == Status.NO_ACCOUNT || status == Status.INSUFFICIENT_BALANCE
+                ? failureMessage(userId)
+                : null;
+    }
+
+    /**
+     * Passes successes and duplicates through; throws the exception mapped by
+     * {@code GlobalExceptionHandler} for a failure.
+     */
+    public DebitOutcome orElseThrow(String userId) {
+        return switch (status) {
+            case INSUFFICIENT_BALANCE -> throw new InsufficientBalanceException(available, requested);
+            case CAP_REACHED -> throw new DailyCapExceededException(period != null ? period : CapPeriod.DAILY);
+            case NO_ACCOUNT -> throw new AccountNotFoundException(userId);
+            default -> this;
+        };
+    }
+
+    /** Same text as {@code %.2f}, without a {@code Formatter}. */
+    private static String twoDecimals(@Nullable BigDecimal value) {
+        return value == null ? "null" : value.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,244 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.exception.IdempotencyKeyReusedException;
+import com.smart.mobility.smartmobilitybillingservice.model.IdempotencyRecord;
+import com.smart.mobility.smartmobilitybillingservice.repository.IdempotencyRecordRepository;
+import com.smart.mobility.smartmobilitybillingservice.scheduling.ClusterLease;
+import com.smart.mobility.smartmobilitybillingservice.sharding.OnEachShard;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Makes REST operations safe to retry with an {@code Idempotency-Key}.
+ * <ol>
+ * <li>Recently completed keys are answered from a bounded in-memory LRU.</li>
+ * <li>A duplicate arriving while the first request is still running on this
+ * replica waits for it and shares its outcome.</li>
+ * <li>Otherwise the key is claimed by inserting its {@link IdempotencyRecord}
+ * first, in the same transaction as the operation. A concurrent request on
+ * another replica blocks on that insert, then replays the committed record.</li>
+ * </ol>
+ * Only successful outcomes are stored: a failed operation rolls back with
+ * its record, left no side effect, and is simply executed again on retry.
+ * An operation that returns a refusal it must record (a refused charge) can
+ * leave the key unused instead, see {@link #execute(String, String, String,
+ * Class, Supplier, Predicate)}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+
+    @Value("${billing.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${billing.idempotency.memory-capacity:10000}")
+    private int memoryCapacity;
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private Map<String, StoredResponse> recent;
+
+    /** Outcome of an idempotent call; {@code replayed} is true when the operation did not run. */
+    public record IdempotentResult<T>(T body, boolean replayed) {
+    }
+
+    private record StoredResponse(String fingerprint, String body, LocalDateTime expiresAt) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<@Nullable StoredResponse> outcome) {
+    }
+
+    @PostConstruct
+    void init() {
+        recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > memoryCapacity;
+            }
+        });
+    }
+
+    /**
+     * Runs {@code operation} at most once per key.
+     *
+     * @param key         client-supplied key; {@code null} disables idempotency
+     * @param userId      user the operation is for, stored with the record
+     * @param fingerprint identifies the request payload, see {@link #fingerprint(Object...)}
+     */
+    public <T> IdempotentResult<T> execute(String key, String userId, String fingerprint, Class<T> type,
+            Supplier<T> operation) {
+        return execute(key, userId, fingerprint, type, operation, body -> true);
+    }
+
+    /**
+     * {@link #execute(String, String, String, Class, Supplier)} where an
+     * outcome rejected by {@code keep} leaves the key unused: its record is
+     * dropped, the writes of the operation still commit, and the next request
+     * with the key (including a duplicate waiting for this one) runs the
+     * operation again.
+     */
+    public <T> IdempotentResult<T> execute(String key, String userId, String fingerprint, Class<T> type,
+            Supplier<T> operation, Predicate<? super T> keep) {
+        if (key == null || key.isBlank()) {
+            return new IdempotentResult<>(operation.get(), false);
+        }
+
+        StoredResponse cached = recent.get(key);
+        if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+            return replay(key, fingerprint, cached, type);
+        }
+
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running;
+        while ((running = inFlight.putIfAbsent(key, mine)) != null) {
+            if (!running.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            log.debug("Coalescing duplicate request onto in-flight Idempotency-Key={}", key);
+            StoredResponse stored = await(running.outcome());
+            if (stored != null) {
+                return replay(key, fingerprint, stored, type);
+            }
+        }
+
+        try {
+            Object[] executed = new Object[1];
+            StoredResponse stored = claimAndRun(key, userId, fingerprint, () -> {
+                T body = operation.get();
+                executed[0] = body;
+                return body;
+            }, body -> keep.test(type.cast(body)));
+            mine.outcome().complete(stored);
+            if (stored == null) {
+                return new IdempotentResult<>(type.cast(executed[0]), false);
+            }
+            recent.put(key, stored);
+            return executed[0] != null
+                    ? new IdempotentResult<>(type.cast(executed[0]), false)
+                    : replay(key, fingerprint, stored, type);
+        } catch (RuntimeException e) {
+            mine.outcome().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** SHA-256 over the operation name and its parameters. */
+    public static String fingerprint(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(Objects.toString(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${billing.idempotency.purge-interval-ms:3600000}")
+    @OnEachShard
+    @ClusterLease("idempotency-purge")
+    @Transactional
+    public void purgeExpired() {
+        int purged = repository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    /** The stored response, or {@code null} when {@code keep} rejected the outcome and the key was left unused. */
+    private @Nullable StoredResponse claimAndRun(String key, String userId, String fingerprint,
+            Supplier<Object> operation, Predicate<Object> keep) {
+        try {
+            return transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                IdempotencyRecord existing = repository.findById(key).orElse(null);
+                if (existing != null && existing.getExpiresAt().isAfter(now)) {
+                    return toStored(existing);
+                }
+                if (existing != null) {
+                    repository.delete(existing);
+                    repository.flush();
+                }
+                // Claim the key before doing any work: concurrent replicas block here
+                IdempotencyRecord record = repository.saveAndFlush(IdempotencyRecord.builder()
+                        .idempotencyKey(key)
+                        .userId(userId)
+                        .fingerprint(fingerprint)
+                        .createdAt(now)
+                        .expiresAt(now.plusHours(ttlHours))
+                        .build());
+                Object body = operation.get();
+                if (!keep.test(body)) {
+                    repository.delete(record);
+                    return null;
+                }
+                record.setResponseBody(jsonMapper.writeValueAsString(body));
+                return toStored(repository.save(record));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another replica claimed and committed the key first
+            return repository.findById(key)
+                    .map(this::toStored)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private <T> IdempotentResult<T> replay(String key, String fingerprint, StoredResponse stored, Class<T> type) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException(key);
+        }
+        log.info("Replaying stored response for Idempotency-Key={}", key);
+        return new IdempotentResult<>(jsonMapper.readValue(stored.body(), type), true);
+    }
+
+    private @Nullable StoredResponse await(CompletableFuture<@Nullable StoredResponse> outcome) {
+        try {
+            return outcome.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private StoredResponse toStored(IdempotencyRecord record) {
+        return new StoredResponse(record.getFingerprint(), record.getResponseBody(), record.getExpiresAt());
+    }
+}
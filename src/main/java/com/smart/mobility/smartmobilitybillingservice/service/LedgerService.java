@@ -0,0 +1,302 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.cap.SpendCounters;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceSnapshot;
+import com.smart.mobility.smartmobilitybillingservice.model.LedgerEntry;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceSnapshotRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.LedgerEntryRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.LedgerEntryRepository.LedgerTail;
+import com.smart.mobility.smartmobilitybillingservice.sharding.OnEachShard;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only balance ledger, active when {@code billing.ledger.enabled=true}.
+ * <p>
+ * Every balance change is a new {@link LedgerEntry}; nothing is updated in
+ * place on the debit path. The current state of an account is its latest
+ * {@link BalanceSnapshot} (or, before the first snapshot, the values still on
+ * the {@code accounts} row) plus the tail of entries appended since. Daily,
+ * weekly and monthly spend are folded the same way: snapshot counters still
+ * in their period plus the tail entries dated in it.
+ * Snapshots are refreshed every {@code snapshot-every-entries} entries or
+ * {@code snapshot-interval-minutes}, whichever comes first.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${billing.ledger.snapshot-every-entries:100}")
+    private long snapshotEveryEntries;
+
+    @Value("${billing.ledger.snapshot-interval-minutes:15}")
+    private long snapshotIntervalMinutes;
+
+    @Value("${billing.ledger.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    @Value("${billing.ledger.rebuild-chunk-size:5000}")
+    private int rebuildChunkSize;
+
+    @Value("${billing.ledger.rebuild-parallelism:4}")
+    private int rebuildParallelism;
+
+    // ─────────────────────────────────────────────────────────────
+    // Read
+    // ─────────────────────────────────────────────────────────────
+
+    /** Current state of the account: latest snapshot plus tail. */
+    @Transactional(readOnly = true)
+    public AccountBalance current(Account account) {
+        LocalDate today = LocalDate.now();
+        AccountBalance base = baseline(account, snapshotRepository.findById(account.getId()).orElse(null), today);
+        return ledgerEntryRepository.sumTail(account.getId(), base.seqNo(), today, SpendCounters.weekStart(today),
+                        today.withDayOfMonth(1)).stream()
+                .findFirst()
+                .map(tail -> fold(base, tail))
+                .orElse(base);
+    }
+
+    /**
+     * Current state of any {@code accounts}, by account id: one {@code IN}
+     * query for the snapshots and one grouped aggregate for the tails.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, AccountBalance> currentOf(Collection<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return Map.of();
+        }
+        LocalDate today = LocalDate.now();
+        List<Long> ids = accounts.stream().map(Account::getId).toList();
+        Map<Long, BalanceSnapshot> snapshots = snapshotRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(BalanceSnapshot::getAccountId, Function.identity()));
+        Map<Long, LedgerTail> tails = ledgerEntryRepository.sumTailsOf(ids, today, SpendCounters.weekStart(today),
+                        today.withDayOfMonth(1)).stream()
+                .collect(Collectors.toMap(LedgerTail::getAccountId, Function.identity()));
+        return fold(accounts, snapshots, tails, today);
+    }
+
+    /**
+     * Current state of {@code accounts}, all within [{@code fromId}, {@code toId}]:
+     * one query for the snapshots and one aggregate for the tails.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, AccountBalance> currentInRange(List<Account> accounts, long fromId, long toId) {
+        return foldRange(accounts, snapshotsInRange(fromId, toId), fromId, toId, LocalDate.now());
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Write
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Appends an entry on top of {@code current} (as returned by
+     * {@link #current(Account)} in the same transaction). A concurrent append
+     * for the same account fails on the (accountId, seqNo) unique constraint
+     * and the caller's transaction is rolled back and redelivered/retried.
+     */
+    @Transactional
+    public AccountBalance append(Account account, AccountBalance current, TransactionType type,
+            BigDecimal balanceDelta, BigDecimal dailySpentDelta, String tripId) {
+        LocalDate today = LocalDate.now();
+        long seqNo = current.seqNo() + 1;
+        ledgerEntryRepository.saveAndFlush(LedgerEntry.builder()
+                .accountId(account.getId())
+                .seqNo(seqNo)
+                .type(type)
+                .balanceDelta(balanceDelta)
+                .dailySpentDelta(dailySpentDelta)
+                .spendDate(today)
+                .tripId(tripId)
+                .build());
+
+        AccountBalance next = new AccountBalance(
+                current.balance().add(balanceDelta),
+                current.dailySpent().add(dailySpentDelta),
+                current.weeklySpent().add(dailySpentDelta),
+                current.monthlySpent().add(dailySpentDelta),
+                seqNo);
+        // Already in the persistence context from current(): no extra query
+        BalanceSnapshot snapshot = snapshotRepository.findById(account.getId()).orElse(null);
+        if (snapshotDue(snapshot, seqNo)) {
+            snapshotRepository.save(toSnapshot(account.getId(), next, today, snapshot));
+        }
+        return next;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Rebuild
+    // ─────────────────────────────────────────────────────────────
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Recomputes every account from its snapshot and tail, writes a fresh
+     * snapshot and refreshes the {@code balance}/{@code dailySpent} columns of
+     * the account row. Accounts are split into ID ranges processed in
+     * parallel, one aggregate query and one transaction per range.
+     *
+     * @return number of accounts rebuilt
+     */
+    @OnEachShard
+    public int rebuildAll() {
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        if (minId == null) {
+            return 0;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += rebuildChunkSize) {
+            ranges.add(new long[] { from, Math.min(from + rebuildChunkSize - 1, maxId) });
+        }
+
+        long start = System.nanoTime();
+        String shard = ShardContext.current();
+        ForkJoinPool pool = new ForkJoinPool(rebuildParallelism);
+        try {
+            int rebuilt = pool.submit(() -> ranges.parallelStream()
+                    .mapToInt(range -> ShardContext.callIn(shard,
+                            () -> transactionTemplate.execute(status -> rebuildRange(range[0], range[1]))))
+                    .sum()).get();
+            log.info("Ledger rebuild complete: {} accounts in {} ranges, {} ms",
+                    rebuilt, ranges.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+            return rebuilt;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ledger rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ledger rebuild failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int rebuildRange(long fromId, long toId) {
+        LocalDate today = LocalDate.now();
+        List<Account> accounts = accountRepository.findByIdBetween(fromId, toId);
+        Map<Long, BalanceSnapshot> snapshots = snapshotsInRange(fromId, toId);
+        Map<Long, AccountBalance> current = foldRange(accounts, snapshots, fromId, toId, today);
+
+        for (Account account : accounts) {
+            AccountBalance rebuilt = current.get(account.getId());
+            snapshotRepository.save(toSnapshot(account.getId(), rebuilt, today, snapshots.get(account.getId())));
+            account.setBalance(rebuilt.balance());
+            account.setDailySpent(rebuilt.dailySpent());
+            account.setWeeklySpent(rebuilt.weeklySpent());
+            account.setMonthlySpent(rebuilt.monthlySpent());
+            account.setLastSpendDate(today);
+        }
+        accountRepository.saveAll(accounts);
+        return accounts.size();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private Map<Long, BalanceSnapshot> snapshotsInRange(long fromId, long toId) {
+        return snapshotRepository.findByAccountIdBetween(fromId, toId).stream()
+                .collect(Collectors.toMap(BalanceSnapshot::getAccountId, Function.identity()));
+    }
+
+    private Map<Long, AccountBalance> foldRange(List<Account> accounts, Map<Long, BalanceSnapshot> snapshots,
+            long fromId, long toId, LocalDate today) {
+        Map<Long, LedgerTail> tails = ledgerEntryRepository.sumTailsInRange(fromId, toId, today,
+                        SpendCounters.weekStart(today), today.withDayOfMonth(1)).stream()
+                .collect(Collectors.toMap(LedgerTail::getAccountId, Function.identity()));
+        return fold(accounts, snapshots, tails, today);
+    }
+
+    private Map<Long, AccountBalance> fold(Collection<Account> accounts, Map<Long, BalanceSnapshot> snapshots,
+            Map<Long, LedgerTail> tails, LocalDate today) {
+        Map<Long, AccountBalance> current = new HashMap<>();
+        for (Account account : accounts) {
+            AccountBalance base = baseline(account, snapshots.get(account.getId()), today);
+            LedgerTail tail = tails.get(account.getId());
+            current.put(account.getId(), tail != null ? fold(base, tail) : base);
+        }
+        return current;
+    }
+
+    /** Snapshot state, or the account row itself (seqNo 0) before the first snapshot. */
+    private AccountBalance baseline(Account account, BalanceSnapshot snapshot, LocalDate today) {
+        if (snapshot != null) {
+            BigDecimal dailySpent = today.equals(snapshot.getSpendDate()) ? snapshot.getDailySpent() : BigDecimal.ZERO;
+            SpendCounters spent = SpendCounters.of(dailySpent, snapshot.getWeeklySpent(), snapshot.getMonthlySpent(),
+                    snapshot.getSpendDate(), today);
+            return new AccountBalance(snapshot.getBalance(), dailySpent, spent.weekly(), spent.monthly(),
+                    snapshot.getSeqNo());
+        }
+        boolean touchedToday = account.getUpdatedAt() == null || today.equals(account.getUpdatedAt().toLocalDate());
+        SpendCounters spent = SpendCounters.of(account,
+                touchedToday ? account.getDailySpent() : BigDecimal.ZERO, today);
+        return new AccountBalance(account.getBalance(), spent.daily(), spent.weekly(), spent.monthly(), 0L);
+    }
+
+    private AccountBalance fold(AccountBalance base, LedgerTail tail) {
+        return new AccountBalance(
+                base.balance().add(tail.getBalanceDelta()),
+                base.dailySpent().add(tail.getDailySpentDelta()),
+                base.weeklySpent().add(tail.getWeeklySpentDelta()),
+                base.monthlySpent().add(tail.getMonthlySpentDelta()),
+                tail.getLastSeqNo());
+    }
+
+    private boolean snapshotDue(BalanceSnapshot snapshot, long seqNo) {
+        if (snapshot == null) {
+            return seqNo >= snapshotEveryEntries;
+        }
+        return seqNo - snapshot.getSeqNo() >= snapshotEveryEntries
+                || snapshot.getTakenAt().isBefore(LocalDateTime.now().minusMinutes(snapshotIntervalMinutes));
+    }
+
+    private BalanceSnapshot toSnapshot(Long accountId, AccountBalance state, LocalDate today,
+            BalanceSnapshot existing) {
+        BalanceSnapshot snapshot = existing != null ? existing : new BalanceSnapshot();
+        snapshot.setAccountId(accountId);
+        snapshot.setSeqNo(state.seqNo());
+        snapshot.setBalance(state.balance());
+        snapshot.setDailySpent(state.dailySpent());
+        snapshot.setWeeklySpent(state.weeklySpent());
+        snapshot.setMonthlySpent(state.monthlySpent());
+        snapshot.setSpendDate(today);
+        snapshot.setTakenAt(LocalDateTime.now());
+        return snapshot;
+    }
+}
@@ -0,0 +1,10 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+
+/**
+ * Spring application event raised when the outcome of a trip payment is
+ * recorded; delivered to listeners once the debit transaction commits.
+ */
+public record PaymentRecordedEvent(Transaction transaction) {
+}
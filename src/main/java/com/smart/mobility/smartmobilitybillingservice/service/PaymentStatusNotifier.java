@@ -0,0 +1,195 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.sharding.TripShardIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-poll support for {@code GET /api/payments/{tripId}/await}: requests
+ * are parked until {@link BillingService#processDebit} commits the outcome
+ * of the trip, so a client needs one request per trip instead of polling.
+ * <p>
+ * At most {@code billing.payments.max-waiters} requests are parked at once
+ * (a few hundred bytes each); beyond that the request is answered
+ * {@code 503} with {@code Retry-After} instead of being held. A waiter whose
+ * timeout expires looks the payment up once more and is answered
+ * {@code 204 No Content} if it is still pending.
+ * <p>
+ * Debits committed on this instance wake their waiters directly. Debits
+ * billed by another replica are seen through its PAYMENT_COMPLETED/FAILED
+ * event, which every replica receives on its own anonymous queue
+ * ({@code messaging.PaymentOutcomeListener}): a replica with waiters for the
+ * trip looks the payment up, a few more times with backoff if the event
+ * overtook the commit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatusNotifier {
+
+    /** Lookups of a trip announced by another replica before its payment is found committed. */
+    private static final int REMOTE_LOOKUPS = 5;
+    private static final long REMOTE_LOOKUP_BACKOFF_MS = 50;
+
+    private final TripShardIndex tripShardIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${billing.payments.max-waiters:10000}")
+    private int maxWaiters;
+
+    @Value("${billing.payments.await-max-timeout-ms:30000}")
+    private long maxTimeoutMs;
+
+    /** Waiters per tripId; lists are only read or modified inside the map's atomic compute methods. */
+    private final Map<String, List<DeferredResult<ResponseEntity<Transaction>>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private Counter notified;
+    private Counter rejected;
+    private ScheduledExecutorService lookups;
+
+    @PostConstruct
+    void init() {
+        notified = meterRegistry.counter("billing.payments.await.notified");
+        rejected = meterRegistry.counter("billing.payments.await.rejected");
+        Gauge.builder("billing.payments.await.waiting", waiting, AtomicInteger::get).register(meterRegistry);
+        lookups = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-await-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookups.shutdownNow();
+    }
+
+    /** Weak validator of a payment outcome; a trip's transaction is written once and never updated. */
+    public static String etag(Transaction transaction) {
+        return "W/\"" + transaction.getId() + "-" + transaction.getStatus() + "\"";
+    }
+
+    /**
+     * Answers as soon as the payment of {@code tripId} is recorded, or after
+     * {@code timeoutMs}, kept between 1 ms and
+     * {@code billing.payments.await-max-timeout-ms}: zero or less would mean
+     * no timeout at all to the servlet container.
+     */
+    public DeferredResult<ResponseEntity<Transaction>> await(String tripId, long timeoutMs) {
+        DeferredResult<ResponseEntity<Transaction>> result = new DeferredResult<>(
+                Math.max(1L, Math.min(timeoutMs, maxTimeoutMs)), () -> recheck(tripId));
+        if (waiting.incrementAndGet() > maxWaiters) {
+            waiting.decrementAndGet();
+            rejected.increment();
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+            return result;
+        }
+
+        // Register before looking: a commit in between is then either seen by the
+        // query or delivered to this waiter, never lost
+        waiters.compute(tripId, (k, list) -> {
+            List<DeferredResult<ResponseEntity<Transaction>>> next = list != null ? list : new ArrayList<>(1);
+            next.add(result);
+            return next;
+        });
+        result.onCompletion(() -> release(tripId, result));
+
+        tripShardIndex.findTransaction(tripId).ifPresent(tx -> {
+            result.setResult(toResponse(tx));
+            release(tripId, result);
+        });
+        return result;
+    }
+
+    /** Wakes every waiter of the trip once the debit transaction has committed. */
+    @TransactionalEventListener
+    public void onPaymentRecorded(PaymentRecordedEvent event) {
+        wake(event.transaction());
+    }
+
+    /**
+     * A payment event of {@code tripId} was published, by this replica or
+     * another one: wakes the waiters of the trip parked here, if any, once its
+     * payment is found.
+     */
+    public void onPaymentPublished(String tripId) {
+        if (waiters.containsKey(tripId)) {
+            lookUp(tripId, 0);
+        }
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void wake(Transaction tx) {
+        List<DeferredResult<ResponseEntity<Transaction>>> parked = waiters.remove(tx.getTripId());
+        if (parked == null) {
+            return;
+        }
+        waiting.addAndGet(-parked.size());
+        notified.increment(parked.size());
+        ResponseEntity<Transaction> response = toResponse(tx);
+        parked.forEach(result -> result.setResult(response));
+        log.debug("Pushed payment outcome of tripId={} to {} waiters", tx.getTripId(), parked.size());
+    }
+
+    /** Events are published before the debit commits: not found yet, the trip is looked up again shortly. */
+    private void lookUp(String tripId, int attempt) {
+        tripShardIndex.findTransaction(tripId).ifPresentOrElse(this::wake, () -> {
+            if (attempt + 1 < REMOTE_LOOKUPS && waiters.containsKey(tripId) && !lookups.isShutdown()) {
+                lookups.schedule(() -> lookUp(tripId, attempt + 1), REMOTE_LOOKUP_BACKOFF_MS << attempt,
+                        TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private ResponseEntity<Transaction> toResponse(Transaction tx) {
+        return ResponseEntity.ok().eTag(etag(tx)).body(tx);
+    }
+
+    /** Last lookup at timeout: catches payments committed by another replica. */
+    private ResponseEntity<Transaction> recheck(String tripId) {
+        return tripShardIndex.findTransaction(tripId)
+                .map(this::toResponse)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /** Unparks a waiter that completed on its own (timeout, early hit, client gone). */
+    private void release(String tripId, DeferredResult<ResponseEntity<Transaction>> result) {
+        waiters.computeIfPresent(tripId, (k, list) -> {
+            if (list.remove(result)) {
+                waiting.decrementAndGet();
+            }
+            return list.isEmpty() ? null : list;
+        });
+    }
+}
@@ -0,0 +1,416 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.ReconciliationStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRange;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRun;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository.ShardTotal;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationMismatchRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationRangeRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationRangeRepository.RunTotals;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationRunRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository.AccountNet;
+import com.smart.mobility.smartmobilitybillingservice.scheduling.ClusterLease;
+import com.smart.mobility.smartmobilitybillingservice.scheduling.JobLeaseService;
+import com.smart.mobility.smartmobilitybillingservice.sharding.OnEachShard;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardContext;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Nightly check that every balance equals the net of the account's
+ * successful transactions (credits minus debits).
+ * <p>
+ * Accounts are split into ID ranges of {@code chunk-size} processed by a
+ * fork/join pool of {@code parallelism} workers. Each range is read in one
+ * read-only REPEATABLE READ transaction, so balances and transaction sums
+ * come from the same snapshot, and the transactions are only ever
+ * aggregated by the database. Mismatches are written to
+ * {@code reconciliation_mismatches} together with a range checkpoint.
+ * <p>
+ * To stay out of the way of live debits the job takes no locks, pauses
+ * {@code pause-ms} after every range and stops after {@code max-duration};
+ * a paused, failed or interrupted run is resumed by the next trigger from
+ * its remaining ranges. With sharding, each shard keeps its own runs and
+ * report; the triggers reconcile the shards one after the other.
+ * <p>
+ * The nightly trigger runs on one replica per shard ({@link ClusterLease});
+ * if that replica dies, the next trigger resumes the run elsewhere. The
+ * manual triggers take the same lease, so they never run next to the nightly
+ * job of another replica.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationService {
+
+    /** Lease shared by the nightly and the manual triggers. */
+    public static final String LEASE = "reconciliation";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceShardRepository shardRepository;
+    private final LedgerService ledgerService;
+    private final ReconciliationRunRepository runRepository;
+    private final ReconciliationRangeRepository rangeRepository;
+    private final ReconciliationMismatchRepository mismatchRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ShardRouter shardRouter;
+    private final JobLeaseService leaseService;
+
+    @Value("${billing.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Value("${billing.reconciliation.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${billing.reconciliation.parallelism:2}")
+    private int parallelism;
+
+    @Value("${billing.reconciliation.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${billing.reconciliation.max-duration:4h}")
+    private Duration maxDuration;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private TransactionTemplate snapshotTransaction;
+    private TransactionTemplate writeTransaction;
+
+    private record RangeResult(int accounts, List<ReconciliationMismatch> mismatches) {
+    }
+
+    @PostConstruct
+    void init() {
+        snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setReadOnly(true);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Triggers
+    // ─────────────────────────────────────────────────────────────
+
+    @Scheduled(cron = "${billing.reconciliation.cron:0 30 1 * * *}")
+    @OnEachShard
+    @ClusterLease(LEASE)
+    public void reconcileNightly() {
+        if (!start()) {
+            log.warn("Skipping scheduled reconciliation: a run is already in progress");
+            return;
+        }
+        try {
+            execute(leaseService.current());
+        } catch (RuntimeException e) {
+            log.error("Scheduled reconciliation failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Runs (or resumes) a reconciliation of the current shard on the calling thread.
+     *
+     * @throws IllegalStateException if one is already in progress, here or on another replica
+     */
+    public ReconciliationRun reconcile() {
+        if (!start()) {
+            throw new IllegalStateException("A reconciliation is already in progress");
+        }
+        try (JobLeaseService.Lease lease = leaseService.tryAcquire(LEASE)) {
+            if (lease == null) {
+                throw new IllegalStateException("A reconciliation is in progress on another replica");
+            }
+            return execute(lease);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Starts (or resumes) a reconciliation in the background, under the lease
+     * of every shard; {@code false} if one is already in progress here or
+     * another replica holds the lease of any shard.
+     */
+    public boolean reconcileAsync() {
+        if (!start()) {
+            return false;
+        }
+        // Taken up front, so that a lease held elsewhere is reported to the caller
+        Map<String, JobLeaseService.Lease> leases = new LinkedHashMap<>();
+        try {
+            shardRouter.forEachShard(() -> leases.put(ShardContext.current(), leaseService.tryAcquire(LEASE)));
+        } catch (RuntimeException e) {
+            release(leases);
+            running.set(false);
+            throw e;
+        }
+        if (leases.containsValue(null)) {
+            log.info("Reconciliation not started: another replica holds its lease");
+            release(leases);
+            running.set(false);
+            return false;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                shardRouter.forEachShard(() -> {
+                    JobLeaseService.Lease lease = leases.get(ShardContext.current());
+                    if (!lease.isHeld()) {
+                        log.warn("Skipping reconciliation of shard {}: its lease was lost", ShardContext.current());
+                        return;
+                    }
+                    execute(lease);
+                });
+            } catch (RuntimeException e) {
+                log.error("Reconciliation failed", e);
+            } finally {
+                release(leases);
+                running.set(false);
+            }
+        }, "reconciliation");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Optional<ReconciliationRun> latestRun() {
+        return runRepository.findFirstByOrderByIdDesc();
+    }
+
+    public List<ReconciliationMismatch> mismatches(Long runId, int limit) {
+        return mismatchRepository.findByRunIdOrderByAccountIdAsc(runId, Limit.of(limit));
+    }
+
+    /** Leaves the current run resumable instead of cutting it off mid-range. */
+    @PreDestroy
+    void stop() {
+        stopRequested = true;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private static void release(Map<String, JobLeaseService.Lease> leases) {
+        leases.values().stream().filter(Objects::nonNull).forEach(JobLeaseService.Lease::close);
+    }
+
+    private boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        return true;
+    }
+
+    /**
+     * Checks the ranges still pending; stops between ranges (leaving the run
+     * PAUSED, to be resumed) once {@code lease} is lost.
+     */
+    private ReconciliationRun execute(JobLeaseService.@Nullable Lease lease) {
+        ReconciliationRun run = startOrResume();
+        Set<Long> done = rangeRepository.findCompletedFromAccountIds(run.getId());
+        List<long[]> pending = ranges(run).stream()
+                .filter(range -> !done.contains(range[0]))
+                .toList();
+        log.info("Reconciliation run {}: {} of {} ranges to check, parallelism={}",
+                run.getId(), pending.size(), run.getRangesTotal(), parallelism);
+
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        String shard = ShardContext.current();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> pending.parallelStream().forEach(range -> {
+                if (!stopRequested && System.nanoTime() < deadline && (lease == null || lease.isHeld())) {
+                    ShardContext.runIn(shard, () -> reconcileRange(run.getId(), range[0], range[1]));
+                    throttle();
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(run, ReconciliationStatus.FAILED);
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            finish(run, ReconciliationStatus.FAILED);
+            throw new IllegalStateException("Reconciliation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        if (lease != null && !lease.isHeld()) {
+            log.warn("Reconciliation run {} stopped: lease {} was lost", run.getId(), lease.getName());
+        }
+        ReconciliationRun finished = finish(run, null);
+        log.info("Reconciliation run {} {}: {}/{} ranges, {} accounts checked, {} mismatches, {} ms",
+                finished.getId(), finished.getStatus(), finished.getRangesDone(), finished.getRangesTotal(),
+                finished.getAccountsChecked(), finished.getMismatches(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return finished;
+    }
+
+    /** The latest run if it did not complete, otherwise a new one over the current ID bounds. */
+    private ReconciliationRun startOrResume() {
+        Optional<ReconciliationRun> latest = runRepository.findFirstByOrderByIdDesc();
+        if (latest.isPresent() && latest.get().getStatus() != ReconciliationStatus.COMPLETED) {
+            ReconciliationRun run = latest.get();
+            run.setStatus(ReconciliationStatus.RUNNING);
+            return runRepository.save(run);
+        }
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        int rangesTotal = minId == null ? 0 : (int) ((maxId - minId) / chunkSize + 1);
+        return runRepository.save(ReconciliationRun.builder()
+                .status(ReconciliationStatus.RUNNING)
+                .minAccountId(minId)
+                .maxAccountId(maxId)
+                .chunkSize(chunkSize)
+                .rangesTotal(rangesTotal)
+                .rangesDone(0)
+                .accountsChecked(0L)
+                .mismatches(0L)
+                .startedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /** Ranges of a run, from the bounds and chunk size it was started with. */
+    private List<long[]> ranges(ReconciliationRun run) {
+        List<long[]> ranges = new ArrayList<>();
+        if (run.getMinAccountId() == null) {
+            return ranges;
+        }
+        long size = run.getChunkSize();
+        for (long from = run.getMinAccountId(); from <= run.getMaxAccountId(); from += size) {
+            ranges.add(new long[] { from, Math.min(from + size - 1, run.getMaxAccountId()) });
+        }
+        return ranges;
+    }
+
+    private void reconcileRange(Long runId, long fromId, long toId) {
+        long start = System.nanoTime();
+        RangeResult result = snapshotTransaction.execute(status -> compareRange(runId, fromId, toId));
+        long durationMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        writeTransaction.executeWithoutResult(status -> {
+            mismatchRepository.saveAll(result.mismatches());
+            rangeRepository.save(ReconciliationRange.builder()
+                    .runId(runId)
+                    .fromAccountId(fromId)
+                    .toAccountId(toId)
+                    .accounts(result.accounts())
+                    .mismatches(result.mismatches().size())
+                    .durationMs(durationMs)
+                    .completedAt(LocalDateTime.now())
+                    .build());
+        });
+        for (ReconciliationMismatch mismatch : result.mismatches()) {
+            log.warn("Balance mismatch on accountId={}: balance={}, transactions={}, difference={}",
+                    mismatch.getAccountId(), mismatch.getBalance(), mismatch.getTransactionTotal(),
+                    mismatch.getDifference());
+        }
+    }
+
+    private RangeResult compareRange(Long runId, long fromId, long toId) {
+        List<Account> accounts = accountRepository.findByIdBetween(fromId, toId);
+        Map<Long, BigDecimal> balances = balancesInRange(accounts, fromId, toId);
+        Map<Long, BigDecimal> nets = transactionRepository
+                .sumNetInRange(fromId, toId, TransactionType.CREDIT, TransactionStatus.SUCCESS).stream()
+                .collect(Collectors.toMap(AccountNet::getAccountId, AccountNet::getNet));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ReconciliationMismatch> mismatches = new ArrayList<>();
+        for (Account account : accounts) {
+            BigDecimal balance = balances.get(account.getId());
+            BigDecimal net = nets.getOrDefault(account.getId(), BigDecimal.ZERO);
+            if (balance.compareTo(net) != 0) {
+                mismatches.add(ReconciliationMismatch.builder()
+                        .runId(runId)
+                        .accountId(account.getId())
+                        .balance(balance)
+                        .transactionTotal(net)
+                        .difference(balance.subtract(net))
+                        .detectedAt(now)
+                        .build());
+            }
+        }
+        return new RangeResult(accounts.size(), mismatches);
+    }
+
+    /** Balances as the billing path reads them: ledger, shard slots or the account row. */
+    private Map<Long, BigDecimal> balancesInRange(List<Account> accounts, long fromId, long toId) {
+        if (ledgerEnabled) {
+            return ledgerService.currentInRange(accounts, fromId, toId).entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().balance()));
+        }
+        Map<Long, BigDecimal> shardTotals = accounts.stream().anyMatch(Account::isSharded)
+                ? shardRepository.sumBalancesInRange(fromId, toId).stream()
+                        .collect(Collectors.toMap(ShardTotal::getAccountId, ShardTotal::getBalance))
+                : Map.of();
+        return accounts.stream().collect(Collectors.toMap(Account::getId, account -> account.isSharded()
+                ? shardTotals.getOrDefault(account.getId(), BigDecimal.ZERO)
+                : account.getBalance()));
+    }
+
+    private void throttle() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopRequested = true;
+        }
+    }
+
+    /** Stores the run's totals; {@code status == null} derives COMPLETED or PAUSED from its progress. */
+    private ReconciliationRun finish(ReconciliationRun run, ReconciliationStatus status) {
+        RunTotals totals = rangeRepository.sumByRunId(run.getId());
+        run.setRangesDone(totals.getRanges().intValue());
+        run.setAccountsChecked(totals.getAccounts());
+        run.setMismatches(totals.getMismatches());
+        run.setStatus(status != null ? status
+                : run.getRangesDone() >= run.getRangesTotal() ? ReconciliationStatus.COMPLETED
+                        : ReconciliationStatus.PAUSED);
+        run.setFinishedAt(LocalDateTime.now());
+        return runRepository.save(run);
+    }
+}
@@ -0,0 +1,282 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicy;
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicyEngine;
+import com.smart.mobility.smartmobilitybillingservice.cap.SpendCounters;
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceShard;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository.ShardSpend;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Sub-balance slots for hot accounts (opt-in per account, see
+ * {@link Account#getBalanceShards()}).
+ * <p>
+ * A debit updates a single slot chosen at random among those with enough
+ * balance and enough of their share of each cap of the account's tier
+ * (daily, weekly, monthly), so N slots give N independent optimistic-lock
+ * domains and concurrent debits cannot overshoot a cap together. Each slot
+ * keeps its own weekly and monthly spend, rolled over by date like the
+ * account row's. When no single slot can cover the debit, all slots are
+ * locked in order, the debit is taken across them and balance and spend are
+ * spread evenly again. Top-ups are split evenly.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedBalanceService {
+
+    private final BalanceShardRepository shardRepository;
+    private final AccountRepository accountRepository;
+    private final CapPolicyEngine capPolicy;
+
+    // ─────────────────────────────────────────────────────────────
+    // Read
+    // ─────────────────────────────────────────────────────────────
+
+    @Transactional(readOnly = true)
+    public AccountBalance read(Account account) {
+        return sum(shardRepository.findByAccountIdOrderBySlotAsc(account.getId()), LocalDate.now());
+    }
+
+    /** Totals of many sharded accounts, by account id, in one grouped query. */
+    @Transactional(readOnly = true)
+    public Map<Long, AccountBalance> readAll(Collection<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = accounts.stream().map(Account::getId).toList();
+        LocalDate today = LocalDate.now();
+        return shardRepository.sumByAccountIdIn(ids, SpendCounters.weekStart(today), today.withDayOfMonth(1))
+                .stream()
+                .collect(Collectors.toMap(ShardSpend::getAccountId, total -> new AccountBalance(total.getBalance(),
+                        total.getDailySpent(), total.getWeeklySpent(), total.getMonthlySpent(), 0L)));
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Write
+    // ─────────────────────────────────────────────────────────────
+
+    /** Splits a credit evenly across all slots. */
+    @Transactional
+    public AccountBalance credit(Account account, BigDecimal amount) {
+        List<BalanceShard> shards = shardRepository.findByAccountIdOrderBySlotAsc(account.getId());
+        BigDecimal[] parts = split(amount, shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setBalance(shards.get(i).getBalance().add(parts[i]));
+        }
+        shardRepository.saveAll(shards);
+        return sum(shards, LocalDate.now());
+    }
+
+    /**
+     * Takes {@code amount} from the balance and {@code dailySpentDelta} from
+     * the allowance of each cap. Totals must already have been checked by the
+     * caller; the slot checks here keep the cap exact under concurrency. A
+     * debit with no spend (a purchase) is only held to the balance, even when
+     * a lowered cap is already below what the account spent today.
+     * Returns {@code null} when a concurrent debit got there first and the
+     * totals no longer cover it; the slots then stay locked until the
+     * caller's transaction ends, so it can read why and record the FAILED
+     * transaction.
+     */
+    @Transactional
+    public @Nullable AccountBalance debit(Account account, BigDecimal amount, BigDecimal dailySpentDelta) {
+        List<BalanceShard> shards = shardRepository.findByAccountIdOrderBySlotAsc(account.getId());
+        CapPolicy.Limits limits = capPolicy.current().limits(account.getTier());
+        LocalDate today = LocalDate.now();
+        int n = shards.size();
+        Map<CapPeriod, BigDecimal[]> shares = new EnumMap<>(CapPeriod.class);
+        for (CapPeriod period : CapPeriod.values()) {
+            if (limits.get(period) != null) {
+                shares.put(period, split(limits.get(period), n));
+            }
+        }
+
+        int start = ThreadLocalRandom.current().nextInt(n);
+        boolean counted = dailySpentDelta.signum() > 0;
+        for (int k = 0; k < n; k++) {
+            int i = (start + k) % n;
+            BalanceShard shard = shards.get(i);
+            if (shard.getBalance().compareTo(amount) >= 0
+                    && (!counted || withinShares(spent(shard, today), shares, i, dailySpentDelta))) {
+                shard.setBalance(shard.getBalance().subtract(amount));
+                if (counted) {
+                    SpendCounters spent = spent(shard, today).plus(dailySpentDelta);
+                    shard.setDailySpent(spent.daily());
+                    shard.setWeeklySpent(spent.weekly());
+                    shard.setMonthlySpent(spent.monthly());
+                    shard.setSpendDate(today);
+                }
+                shardRepository.save(shard);
+                return sum(shards, today);
+            }
+        }
+        return debitAcrossSlots(account, amount, dailySpentDelta, limits, today);
+    }
+
+    /** Slow path: lock every slot, take the debit from the totals and even the slots out again. */
+    private @Nullable AccountBalance debitAcrossSlots(Account account, BigDecimal amount, BigDecimal dailySpentDelta,
+            CapPolicy.Limits limits, LocalDate today) {
+        List<BalanceShard> shards = shardRepository.lockAllByAccountId(account.getId());
+        AccountBalance total = sum(shards, today);
+        if (total.balance().compareTo(amount) < 0) {
+            return null;
+        }
+        if (dailySpentDelta.signum() > 0) {
+            SpendCounters spent = total.spent().plus(dailySpentDelta);
+            for (CapPeriod period : CapPeriod.values()) {
+                BigDecimal cap = limits.get(period);
+                if (cap != null && spent.get(period).compareTo(cap) > 0) {
+                    return null;
+                }
+            }
+        }
+        log.debug("Rebalancing {} slots of accountId={}", shards.size(), account.getId());
+        spread(shards, total.debited(amount, dailySpentDelta), today);
+        shardRepository.saveAll(shards);
+        return sum(shards, today);
+    }
+
+    /** Daily cap reset for the sharded accounts of one ID range, in one statement. */
+    @Transactional
+    public int resetDailySpent(long fromAccountId, long toAccountId) {
+        return shardRepository.resetDailySpentBetween(fromAccountId, toAccountId);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Enable / disable
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Re-shards an account into {@code count} slots, moving the current balance
+     * and spend into them; {@code count <= 1} folds the slots back into the
+     * account row.
+     */
+    @Transactional
+    public AccountBalance reshard(Account account, int count) {
+        LocalDate today = LocalDate.now();
+        AccountBalance current;
+        if (account.isSharded()) {
+            current = sum(shardRepository.lockAllByAccountId(account.getId()), today);
+            shardRepository.deleteByAccountId(account.getId());
+            shardRepository.flush();
+        } else {
+            current = AccountBalance.of(account);
+        }
+
+        if (count <= 1) {
+            account.setBalanceShards(null);
+            account.setBalance(current.balance());
+            account.setDailySpent(current.dailySpent());
+            account.setWeeklySpent(current.weeklySpent());
+            account.setMonthlySpent(current.monthlySpent());
+            account.setLastSpendDate(today);
+            accountRepository.save(account);
+            return current;
+        }
+
+        List<BalanceShard> shards = new ArrayList<>(count);
+        for (int slot = 0; slot < count; slot++) {
+            shards.add(BalanceShard.builder()
+                    .accountId(account.getId())
+                    .slot(slot)
+                    .build());
+        }
+        spread(shards, current, today);
+        shardRepository.saveAll(shards);
+
+        account.setBalanceShards(count);
+        account.setBalance(BigDecimal.ZERO);
+        account.setDailySpent(BigDecimal.ZERO);
+        account.setWeeklySpent(null);
+        account.setMonthlySpent(null);
+        accountRepository.save(account);
+        log.info("Account id={} now split across {} balance slots", account.getId(), count);
+        return current;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private AccountBalance sum(List<BalanceShard> shards, LocalDate today) {
+        BigDecimal balance = BigDecimal.ZERO;
+        SpendCounters spent = new SpendCounters(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+        for (BalanceShard shard : shards) {
+            balance = balance.add(shard.getBalance());
+            SpendCounters slot = spent(shard, today);
+            spent = new SpendCounters(spent.daily().add(slot.daily()), spent.weekly().add(slot.weekly()),
+                    spent.monthly().add(slot.monthly()));
+        }
+        return new AccountBalance(balance, spent.daily(), spent.weekly(), spent.monthly(), 0L);
+    }
+
+    /** Spend of one slot as of {@code today}; the daily counter is reset by the midnight job. */
+    private static SpendCounters spent(BalanceShard shard, LocalDate today) {
+        return SpendCounters.of(shard.getDailySpent(), shard.getWeeklySpent(), shard.getMonthlySpent(),
+                shard.getSpendDate(), today);
+    }
+
+    /** Whether slot {@code i} can count {@code spend} within its share of every cap. */
+    private static boolean withinShares(SpendCounters slot, Map<CapPeriod, BigDecimal[]> shares, int i,
+            BigDecimal spend) {
+        for (Map.Entry<CapPeriod, BigDecimal[]> share : shares.entrySet()) {
+            if (share.getValue()[i].subtract(slot.get(share.getKey())).compareTo(spend) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evenly spreads balance and spend over the slots, all cent-exact and
+     * never negative, so the totals are kept exactly, including a spend above
+     * a cap that was lowered during the period. Rounding puts slot 0 up to
+     * {@code n - 1} cents over its cap share; that only keeps small debits off
+     * slot 0 on the fast path, since the slow path checks the exact totals.
+     */
+    private void spread(List<BalanceShard> shards, AccountBalance total, LocalDate today) {
+        int n = shards.size();
+        BigDecimal[] balances = split(total.balance(), n);
+        BigDecimal[] daily = split(total.dailySpent(), n);
+        BigDecimal[] weekly = split(total.weeklySpent(), n);
+        BigDecimal[] monthly = split(total.monthlySpent(), n);
+        for (int i = 0; i < n; i++) {
+            BalanceShard shard = shards.get(i);
+            shard.setBalance(balances[i]);
+            shard.setDailySpent(daily[i]);
+            shard.setWeeklySpent(weekly[i]);
+            shard.setMonthlySpent(monthly[i]);
+            shard.setSpendDate(today);
+        }
+    }
+
+    /** Splits an amount into {@code n} cent-exact parts; slot 0 takes the rounding remainder. */
+    private static BigDecimal[] split(BigDecimal amount, int n) {
+        BigDecimal part = amount.divide(BigDecimal.valueOf(n), 2, RoundingMode.DOWN);
+        BigDecimal[] parts = new BigDecimal[n];
+        Arrays.fill(parts, part);
+        parts[0] = amount.subtract(part.multiply(BigDecimal.valueOf(n - 1L)));
+        return parts;
+    }
+}
@@ -0,0 +1,58 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of userIds onto shards. Each shard owns
+ * {@code virtualNodes} points on a 64-bit ring and a key belongs to the
+ * first point at or after its hash, so adding a shard only moves the keys
+ * that now fall on its points (about 1/N of them) and none between the
+ * existing shards.
+ */
+public final class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final List<String> shardIds;
+
+    public ConsistentHashRing(Collection<String> shardIds, int virtualNodes) {
+        if (shardIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardIds = List.copyOf(shardIds);
+        for (String shardId : this.shardIds) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(shardId + "#" + i), shardId);
+            }
+        }
+    }
+
+    public String shardFor(String key) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    public List<String> shardIds() {
+        return shardIds;
+    }
+
+    /** First 8 bytes of MD5: stable across JVMs and releases, unlike {@link String#hashCode()}. */
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
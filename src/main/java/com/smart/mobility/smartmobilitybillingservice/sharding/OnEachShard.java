@@ -0,0 +1,18 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the method once per shard, one after the other, for jobs over all
+ * accounts. {@code int} results are summed. Called while already bound to a
+ * shard, the method only runs there.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OnEachShard {
+}
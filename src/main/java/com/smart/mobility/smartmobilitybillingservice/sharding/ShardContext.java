@@ -0,0 +1,57 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Shard the current thread works on, read by {@link ShardRoutingDataSource}
+ * when a transaction acquires its connection. {@code null} is the directory
+ * database.
+ * <p>
+ * The shard has to be chosen before the transaction starts: switching
+ * inside one would leave it on the connection it already holds, so it is
+ * refused. Worker threads do not inherit the shard; jobs that fork pass
+ * {@link #current()} on explicitly.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /** Runs {@code work} bound to {@code shardId}, then restores the previous shard. */
+    public static <T> T callIn(String shardId, Supplier<T> work) {
+        String previous = CURRENT.get();
+        if (Objects.equals(previous, shardId)) {
+            return work.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(
+                    "Cannot switch from shard " + previous + " to " + shardId + " inside a transaction");
+        }
+        CURRENT.set(shardId);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static void runIn(String shardId, Runnable work) {
+        callIn(shardId, () -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,189 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceShard;
+import com.smart.mobility.smartmobilitybillingservice.model.BalanceSnapshot;
+import com.smart.mobility.smartmobilitybillingservice.model.IdempotencyRecord;
+import com.smart.mobility.smartmobilitybillingservice.model.LedgerEntry;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRun;
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceShardRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceSnapshotRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.IdempotencyRecordRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.LedgerEntryRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationMismatchRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationRunRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resharding: after a shard is added to (or removed from)
+ * {@code billing.sharding.shards}, moves every account whose userId now
+ * hashes to another shard, with its transactions, balance slots, ledger,
+ * idempotency records and reconciliation mismatches.
+ * <p>
+ * Each account is copied to its new shard in one transaction, its trips are
+ * re-pointed in the directory, then it is deleted from the old shard. A copy
+ * already present on the target (run interrupted between the two steps) is
+ * not copied again, so the migration can simply be re-run. Requests for a
+ * user being moved may see the account missing for that short window;
+ * debits are redelivered, so run it with consumers paused or off-peak.
+ * <p>
+ * Reconciliation runs are per shard: the mismatches of a moved account join
+ * the latest run of its new shard, so that shard's report lists them until
+ * its next run checks the account again. Without a run there yet, they are
+ * left to that first run to find again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShardMigrationService {
+
+    private final ShardRouter shardRouter;
+    private final TripShardIndex tripShardIndex;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceShardRepository balanceShardRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ReconciliationMismatchRepository mismatchRepository;
+    private final ReconciliationRunRepository runRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${billing.sharding.migration-chunk-size:500}")
+    private int chunkSize;
+
+    public record MigrationReport(long scanned, long moved) {
+    }
+
+    private record AccountData(Account account, List<Transaction> transactions, List<BalanceShard> balanceShards,
+            List<LedgerEntry> ledgerEntries, BalanceSnapshot snapshot, List<IdempotencyRecord> idempotencyRecords,
+            List<ReconciliationMismatch> mismatches) {
+    }
+
+    public MigrationReport migrate() {
+        if (!shardRouter.isEnabled()) {
+            throw new IllegalStateException("Sharding is not enabled");
+        }
+        long scanned = 0;
+        long moved = 0;
+        for (String source : shardRouter.shardIds()) {
+            Long minId = shardRouter.onShard(source, accountRepository::findMinId);
+            Long maxId = shardRouter.onShard(source, accountRepository::findMaxId);
+            if (minId == null) {
+                continue;
+            }
+            for (long from = minId; from <= maxId; from += chunkSize) {
+                long fromId = from;
+                List<Account> accounts = shardRouter.onShard(source,
+                        () -> accountRepository.findByIdBetween(fromId, fromId + chunkSize - 1));
+                for (Account account : accounts) {
+                    scanned++;
+                    String target = shardRouter.shardOf(account.getUserId());
+                    if (!target.equals(source)) {
+                        move(account.getUserId(), source, target);
+                        moved++;
+                    }
+                }
+            }
+        }
+        log.info("Shard migration complete: {} accounts scanned, {} moved", scanned, moved);
+        return new MigrationReport(scanned, moved);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void move(String userId, String source, String target) {
+        AccountData data = shardRouter.onShard(source, () -> transactionTemplate.execute(status -> load(userId)));
+        if (data == null) {
+            return;
+        }
+        Long sourceId = data.account().getId();
+        shardRouter.onShard(target, () -> transactionTemplate.execute(status -> copy(data)));
+        tripShardIndex.reassign(data.transactions().stream()
+                .map(Transaction::getTripId)
+                .filter(Objects::nonNull)
+                .toList(), target);
+        shardRouter.onShard(source, () -> transactionTemplate.execute(status -> delete(sourceId, userId)));
+        log.info("Moved userId={} from shard {} to {} ({} transactions)",
+                userId, source, target, data.transactions().size());
+    }
+
+    private AccountData load(String userId) {
+        return accountRepository.findByUserId(userId)
+                .map(account -> new AccountData(account,
+                        transactionRepository.findByAccountIdOrderByCreatedAtDesc(account.getId()),
+                        balanceShardRepository.findByAccountIdOrderBySlotAsc(account.getId()),
+                        ledgerEntryRepository.findByAccountIdOrderBySeqNoAsc(account.getId()),
+                        snapshotRepository.findById(account.getId()).orElse(null),
+                        idempotencyRecordRepository.findByUserId(userId),
+                        mismatchRepository.findByAccountId(account.getId())))
+                .orElse(null);
+    }
+
+    /** Inserts detached copies under new IDs; rows keep their timestamps. */
+    private Boolean copy(AccountData data) {
+        Account account = data.account();
+        if (accountRepository.existsByUserId(account.getUserId())) {
+            return false;
+        }
+        account.setId(null);
+        account.setVersion(null);
+        Long accountId = accountRepository.save(account).getId();
+
+        data.transactions().forEach(tx -> {
+            tx.setId(null);
+            tx.setAccountId(accountId);
+        });
+        transactionRepository.saveAll(data.transactions());
+        data.balanceShards().forEach(shard -> {
+            shard.setId(null);
+            shard.setVersion(null);
+            shard.setAccountId(accountId);
+        });
+        balanceShardRepository.saveAll(data.balanceShards());
+        data.ledgerEntries().forEach(entry -> {
+            entry.setId(null);
+            entry.setAccountId(accountId);
+        });
+        ledgerEntryRepository.saveAll(data.ledgerEntries());
+        if (data.snapshot() != null) {
+            data.snapshot().setAccountId(accountId);
+            snapshotRepository.save(data.snapshot());
+        }
+        // Keys are global: a record already on the target is simply overwritten
+        idempotencyRecordRepository.saveAll(data.idempotencyRecords());
+        runRepository.findFirstByOrderByIdDesc().map(ReconciliationRun::getId).ifPresent(runId -> {
+            data.mismatches().forEach(mismatch -> {
+                mismatch.setId(null);
+                mismatch.setRunId(runId);
+                mismatch.setAccountId(accountId);
+            });
+            mismatchRepository.saveAll(data.mismatches());
+        });
+        return true;
+    }
+
+    private Boolean delete(Long accountId, String userId) {
+        transactionRepository.deleteByAccountId(accountId);
+        balanceShardRepository.deleteByAccountId(accountId);
+        ledgerEntryRepository.deleteByAccountId(accountId);
+        snapshotRepository.deleteById(accountId);
+        idempotencyRecordRepository.deleteByUserId(userId);
+        mismatchRepository.deleteByAccountId(accountId);
+        accountRepository.deleteById(accountId);
+        return true;
+    }
+}
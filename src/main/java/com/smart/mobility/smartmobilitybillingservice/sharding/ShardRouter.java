@@ -0,0 +1,90 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Maps userIds to shards and runs work on a given shard. With sharding
+ * disabled there is a single database: every method runs its work as is and
+ * {@link #shardIds()} is empty.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    private final boolean enabled;
+    private final int virtualNodes;
+    private volatile ConsistentHashRing ring;
+
+    public ShardRouter(ShardingProperties properties) {
+        this.enabled = properties.enabled();
+        this.virtualNodes = properties.virtualNodes();
+        if (enabled) {
+            ring = new ConsistentHashRing(properties.shards().keySet(), virtualNodes);
+            log.info("Sharding enabled: {} shards, {} virtual nodes each", ring.shardIds().size(), virtualNodes);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> shardIds() {
+        return enabled ? ring.shardIds() : List.of();
+    }
+
+    /** Shard owning {@code userId}; {@code null} when sharding is disabled. */
+    public String shardOf(String userId) {
+        return enabled ? ring.shardFor(userId) : null;
+    }
+
+    /** Shard used when a caller names none: the first one, {@code null} when sharding is disabled. */
+    public String defaultShard() {
+        return enabled ? ring.shardIds().get(0) : null;
+    }
+
+    public <T> T onShard(String shardId, Supplier<T> work) {
+        return enabled ? ShardContext.callIn(shardId, work) : work.get();
+    }
+
+    public <T> T onShardOf(String userId, Supplier<T> work) {
+        return onShard(shardOf(userId), work);
+    }
+
+    /** Runs {@code work} against the directory database. */
+    public <T> T onDirectory(Supplier<T> work) {
+        return onShard(null, work);
+    }
+
+    /** Runs {@code work} once per shard, or once when sharding is disabled. */
+    public void forEachShard(Runnable work) {
+        if (!enabled) {
+            work.run();
+            return;
+        }
+        for (String shardId : ring.shardIds()) {
+            ShardContext.runIn(shardId, work);
+        }
+    }
+
+    /** Groups userIds by shard, keeping their order; a single {@code null} group when disabled. */
+    public Map<String, List<String>> partition(Collection<String> userIds) {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            groups.computeIfAbsent(shardOf(userId), k -> new ArrayList<>()).add(userId);
+        }
+        return groups;
+    }
+
+    /** Replaces the ring, e.g. to route over a subset of the configured shards. */
+    void useShards(Collection<String> shardIds) {
+        ring = new ConsistentHashRing(shardIds, virtualNodes);
+    }
+}
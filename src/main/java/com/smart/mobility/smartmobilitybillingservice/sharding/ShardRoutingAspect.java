@@ -0,0 +1,82 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies {@link ShardedBy} and {@link OnEachShard}. Ordered before the
+ * transaction interceptor so the shard is bound before a connection is
+ * taken (but after Spring's own invocation-exposing interceptor, which
+ * argument binding needs).
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class ShardRoutingAspect {
+
+    private final ShardRouter shardRouter;
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+    private final Map<Method, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(shardedBy)")
+    public Object routeByUser(ProceedingJoinPoint joinPoint, ShardedBy shardedBy) throws Throwable {
+        if (!shardRouter.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Expression expression = expressions.computeIfAbsent(method, m -> parser.parseExpression(shardedBy.value()));
+        Object userId = expression.getValue(new MethodBasedEvaluationContext(
+                joinPoint.getTarget(), method, joinPoint.getArgs(), parameterNames));
+        if (userId == null) {
+            throw new IllegalArgumentException("No shard key for " + method.getName() + ": " + shardedBy.value());
+        }
+        return shardRouter.onShardOf(userId.toString(), () -> proceed(joinPoint));
+    }
+
+    @Around("@annotation(com.smart.mobility.smartmobilitybillingservice.sharding.OnEachShard)")
+    public Object runOnEachShard(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!shardRouter.isEnabled() || ShardContext.current() != null) {
+            return joinPoint.proceed();
+        }
+        int total = 0;
+        for (String shardId : shardRouter.shardIds()) {
+            // Each proceed() runs a fresh copy of the interceptor chain, transaction included
+            Object result = shardRouter.onShard(shardId, () -> proceed(joinPoint));
+            if (result instanceof Integer count) {
+                total += count;
+            }
+        }
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return returnType == int.class || returnType == Integer.class ? total : null;
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The single {@link DataSource} seen by JPA when sharding is enabled: each
+ * connection comes from the shard bound by {@link ShardContext}, or from the
+ * directory database when none is.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    /** Shuts the shard pools down with the context. */
+    @Override
+    public void close() throws IOException {
+        for (DataSource target : getResolvedDataSources().values()) {
+            if (target instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (getResolvedDefaultDataSource() instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
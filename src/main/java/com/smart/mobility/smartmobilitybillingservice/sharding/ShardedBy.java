@@ -0,0 +1,20 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the method (and the transaction it opens) on the shard of a userId,
+ * given as a SpEL expression over the parameters, e.g. {@code "#userId"} or
+ * {@code "#event.userId()"}. No-op when sharding is disabled.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardedBy {
+
+    String value();
+}
@@ -0,0 +1,71 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured {@link DataSource} with a
+ * {@link ShardRoutingDataSource} when {@code billing.sharding.enabled=true}:
+ * one pool per shard from {@code billing.sharding.shards.*}, and
+ * {@code spring.datasource} as the directory database.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ShardingProperties.class)
+@Slf4j
+public class ShardingConfiguration {
+
+    @Bean
+    @ConditionalOnBooleanProperty("billing.sharding.enabled")
+    public ShardRoutingDataSource dataSource(ShardingProperties properties, DataSourceProperties directory,
+            Environment environment) {
+        // Open-in-view would pin the request's first connection for every later transaction
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+            throw new IllegalStateException("billing.sharding.enabled requires spring.jpa.open-in-view=false");
+        }
+        if (properties.shards().isEmpty()) {
+            throw new IllegalStateException("billing.sharding.enabled requires billing.sharding.shards.*");
+        }
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        properties.shards().forEach((shardId, shard) -> {
+            DataSource pool = DataSourceBuilder.create()
+                    .url(shard.url())
+                    .username(shard.username())
+                    .password(shard.password())
+                    .build();
+            if (pool instanceof HikariDataSource hikari) {
+                hikari.setPoolName("shard-" + shardId);
+            }
+            targets.put(shardId, pool);
+        });
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(directory.initializeDataSourceBuilder().build());
+        routing.setLenientFallback(false);
+        return routing;
+    }
+
+    @Bean
+    @ConditionalOnBooleanProperty({ "billing.sharding.enabled", "billing.sharding.create-schema" })
+    public SmartInitializingSingleton shardSchemaExporter(EntityManagerFactory entityManagerFactory,
+            ShardRouter shardRouter) {
+        // The directory gets its schema from spring.jpa.hibernate.ddl-auto as usual
+        return () -> shardRouter.forEachShard(() -> {
+            log.info("Exporting schema to shard {}", ShardContext.current());
+            entityManagerFactory.getSchemaManager().create(true);
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code billing.sharding.*}: account databases selected by userId.
+ * <pre>
+ * billing.sharding.enabled=true
+ * billing.sharding.shards.s0.url=jdbc:mysql://billing-s0/billing
+ * billing.sharding.shards.s1.url=jdbc:mysql://billing-s1/billing
+ * </pre>
+ * {@code spring.datasource} remains the directory database (tripId index).
+ *
+ * @param enabled      route account data to the shards
+ * @param virtualNodes points per shard on the hash ring; more points, more even spread
+ * @param createSchema export the JPA schema to every shard at startup (tests, local runs)
+ * @param shards       shard ID to connection settings; IDs are hashed, never renumber them
+ */
+@ConfigurationProperties("billing.sharding")
+public record ShardingProperties(
+        boolean enabled,
+        @DefaultValue("160") int virtualNodes,
+        boolean createSchema,
+        Map<String, Shard> shards) {
+
+    public ShardingProperties {
+        shards = shards != null ? shards : new LinkedHashMap<>();
+    }
+
+    public record Shard(String url, String username, String password) {
+    }
+}
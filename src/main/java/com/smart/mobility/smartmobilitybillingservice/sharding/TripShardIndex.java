@@ -0,0 +1,68 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.model.TripShard;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TripShardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * tripId → shard index in the directory database. A trip is registered
+ * before its debit runs, so the entry exists whenever the payment does; an
+ * entry whose debit rolled back simply finds no payment (still pending).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripShardIndex {
+
+    private final ShardRouter shardRouter;
+    private final TripShardRepository tripShardRepository;
+    private final TransactionRepository transactionRepository;
+
+    /** Records the shard of {@code userId} for {@code tripId}; idempotent, a no-op without sharding. */
+    public void register(String tripId, String userId) {
+        if (!shardRouter.isEnabled() || tripId == null) {
+            return;
+        }
+        String shardId = shardRouter.shardOf(userId);
+        shardRouter.onDirectory(() -> {
+            try {
+                if (!tripShardRepository.existsById(tripId)) {
+                    tripShardRepository.save(new TripShard(tripId, shardId, LocalDateTime.now()));
+                }
+            } catch (DataIntegrityViolationException e) {
+                // A redelivery registered it concurrently
+                log.debug("tripId={} already indexed", tripId);
+            }
+            return null;
+        });
+    }
+
+    /** Points trips at {@code shardId} after their account moved there. */
+    public void reassign(Collection<String> tripIds, String shardId) {
+        if (tripIds.isEmpty()) {
+            return;
+        }
+        shardRouter.onDirectory(() -> tripShardRepository.saveAll(tripIds.stream()
+                .map(tripId -> new TripShard(tripId, shardId, LocalDateTime.now()))
+                .toList()));
+    }
+
+    /** Payment of a trip, read from its shard only. */
+    public Optional<Transaction> findTransaction(String tripId) {
+        if (!shardRouter.isEnabled()) {
+            return transactionRepository.findByTripId(tripId);
+        }
+        return shardRouter.onDirectory(() -> tripShardRepository.findById(tripId))
+                .flatMap(entry -> shardRouter.onShard(entry.getShardId(),
+                        () -> transactionRepository.findByTripId(tripId)));
+    }
+}
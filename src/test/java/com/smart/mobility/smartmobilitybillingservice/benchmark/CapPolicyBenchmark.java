@@ -0,0 +1,90 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import com.smart.mobility.smartmobilitybillingservice.cap.CapDecision;
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicy;
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicyEngine;
+import com.smart.mobility.smartmobilitybillingservice.cap.CapProperties;
+import com.smart.mobility.smartmobilitybillingservice.cap.SpendCounters;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the cap check on the debit path: reading the current policy,
+ * building the counters from the account row (with lazy week/month
+ * rollover) and evaluating a debit against a tier with daily, weekly and
+ * monthly caps. {@code compile} is the cost of rebuilding the policy on a
+ * config refresh, off the debit path (property binding excluded).
+ * <p>
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:<test classpath> ...benchmark.CapPolicyBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CapPolicyBenchmark {
+
+    /** {@code student}: all three caps; {@code unknown}: falls back to the default tier. */
+    @Param({"student", "unknown"})
+    private String tier;
+
+    private static final BigDecimal DAILY_CAP = new BigDecimal("50000");
+
+    private CapPolicyEngine engine;
+    private CapProperties properties;
+    private Account account;
+    private LocalDate today;
+    private BigDecimal amount;
+
+    @Setup
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment().withProperty("billing.daily-cap", "50000");
+        for (String name : new String[] {"student", "senior", "fleet", "corporate"}) {
+            environment.setProperty("billing.caps.tiers." + name + ".daily", "20000");
+            environment.setProperty("billing.caps.tiers." + name + ".weekly", "80000");
+            environment.setProperty("billing.caps.tiers." + name + ".monthly", "250000");
+        }
+        engine = new CapPolicyEngine(environment, new SimpleMeterRegistry());
+        properties = Binder.get(environment).bindOrCreate("billing.caps", CapProperties.class);
+        today = LocalDate.now();
+        account = Account.builder()
+                .tier(tier)
+                .dailySpent(new BigDecimal("19800.00"))
+                .weeklySpent(new BigDecimal("41250.00"))
+                .monthlySpent(new BigDecimal("120000.00"))
+                .lastSpendDate(today)
+                .build();
+        amount = new BigDecimal("350.00");
+    }
+
+    @Benchmark
+    public CapDecision evaluate() {
+        CapPolicy policy = engine.current();
+        SpendCounters spent = SpendCounters.of(account, account.getDailySpent(), today);
+        return policy.evaluate(account.getTier(), spent, amount);
+    }
+
+    @Benchmark
+    public CapPolicy compile() {
+        return CapPolicy.compile(properties, DAILY_CAP);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CapPolicyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
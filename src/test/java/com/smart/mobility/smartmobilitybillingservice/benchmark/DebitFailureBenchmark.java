@@ -0,0 +1,103 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
+import com.smart.mobility.smartmobilitybillingservice.exception.DailyCapExceededException;
+import com.smart.mobility.smartmobilitybillingservice.exception.InsufficientBalanceException;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitOutcome;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of refusing a trip debit (empty wallet, reached cap) up to the
+ * values the FAILED transaction and the PAYMENT_FAILED event need: the
+ * reason code and the message. {@code exception*} is the former shape,
+ * thrown by the check and caught by the caller; {@code outcome*} is the
+ * {@link DebitOutcome} path. The {@code depth} frames under the check stand
+ * in for the listener, proxy and transaction frames a real stack trace
+ * captures.
+ * <p>
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:<test classpath> ...benchmark.DebitFailureBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DebitFailureBenchmark {
+
+    @Param({"10", "60"})
+    private int depth;
+
+    private final BigDecimal balance = new BigDecimal("120.50");
+    private final BigDecimal amount = new BigDecimal("480.00");
+
+    @Benchmark
+    public void exceptionInsufficient(Blackhole blackhole) {
+        nested(depth, blackhole, true, true);
+    }
+
+    @Benchmark
+    public void outcomeInsufficient(Blackhole blackhole) {
+        nested(depth, blackhole, false, true);
+    }
+
+    @Benchmark
+    public void exceptionCapReached(Blackhole blackhole) {
+        nested(depth, blackhole, true, false);
+    }
+
+    @Benchmark
+    public void outcomeCapReached(Blackhole blackhole) {
+        nested(depth, blackhole, false, false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(DebitFailureBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void nested(int frames, Blackhole blackhole, boolean exceptions, boolean insufficient) {
+        if (frames > 0) {
+            nested(frames - 1, blackhole, exceptions, insufficient);
+            return;
+        }
+        if (exceptions) {
+            try {
+                throwingCheck(insufficient);
+            } catch (InsufficientBalanceException | DailyCapExceededException ex) {
+                blackhole.consume(ex instanceof InsufficientBalanceException
+                        ? TransactionReason.INSUFFICIENT_BALANCE
+                        : TransactionReason.DAILY_CAP_EXCEEDED);
+                blackhole.consume(ex.getMessage());
+            }
+        } else {
+            DebitOutcome outcome = insufficient
+                    ? DebitOutcome.insufficient(balance, amount)
+                    : DebitOutcome.capReached(CapPeriod.DAILY, amount);
+            blackhole.consume(outcome.failureReason());
+            blackhole.consume(outcome.failureMessage("user-1"));
+        }
+    }
+
+    private void throwingCheck(boolean insufficient) {
+        if (insufficient) {
+            throw new InsufficientBalanceException(balance, amount);
+        }
+        throw new DailyCapExceededException();
+    }
+}
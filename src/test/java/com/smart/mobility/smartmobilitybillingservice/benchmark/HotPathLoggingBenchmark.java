@@ -0,0 +1,150 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
+import com.smart.mobility.smartmobilitybillingservice.messaging.PaymentEventPublisher;
+import com.smart.mobility.smartmobilitybillingservice.messaging.TripPricedConsumer;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event logging cost of a billed TRIP_PRICED event: the lines written by
+ * the consumer, {@code processDebit} and the publisher, with the same messages
+ * and arguments, into a file appender with Boot's default file layout.
+ * <ul>
+ * <li>{@code every-line-sync}: every line, formatted and written on the
+ * listener thread (before).</li>
+ * <li>{@code sampled-sync}: {@link HotPathLog} scope and sampling (1 event in
+ * {@code SAMPLE_EVERY}), synchronous appender.</li>
+ * <li>{@code sampled-async}: the hot-path mode, sampling behind a bounded
+ * async appender (after).</li>
+ * </ul>
+ * {@code failedEvent} shows that refusals keep their warnings in every mode.
+ * <p>
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> ...benchmark.HotPathLoggingBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotPathLoggingBenchmark {
+
+    private static final long SAMPLE_EVERY = 100;
+    private static final String PATTERN =
+            "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p 1 --- [%15.15t] %-40.40logger{39} : %m%n";
+
+    @Param({"every-line-sync", "sampled-sync", "sampled-async"})
+    private String mode;
+
+    private LoggerContext context;
+    private Path file;
+    private HotPathLog hotPathLog;
+    private Logger consumerLog;
+    private Logger billingLog;
+    private Logger publisherLog;
+    private long sequence;
+
+    private final BigDecimal amount = new BigDecimal("1250.00");
+    private final BigDecimal balance = new BigDecimal("48750.00");
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hot-path-logging", ".log");
+        context = new LoggerContext();
+        context.setMDCAdapter(MDC.getMDCAdapter());
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setName("FILE");
+        appender.setFile(file.toString());
+        appender.setEncoder(encoder);
+        appender.start();
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.addAppender(appender);
+        if (mode.endsWith("async")) {
+            HotPathLog.wrapAppenders(root, 8192);
+        }
+
+        consumerLog = context.getLogger(TripPricedConsumer.class);
+        billingLog = context.getLogger(BillingService.class);
+        publisherLog = context.getLogger(PaymentEventPublisher.class);
+
+        hotPathLog = new HotPathLog();
+        ReflectionTestUtils.setField(hotPathLog, "enabled", mode.startsWith("sampled"));
+        ReflectionTestUtils.setField(hotPathLog, "successLogEvery", SAMPLE_EVERY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void paidEvent() {
+        String tripId = "trip-" + sequence++;
+        try (HotPathLog.Scope scope = hotPathLog.open(tripId, "user-42")) {
+            received(tripId);
+            if (hotPathLog.sampled()) {
+                publisherLog.info("Publishing PAYMENT_COMPLETED for tripId={}, penalty={}", tripId, false);
+            }
+            if (hotPathLog.sampled()) {
+                billingLog.info("Debit of {} for tripId={} succeeded. Remaining balance={}", amount, tripId, balance);
+            }
+        }
+    }
+
+    @Benchmark
+    public void failedEvent() {
+        String tripId = "trip-" + sequence++;
+        try (HotPathLog.Scope scope = hotPathLog.open(tripId, "user-42")) {
+            received(tripId);
+            billingLog.warn("Debit failed for tripId={}: {}", tripId,
+                    "Insufficient balance: available 70.00, required 1250.00");
+            publisherLog.warn("Publishing PAYMENT_FAILED for tripId={}, reason={}, penalty={}", tripId,
+                    "Insufficient balance: available 70.00, required 1250.00", false);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(HotPathLoggingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void received(String tripId) {
+        if (hotPathLog.sampled()) {
+            consumerLog.info("Received TRIP_PRICED event: tripId={}, userId={}, amount={}", tripId, "user-42", amount);
+        }
+        if (hotPathLog.sampled()) {
+            billingLog.info("Processing debit for tripId={}, userId={}, amount={}", tripId, "user-42", amount);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import com.smart.mobility.smartmobilitybillingservice.SmartMobilityBillingServiceApplication;
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentResponse;
+import com.smart.mobility.smartmobilitybillingservice.rpc.BillingRpc;
+import com.smart.mobility.smartmobilitybillingservice.rpc.BillingRpcClient;
+import com.smart.mobility.smartmobilitybillingservice.rpc.BillingRpcServer;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BalanceReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeRequest;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatch;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatchReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.Decimal;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of the internal calls over REST (JSON, HTTP/1.1 keep-alive,
+ * {@link HttpClient}) and over the gRPC API (binary, one multiplexed HTTP/2
+ * channel, {@link BillingRpcClient}), both against the same in-process
+ * service on H2: daily spent, balance, a charge, and a daily-spent batch of
+ * {@code BATCH} users. Both clients decode the whole response, as a calling
+ * service would: REST into the DTOs, gRPC into the generated messages. Run with several {@code -t} threads to see
+ * multiplexing at work.
+ * <p>
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> ...benchmark.InternalApiBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InternalApiBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int BATCH = 100;
+    private static final BigDecimal CHARGE = new BigDecimal("0.01");
+    private static final Decimal RPC_CHARGE = BillingRpc.decimal(CHARGE);
+
+    private ConfigurableApplicationContext context;
+    private HttpClient http;
+    private JsonMapper json;
+    private String baseUrl;
+    private BillingRpcClient rpc;
+    private List<String> userIds;
+    private byte[] batchBody;
+    private DailySpentBatch batch;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        // DevTools would restart the application in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(SmartMobilityBillingServiceApplication.class,
+                TripPricedReplay.ReplayConfiguration.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "billing.rpc.enabled=true",
+                        "billing.rpc.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:internal-api;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "eureka.client.enabled=false",
+                        "logging.level.com.smart.mobility=WARN")
+                .run();
+        BillingService billingService = context.getBean(BillingService.class);
+        userIds = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            String userId = "bench-user-" + i;
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("1000000"), "benchmark");
+            userIds.add(userId);
+        }
+
+        json = JsonMapper.builder().build();
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        rpc = new BillingRpcClient("localhost", context.getBean(BillingRpcServer.class).getPort());
+
+        batch = DailySpentBatch.newBuilder().addAllUserIds(userIds.subList(0, BATCH)).build();
+        batchBody = json.writeValueAsBytes(new DailySpentBatchRequest(userIds.subList(0, BATCH)));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        rpc.close();
+        context.close();
+    }
+
+    @Benchmark
+    public DailySpentResponse restDailySpent() throws Exception {
+        return get("/internal/accounts/daily-spent/" + randomUser(), DailySpentResponse.class);
+    }
+
+    @Benchmark
+    public DailySpentReply rpcDailySpent() {
+        return rpc.getDailySpent(randomUser());
+    }
+
+    @Benchmark
+    public AccountResponse restBalance() throws Exception {
+        return get("/accounts/" + randomUser(), AccountResponse.class);
+    }
+
+    @Benchmark
+    public BalanceReply rpcBalance() {
+        return rpc.getBalance(randomUser());
+    }
+
+    @Benchmark
+    public AccountResponse restCharge() throws Exception {
+        byte[] body = json.writeValueAsBytes(Map.of("amount", CHARGE, "description", "benchmark"));
+        return post("/accounts/" + randomUser() + "/charge", body, AccountResponse.class);
+    }
+
+    @Benchmark
+    public ChargeReply rpcCharge() {
+        return rpc.charge(ChargeRequest.newBuilder()
+                .setUserId(randomUser())
+                .setAmount(RPC_CHARGE)
+                .setDescription("benchmark")
+                .build());
+    }
+
+    @Benchmark
+    public DailySpentBatchResponse restDailySpentBatch() throws Exception {
+        return post("/internal/accounts/daily-spent:batch", batchBody, DailySpentBatchResponse.class);
+    }
+
+    @Benchmark
+    public DailySpentBatchReply rpcDailySpentBatch() {
+        return rpc.dailySpentStream(List.of(batch)).get(0).getBatch();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(InternalApiBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private String randomUser() {
+        return userIds.get(ThreadLocalRandom.current().nextInt(USERS));
+    }
+
+    private <T> T get(String path, Class<T> type) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return read(http.send(request, HttpResponse.BodyHandlers.ofByteArray()), type);
+    }
+
+    private <T> T post(String path, byte[] body, Class<T> type) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return read(http.send(request, HttpResponse.BodyHandlers.ofByteArray()), type);
+    }
+
+    private <T> T read(HttpResponse<byte[]> response, Class<T> type) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + new String(response.body()));
+        }
+        return json.readValue(response.body(), type);
+    }
+}
@@ -0,0 +1,92 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.PaymentEvent;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.messaging.JacksonCborMessageConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJacksonMessageConverter;
+import org.springframework.amqp.support.converter.JacksonJavaTypeMapper;
+import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs CBOR cost of the two hot-path payloads: TripPricedEvent (decoded by
+ * the consumer) and PaymentEvent (encoded by the publisher).
+ * <p>
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:<test classpath> ...benchmark.MessageEncodingBenchmark};
+ * the payload sizes are printed before the JMH run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageEncodingBenchmark {
+
+    @Param({"json", "cbor"})
+    private String encoding;
+
+    private AbstractJacksonMessageConverter converter;
+    private PaymentEvent paymentEvent;
+    private Message tripPricedMessage;
+
+    @Setup
+    public void setUp() {
+        converter = converter(encoding);
+        paymentEvent = samplePaymentEvent();
+        tripPricedMessage = converter.toMessage(sampleTripPricedEvent(), new MessageProperties());
+        tripPricedMessage.getMessageProperties().setInferredArgumentType(TripPricedEvent.class);
+    }
+
+    @Benchmark
+    public Message encodePaymentEvent() {
+        return converter.toMessage(paymentEvent, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decodeTripPricedEvent() {
+        return converter.fromMessage(tripPricedMessage);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String encoding : new String[] {"json", "cbor"}) {
+            AbstractJacksonMessageConverter converter = converter(encoding);
+            int trip = converter.toMessage(sampleTripPricedEvent(), new MessageProperties()).getBody().length;
+            int payment = converter.toMessage(samplePaymentEvent(), new MessageProperties()).getBody().length;
+            System.out.printf("%-4s bytes/message: TripPricedEvent=%d, PaymentEvent=%d%n", encoding, trip, payment);
+        }
+        Options options = new OptionsBuilder()
+                .include(MessageEncodingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static AbstractJacksonMessageConverter converter(String encoding) {
+        if ("cbor".equals(encoding)) {
+            return new JacksonCborMessageConverter();
+        }
+        JacksonJsonMessageConverter json = new JacksonJsonMessageConverter();
+        json.setTypePrecedence(JacksonJavaTypeMapper.TypePrecedence.INFERRED);
+        return json;
+    }
+
+    private static TripPricedEvent sampleTripPricedEvent() {
+        return new TripPricedEvent("3f2b7c1e-9a4d-4e61-8d0a-6c5b2f9e1a77", "user-104233",
+                new BigDecimal("1250.00"), false);
+    }
+
+    private static PaymentEvent samplePaymentEvent() {
+        return new PaymentEvent("3f2b7c1e-9a4d-4e61-8d0a-6c5b2f9e1a77", "user-104233",
+                new BigDecimal("1250.00"), "COMPLETED", null, LocalDateTime.now(), false);
+    }
+}
@@ -0,0 +1,197 @@
+package com.smart.mobility.smartmobilitybillingservice.benchmark;
+
+import com.smart.mobility.smartmobilitybillingservice.SmartMobilityBillingServiceApplication;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.messaging.TripPricedCaptureLog;
+import com.smart.mobility.smartmobilitybillingservice.messaging.TripPricedCaptureLog.CapturedTripPriced;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import org.mockito.Mockito;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a TRIP_PRICED capture ({@code billing.capture.enabled=true}, see
+ * {@link TripPricedCaptureLog}) into {@link BillingService#processDebit}
+ * against an in-memory H2 database, then reports throughput and latency.
+ * <p>
+ * Usage: {@code TripPricedReplay <capture-dir> [speed] [workers]}
+ * <ul>
+ * <li>{@code speed}: {@code 1} replays at the captured pace, {@code N} N
+ * times faster, {@code max} as fast as the workers go (default {@code 1})</li>
+ * <li>{@code workers}: concurrent consumers, as {@code concurrency} of the
+ * listener container (default 1)</li>
+ * </ul>
+ * Every captured user gets an account topped up with
+ * {@code -Dreplay.initial-balance} (default 1e9) so that results reflect the
+ * debit path, not empty wallets. Outgoing events go to a no-op RabbitTemplate.
+ * Run from the IDE or with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> ...benchmark.TripPricedReplay capture 10 4}.
+ */
+public class TripPricedReplay {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: TripPricedReplay <capture-dir> [speed|max] [workers]");
+            System.exit(2);
+        }
+        Path captureDir = Path.of(args[0]);
+        String speedArg = args.length > 1 ? args[1] : "1";
+        double speed = "max".equals(speedArg) ? Double.POSITIVE_INFINITY : Double.parseDouble(speedArg);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        BigDecimal initialBalance = new BigDecimal(System.getProperty("replay.initial-balance", "1000000000"));
+
+        List<CapturedTripPriced> captured = TripPricedCaptureLog.readAll(captureDir);
+        if (captured.isEmpty()) {
+            System.err.println("No captured events in " + captureDir);
+            System.exit(1);
+        }
+        System.out.printf("Replaying %d events from %s at %s with %d worker(s)%n", captured.size(), captureDir,
+                Double.isInfinite(speed) ? "max speed" : speed + "x", workers);
+
+        // DevTools would restart main() in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                SmartMobilityBillingServiceApplication.class, ReplayConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:replay;MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "eureka.client.enabled=false",
+                        "billing.capture.enabled=false",
+                        "logging.level.com.smart.mobility=WARN")
+                .run()) {
+            BillingService billingService = context.getBean(BillingService.class);
+            createAccounts(context.getBean(AccountRepository.class), billingService, captured, initialBalance);
+            Report report = replay(billingService, captured, speed, workers);
+            report.print();
+        }
+    }
+
+    private static void createAccounts(AccountRepository accounts, BillingService billingService,
+            List<CapturedTripPriced> captured, BigDecimal initialBalance) {
+        LinkedHashSet<String> userIds = new LinkedHashSet<>();
+        captured.forEach(c -> userIds.add(c.event().userId()));
+        for (String userId : userIds) {
+            if (!accounts.existsByUserId(userId)) {
+                billingService.createAccount(new CreateAccountRequest(userId, null));
+                billingService.topUp(userId, initialBalance, "replay");
+            }
+        }
+        System.out.printf("Prepared %d accounts%n", userIds.size());
+    }
+
+    /**
+     * Schedules every event at its captured offset divided by {@code speed} and
+     * hands it to the worker pool. Latency is measured twice: service time of
+     * {@code processDebit}, and end-to-end from the scheduled time, which also
+     * includes waiting for a free worker (what a queue backlog would add).
+     */
+    private static Report replay(BillingService billingService, List<CapturedTripPriced> captured,
+            double speed, int workers) throws InterruptedException {
+        int n = captured.size();
+        long[] serviceNanos = new long[n];
+        long[] endToEndNanos = new long[n];
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+        long firstArrival = captured.get(0).arrivalEpochMicros();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            CapturedTripPriced c = captured.get(i);
+            long due = Double.isInfinite(speed)
+                    ? start
+                    : start + (long) ((c.arrivalEpochMicros() - firstArrival) * 1000 / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            TripPricedEvent event = c.event();
+            pool.execute(() -> {
+                long begin = System.nanoTime();
+                try {
+                    billingService.processDebit(event);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+                long end = System.nanoTime();
+                serviceNanos[index] = end - begin;
+                endToEndNanos[index] = end - due;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long wall = System.nanoTime() - start;
+        long captureSpan = (captured.get(n - 1).arrivalEpochMicros() - firstArrival) * 1000;
+        return new Report(n, wall, captureSpan, failures.get(), serviceNanos, endToEndNanos);
+    }
+
+    private record Report(int events, long wallNanos, long captureSpanNanos, int failures,
+            long[] serviceNanos, long[] endToEndNanos) {
+
+        void print() {
+            System.out.println();
+            System.out.printf("Events:      %d (%d failed with an exception)%n", events, failures);
+            System.out.printf("Wall time:   %.3f s (captured span %.3f s)%n", wallNanos / 1e9, captureSpanNanos / 1e9);
+            System.out.printf("Throughput:  %.1f events/s%n", events / (wallNanos / 1e9));
+            printLatency("Service", serviceNanos);
+            printLatency("End-to-end", endToEndNanos);
+        }
+
+        private static void printLatency(String label, long[] nanos) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            System.out.printf("%-11s  p50 %8.3f ms  p95 %8.3f ms  p99 %8.3f ms  p99.9 %8.3f ms  max %8.3f ms%n",
+                    label + ":", pct(sorted, 50), pct(sorted, 95), pct(sorted, 99), pct(sorted, 99.9),
+                    sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double pct(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+
+    /** Swaps the RabbitTemplate for a no-op and keeps the listener stopped, so replays need no broker. */
+    @Configuration(proxyBeanMethods = false)
+    static class ReplayConfiguration {
+
+        @Bean
+        static BeanPostProcessor noOpRabbitTemplate() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof SimpleRabbitListenerContainerFactory factory) {
+                        factory.setAutoStartup(false);
+                    }
+                    if (bean instanceof RabbitTemplate) {
+                        RabbitTemplate template = Mockito.mock(RabbitTemplate.class);
+                        Mockito.when(template.getConnectionFactory()).thenReturn(Mockito.mock(ConnectionFactory.class));
+                        return template;
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
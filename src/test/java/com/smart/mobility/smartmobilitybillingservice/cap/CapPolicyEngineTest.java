@@ -0,0 +1,105 @@
+package com.smart.mobility.smartmobilitybillingservice.cap;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CapPolicyEngineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("billing.daily-cap", "50000")
+            .withProperty("billing.caps.tiers.student.daily", "2000")
+            .withProperty("billing.caps.tiers.student.weekly", "8000")
+            .withProperty("billing.caps.tiers.senior.monthly", "30000");
+
+    @Test
+    @DisplayName("each tier gets its caps, unknown and missing tiers the default, and the tightest cap wins")
+    void evaluatesPerTier() {
+        CapPolicy policy = new CapPolicyEngine(environment, meterRegistry).current();
+
+        assertThat(policy.dailyCap("student")).isEqualByComparingTo("2000");
+        assertThat(policy.dailyCap("senior")).isEqualByComparingTo("50000");
+        assertThat(policy.dailyCap("unknown")).isEqualByComparingTo("50000");
+        assertThat(policy.dailyCap(null)).isEqualByComparingTo("50000");
+
+        CapDecision fits = policy.evaluate("student", counters("0", "0", "0"), new BigDecimal("500"));
+        assertThat(fits).isEqualTo(new CapDecision(new BigDecimal("500"), null, false));
+
+        CapDecision weekly = policy.evaluate("student", counters("1000", "7800", "7800"), new BigDecimal("500"));
+        assertThat(weekly.isTrimmed()).isTrue();
+        assertThat(weekly.limitedBy()).isEqualTo(CapPeriod.WEEKLY);
+        assertThat(weekly.amount()).isEqualByComparingTo("200");
+
+        CapDecision monthly = policy.evaluate("senior", counters("0", "0", "30000"), new BigDecimal("1"));
+        assertThat(monthly.rejected()).isTrue();
+        assertThat(monthly.limitedBy()).isEqualTo(CapPeriod.MONTHLY);
+
+        // Untracked weekly/monthly spend (sub-balance slots, ledger mode): daily cap only
+        assertThat(policy.evaluate("senior", SpendCounters.daily(BigDecimal.ZERO), new BigDecimal("1")).rejected())
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("a config refresh swaps the policy; an invalid one is rejected and the old policy kept")
+    void hotReload() {
+        CapPolicyEngine engine = new CapPolicyEngine(environment, meterRegistry);
+        CapPolicy before = engine.current();
+
+        environment.setProperty("billing.caps.tiers.fleet.daily", "500000");
+        engine.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("billing.caps.tiers.fleet.daily")));
+        assertThat(engine.current()).isNotSameAs(before);
+        assertThat(engine.current().dailyCap("fleet")).isEqualByComparingTo("500000");
+
+        CapPolicy valid = engine.current();
+        environment.setProperty("billing.caps.tiers.student.weekly", "-1");
+        engine.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("billing.caps.tiers.student.weekly")));
+        assertThat(engine.current()).isSameAs(valid);
+
+        // Unrelated keys do not recompile
+        engine.onEnvironmentChange(new EnvironmentChangeEvent(Set.of("logging.level.root")));
+        assertThat(meterRegistry.counter("billing.caps.reloads", "outcome", "applied").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.caps.reloads", "outcome", "rejected").count()).isEqualTo(1.0);
+
+        assertThatThrownBy(() -> new CapPolicyEngine(environment, meterRegistry))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("billing.caps.tiers.student.weekly");
+    }
+
+    @Test
+    @DisplayName("weekly and monthly counters read as zero once their period is over")
+    void countersRollOver() {
+        LocalDate wednesday = LocalDate.of(2026, 3, 4);
+        Account account = Account.builder()
+                .weeklySpent(new BigDecimal("700"))
+                .monthlySpent(new BigDecimal("900"))
+                .lastSpendDate(LocalDate.of(2026, 3, 2))
+                .build();
+
+        assertThat(SpendCounters.of(account, BigDecimal.ZERO, wednesday))
+                .isEqualTo(counters("0", "700", "900"));
+        assertThat(SpendCounters.of(account, BigDecimal.ZERO, wednesday.plusWeeks(1)))
+                .isEqualTo(counters("0", "0", "900"));
+        assertThat(SpendCounters.of(account, BigDecimal.ZERO, wednesday.plusMonths(1)))
+                .isEqualTo(counters("0", "0", "0"));
+
+        SpendCounters.accumulate(account, new BigDecimal("50"), wednesday.plusWeeks(1));
+        assertThat(account.getWeeklySpent()).isEqualByComparingTo("50");
+        assertThat(account.getMonthlySpent()).isEqualByComparingTo("950");
+    }
+
+    private static SpendCounters counters(String daily, String weekly, String monthly) {
+        return new SpendCounters(new BigDecimal(daily), new BigDecimal(weekly), new BigDecimal(monthly));
+    }
+}
@@ -0,0 +1,91 @@
+package com.smart.mobility.smartmobilitybillingservice.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrRecordingEndpointTest {
+
+    private final JfrRecordingEndpoint endpoint = new JfrRecordingEndpoint();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(endpoint, "maxSizeMb", 16L);
+        ReflectionTestUtils.setField(endpoint, "maxAgeMinutes", 5L);
+        ReflectionTestUtils.setField(endpoint, "maxDurationMinutes", 1L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        endpoint.destroy();
+    }
+
+    @Test
+    @DisplayName("a bounded recording captures billing events and can be downloaded after stop")
+    void recordStopDownload() throws IOException {
+        var started = endpoint.start("default", 1024L, 3600L);
+        assertThat(started).containsEntry("state", "RUNNING")
+                .containsEntry("maxSizeBytes", 16L * 1024 * 1024);
+
+        BillingOperationEvent operation = BillingOperationEvent.start("processDebit", "TRIP-JFR");
+        operation.lookedUp();
+        operation.applied();
+        operation.finish("SUCCESS");
+        EventPublishEvent.start("payment.exchange", "payment.completed", 2, false).finish("ACK");
+
+        assertThat(endpoint.stop()).containsEntry("state", "STOPPED");
+        var download = endpoint.recording("recording");
+        assertThat(download.getStatus()).isEqualTo(200);
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(download.getBody().getFile().toPath());
+        RecordedEvent debit = events.stream()
+                .filter(e -> e.getEventType().getName().equals("billing.Operation"))
+                .findFirst().orElseThrow();
+        assertThat(debit.getString("operation")).isEqualTo("processDebit");
+        assertThat(debit.getInt("tripIdHash")).isEqualTo("TRIP-JFR".hashCode());
+        assertThat(debit.getString("outcome")).isEqualTo("SUCCESS");
+        assertThat(events).anySatisfy(e -> {
+            assertThat(e.getEventType().getName()).isEqualTo("billing.Publish");
+            assertThat(e.getInt("attempt")).isEqualTo(2);
+        });
+    }
+
+    @Test
+    @DisplayName("records the redelivery count, and skips an operation already under way when the recording started")
+    void retriesAndOperationsUnderWay() throws IOException {
+        BillingOperationEvent underWay = BillingOperationEvent.start("processDebit", "TRIP-UNDER-WAY");
+        endpoint.start("default", 1024L, 3600L);
+
+        underWay.lookedUp();
+        underWay.finish("SUCCESS");
+        BillingOperationEvent retried = BillingOperationEvent.start("processDebit", "TRIP-RETRIED", 2);
+        retried.lookedUp();
+        retried.finish("SUCCESS");
+
+        endpoint.stop();
+        List<RecordedEvent> events = RecordingFile.readAllEvents(
+                endpoint.recording("recording").getBody().getFile().toPath());
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("billing.Operation"))
+                .singleElement()
+                .satisfies(e -> {
+                    assertThat(e.getInt("tripIdHash")).isEqualTo("TRIP-RETRIED".hashCode());
+                    assertThat(e.getInt("retries")).isEqualTo(2);
+                });
+    }
+
+    @Test
+    @DisplayName("nothing to download before a recording was started")
+    void noRecording() {
+        assertThat(endpoint.status()).containsEntry("state", "NONE");
+        assertThat(endpoint.recording("recording").getStatus()).isEqualTo(404);
+    }
+}
@@ -0,0 +1,116 @@
+package com.smart.mobility.smartmobilitybillingservice.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotPathLogTest {
+
+    @Test
+    @DisplayName("writes every line with the mode off")
+    void logsEverythingWhenDisabled() {
+        HotPathLog hotPathLog = new HotPathLog();
+
+        for (int i = 0; i < 10; i++) {
+            try (HotPathLog.Scope scope = hotPathLog.open("trip-" + i, "user-1")) {
+                assertThat(hotPathLog.sampled()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("samples one event in N, with one decision for the whole event")
+    void samplesPerEvent() {
+        HotPathLog hotPathLog = hotPathLog(10);
+
+        List<Boolean> decisions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            try (HotPathLog.Scope scope = hotPathLog.open("trip-" + i, "user-1")) {
+                boolean sampled = hotPathLog.sampled();
+                // The billing step reopens the scope of the same trip
+                try (HotPathLog.Scope nested = hotPathLog.open("trip-" + i, "user-1")) {
+                    assertThat(hotPathLog.sampled()).isEqualTo(sampled);
+                }
+                assertThat(hotPathLog.sampled()).isEqualTo(sampled);
+                decisions.add(sampled);
+            }
+        }
+
+        assertThat(decisions.stream().filter(Boolean::booleanValue)).hasSize(10);
+        assertThat(decisions.get(0)).isTrue();
+    }
+
+    @Test
+    @DisplayName("puts tripId and userId in the MDC for the scope and restores the outer one")
+    void scopesMdc() {
+        HotPathLog hotPathLog = hotPathLog(100);
+
+        try (HotPathLog.Scope outer = hotPathLog.open("trip-1", "user-1")) {
+            assertThat(MDC.get(HotPathLog.TRIP_ID)).isEqualTo("trip-1");
+            try (HotPathLog.Scope inner = hotPathLog.open("trip-2", "user-2")) {
+                assertThat(MDC.get(HotPathLog.TRIP_ID)).isEqualTo("trip-2");
+                assertThat(MDC.get(HotPathLog.USER_ID)).isEqualTo("user-2");
+            }
+            assertThat(MDC.get(HotPathLog.TRIP_ID)).isEqualTo("trip-1");
+            assertThat(MDC.get(HotPathLog.USER_ID)).isEqualTo("user-1");
+        }
+
+        assertThat(MDC.get(HotPathLog.TRIP_ID)).isNull();
+        assertThat(MDC.get(HotPathLog.USER_ID)).isNull();
+    }
+
+    @Test
+    @DisplayName("async wrappers deliver every event with its MDC fields once drained")
+    void wrapsAppendersAsynchronously() {
+        LoggerContext context = new LoggerContext();
+        context.setMDCAdapter(MDC.getMDCAdapter());
+        ListAppender<ILoggingEvent> target = new ListAppender<>();
+        target.setContext(context);
+        target.setName("LIST");
+        target.start();
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.addAppender(target);
+
+        List<AsyncAppender> wrappers = HotPathLog.wrapAppenders(root, 256);
+        assertThat(wrappers).singleElement()
+                .satisfies(async -> assertThat(async.getName()).isEqualTo("ASYNC-LIST"));
+        assertThat(root.getAppender("LIST")).isNull();
+        // Already asynchronous: not wrapped twice
+        assertThat(HotPathLog.wrapAppenders(root, 256)).isEmpty();
+
+        HotPathLog hotPathLog = hotPathLog(100);
+        try (HotPathLog.Scope scope = hotPathLog.open("trip-1", "user-1")) {
+            root.info("Debit succeeded");
+            root.warn("Debit failed");
+        }
+        wrappers.forEach(AsyncAppender::stop);
+
+        assertThat(target.list).extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("Debit succeeded", "Debit failed");
+        assertThat(target.list.get(1).getMDCPropertyMap())
+                .containsEntry(HotPathLog.TRIP_ID, "trip-1")
+                .containsEntry(HotPathLog.USER_ID, "user-1");
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private static HotPathLog hotPathLog(long successLogEvery) {
+        HotPathLog hotPathLog = new HotPathLog();
+        ReflectionTestUtils.setField(hotPathLog, "enabled", true);
+        ReflectionTestUtils.setField(hotPathLog, "successLogEvery", successLogEvery);
+        return hotPathLog;
+    }
+}
@@ -0,0 +1,107 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CatchUpModeTest {
+
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final RabbitListenerEndpointRegistry registry = mock(RabbitListenerEndpointRegistry.class);
+    private final MessageListenerContainer intake = mock(MessageListenerContainer.class);
+    private final MessageListenerContainer batch = mock(MessageListenerContainer.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CatchUpMode catchUp;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getListenerContainer(TripPricedConsumer.INTAKE_LISTENER)).thenReturn(intake);
+        when(registry.getListenerContainer(TripPricedConsumer.CATCH_UP_LISTENER)).thenReturn(batch);
+
+        catchUp = new CatchUpMode(amqpAdmin, registry, meterRegistry);
+        ReflectionTestUtils.setField(catchUp, "enabled", true);
+        ReflectionTestUtils.setField(catchUp, "enterDepth", 10_000L);
+        ReflectionTestUtils.setField(catchUp, "enterAge", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(catchUp, "exitDepth", 100L);
+        ReflectionTestUtils.setField(catchUp, "exitAge", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(catchUp, "logEvery", 100L);
+        catchUp.registerMeters();
+    }
+
+    @Test
+    @DisplayName("switches to the batch listener on a deep queue and back once it is drained")
+    void entersAndLeavesOnDepth() {
+        depth(50_000);
+        catchUp.check();
+
+        assertThat(catchUp.isActive()).isTrue();
+        verify(batch).start();
+        verify(intake).stop();
+        assertThat(meterRegistry.get("billing.catch-up.active").gauge().value()).isEqualTo(1.0);
+
+        // Between the thresholds: stays in catch-up mode
+        depth(5_000);
+        catchUp.drained(500);
+        catchUp.check();
+        assertThat(catchUp.isActive()).isTrue();
+        assertThat(meterRegistry.get("billing.catch-up.drain-rate").gauge().value()).isPositive();
+
+        depth(10);
+        catchUp.check();
+        assertThat(catchUp.isActive()).isFalse();
+        verify(intake).start();
+        verify(batch).stop();
+        assertThat(meterRegistry.counter("billing.catch-up.transitions", "mode", "catch-up").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.catch-up.transitions", "mode", "normal").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("old events trigger catch-up even when the queue is short")
+    void entersOnAge() {
+        depth(10);
+        catchUp.observe(new Date(System.currentTimeMillis() - Duration.ofMinutes(20).toMillis()));
+        catchUp.check();
+        assertThat(catchUp.isActive()).isTrue();
+
+        // Ages are reset at each check; fresh events let it leave
+        catchUp.observe(new Date());
+        catchUp.check();
+        assertThat(catchUp.isActive()).isFalse();
+    }
+
+    @Test
+    @DisplayName("an unreachable broker keeps the current mode and logs are sampled")
+    void brokerDownKeepsMode() {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.TRIP_PRICED_QUEUE))
+                .thenThrow(new AmqpConnectException(new RuntimeException("down")));
+        catchUp.check();
+        assertThat(catchUp.isActive()).isFalse();
+        verifyNoInteractions(batch, intake);
+
+        int logged = 0;
+        for (int i = 0; i < 1000; i++) {
+            logged += catchUp.sampleLog() ? 1 : 0;
+        }
+        assertThat(logged).isEqualTo(10);
+    }
+
+    private void depth(int ready) {
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.TRIP_PRICED_QUEUE))
+                .thenReturn(new QueueInformation(RabbitMQConfig.TRIP_PRICED_QUEUE, ready, 1));
+    }
+}
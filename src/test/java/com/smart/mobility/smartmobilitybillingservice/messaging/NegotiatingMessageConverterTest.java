@@ -0,0 +1,90 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.PaymentEvent;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.JacksonJavaTypeMapper;
+import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NegotiatingMessageConverterTest {
+
+    private final JacksonJsonMessageConverter json = jsonConverter();
+    private final JacksonCborMessageConverter cbor = new JacksonCborMessageConverter();
+
+    @Test
+    @DisplayName("CBOR payloads are decoded by content type and are smaller than JSON")
+    void cborRoundTrip() {
+        NegotiatingMessageConverter converter = converter(cbor);
+        TripPricedEvent event = new TripPricedEvent("TRIP-1", "user-1", new BigDecimal("1250.50"), true);
+
+        Message message = converter.toMessage(event, new MessageProperties());
+        Message jsonMessage = json.toMessage(event, new MessageProperties());
+
+        assertThat(message.getMessageProperties().getContentType())
+                .isEqualTo(JacksonCborMessageConverter.CONTENT_TYPE_CBOR);
+        assertThat(message.getBody().length).isLessThan(jsonMessage.getBody().length);
+        assertThat(converter.fromMessage(inferred(message, TripPricedEvent.class))).isEqualTo(event);
+    }
+
+    @Test
+    @DisplayName("JSON from producers that have not migrated is still accepted")
+    void jsonStillAccepted() {
+        NegotiatingMessageConverter converter = converter(cbor);
+        String body = "{\"tripId\":\"TRIP-2\",\"userId\":\"user-2\",\"finalAmount\":300.00,\"penalty\":false}";
+
+        MessageProperties withType = new MessageProperties();
+        withType.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        MessageProperties withoutType = new MessageProperties();
+        withoutType.setContentType(null);
+
+        TripPricedEvent expected = new TripPricedEvent("TRIP-2", "user-2", new BigDecimal("300.00"), false);
+        assertThat(converter.fromMessage(inferred(
+                new Message(body.getBytes(StandardCharsets.UTF_8), withType), TripPricedEvent.class)))
+                .isEqualTo(expected);
+        assertThat(converter.fromMessage(inferred(
+                new Message(body.getBytes(StandardCharsets.UTF_8), withoutType), TripPricedEvent.class)))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("outbound encoding defaults to JSON and keeps timestamps intact under CBOR")
+    void outboundEncoding() {
+        PaymentEvent event = new PaymentEvent("TRIP-3", "user-3", new BigDecimal("99.99"),
+                "COMPLETED", null, LocalDateTime.of(2025, 3, 1, 8, 15, 30), false);
+
+        Message asJson = converter(json).toMessage(event, new MessageProperties());
+        assertThat(asJson.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+
+        NegotiatingMessageConverter cborConverter = converter(cbor);
+        Message asCbor = cborConverter.toMessage(event, new MessageProperties());
+        assertThat(cborConverter.fromMessage(inferred(asCbor, PaymentEvent.class))).isEqualTo(event);
+    }
+
+    private NegotiatingMessageConverter converter(MessageConverter outbound) {
+        NegotiatingMessageConverter converter = new NegotiatingMessageConverter(json, outbound);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(JacksonCborMessageConverter.CONTENT_TYPE_CBOR, cbor);
+        return converter;
+    }
+
+    private static Message inferred(Message message, Class<?> type) {
+        message.getMessageProperties().setInferredArgumentType(type);
+        return message;
+    }
+
+    private static JacksonJsonMessageConverter jsonConverter() {
+        JacksonJsonMessageConverter converter = new JacksonJsonMessageConverter();
+        converter.setTypePrecedence(JacksonJavaTypeMapper.TypePrecedence.INFERRED);
+        return converter;
+    }
+}
@@ -0,0 +1,163 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PaymentEventPublisherTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CorrelationData> sent = new CopyOnWriteArrayList<>();
+    /** Holds the sender thread inside its send while it is not counted down. */
+    private final CountDownLatch senderGate = new CountDownLatch(1);
+    private volatile boolean gateSender;
+    private volatile boolean confirmOnCaller = true;
+
+    private PaymentEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        when(rabbitTemplate.invoke(ArgumentMatchers.<RabbitOperations.OperationsCallback<Object>>any()))
+                .thenAnswer(inv -> inv.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitTemplate));
+        doAnswer(inv -> {
+            CorrelationData correlation = inv.getArgument(3);
+            sent.add(correlation);
+            if (Thread.currentThread().getName().equals("payment-publisher")) {
+                if (gateSender) {
+                    senderGate.await();
+                }
+            } else if (confirmOnCaller) {
+                // Blocking fallback: the broker confirms right away
+                correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+            }
+            return null;
+        })
+                .when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                        any(CorrelationData.class));
+
+        publisher = new PaymentEventPublisher(rabbitTemplate, meterRegistry, new HotPathLog());
+        ReflectionTestUtils.setField(publisher, "bufferCapacity", 100);
+        ReflectionTestUtils.setField(publisher, "batchSize", 10);
+        ReflectionTestUtils.setField(publisher, "maxRetries", 3);
+        ReflectionTestUtils.setField(publisher, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(publisher, "confirmTimeoutMs", 100L);
+        publisher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        confirmOnCaller = true;
+        senderGate.countDown();
+        sent.forEach(c -> c.getFuture().complete(new CorrelationData.Confirm(true, null)));
+        publisher.stop();
+    }
+
+    @Test
+    @DisplayName("events are sent asynchronously and counted once the broker confirms them")
+    void confirmedAsynchronously() {
+        publisher.publishPaymentCompleted("TRIP-1", "user-1", new BigDecimal("100.00"), false);
+        publisher.publishAccountCredited("user-1", new BigDecimal("500.00"));
+
+        await(() -> sent.size() == 2);
+        assertThat(publisher.getInFlight()).isEqualTo(2);
+
+        sent.forEach(c -> c.getFuture().complete(new CorrelationData.Confirm(true, null)));
+
+        assertThat(publisher.getInFlight()).isZero();
+        assertThat(meterRegistry.counter("billing.publisher.confirmed").count()).isEqualTo(2.0);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.ACCOUNT_EXCHANGE),
+                eq(RabbitMQConfig.ROUTING_ACCOUNT_CREDITED), any(Object.class), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("nacked events are retried with backoff")
+    void nackIsRetried() {
+        publisher.publishPaymentFailed("TRIP-2", "user-2", new BigDecimal("100.00"), "Insufficient", false);
+        await(() -> sent.size() == 1);
+
+        sent.get(0).getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+
+        await(() -> sent.size() == 2);
+        assertThat(meterRegistry.counter("billing.publisher.nacked").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.publisher.retried").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a full buffer falls back to a blocking send on the caller thread")
+    void fullBufferBlocks() throws InterruptedException {
+        fillBuffer();
+
+        publisher.publishPaymentCompleted("TRIP-3", "user-3", new BigDecimal("10.00"), false);
+
+        // Sent and confirmed on the caller thread before the call returned
+        assertThat(sent).hasSize(2);
+        assertThat(meterRegistry.counter("billing.publisher.blocking-fallbacks").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.publisher.confirmed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a blocking send without a confirm in time counts as failed and is retried")
+    void blockingConfirmTimeoutIsRetried() throws InterruptedException {
+        fillBuffer();
+        confirmOnCaller = false;
+        ReflectionTestUtils.setField(publisher, "retryBackoffMs", 60_000L);
+
+        publisher.publishPaymentCompleted("TRIP-4", "user-4", new BigDecimal("10.00"), false);
+
+        assertThat(meterRegistry.counter("billing.publisher.confirm-timeouts").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.publisher.nacked").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.publisher.retried").count()).isEqualTo(1.0);
+    }
+
+    /**
+     * Restarts with a one-slot buffer, parks the sender thread in the send of
+     * a first event and fills the buffer with a second one.
+     */
+    private void fillBuffer() throws InterruptedException {
+        publisher.stop();
+        ReflectionTestUtils.setField(publisher, "bufferCapacity", 1);
+        gateSender = true;
+        publisher.start();
+
+        publisher.publishPaymentCompleted("TRIP-1", "user-1", new BigDecimal("10.00"), false);
+        await(() -> sent.size() == 1);
+        publisher.publishPaymentCompleted("TRIP-2", "user-2", new BigDecimal("10.00"), false);
+        assertThat(publisher.getInFlight()).isZero();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5s");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
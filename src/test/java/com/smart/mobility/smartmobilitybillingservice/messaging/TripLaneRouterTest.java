@@ -0,0 +1,121 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TripLane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TripLaneRouterTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<Message> lastSent = new AtomicReference<>();
+
+    private TripLaneRouter router;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+
+        router = new TripLaneRouter(rabbitTemplate, mock(AmqpAdmin.class), meterRegistry);
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "backlogAge", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(router, "penaltyLane", TripLane.PENALTY);
+        ReflectionTestUtils.setField(router, "confirmTimeoutMs", 100L);
+        router.registerMeters();
+    }
+
+    @Test
+    @DisplayName("fresh trips are live, aged ones backlog and penalties go to their configured lane")
+    void classifiesByAgeAndPenalty() {
+        Instant now = Instant.now();
+        TripPricedEvent trip = event("TRIP-1", false);
+
+        assertThat(router.classify(trip, now.minusSeconds(5), now)).isEqualTo(TripLane.LIVE);
+        assertThat(router.classify(trip, now.minus(Duration.ofHours(3)), now)).isEqualTo(TripLane.BACKLOG);
+        assertThat(router.classify(event("TRIP-2", true), now, now)).isEqualTo(TripLane.PENALTY);
+
+        ReflectionTestUtils.setField(router, "penaltyLane", TripLane.LIVE);
+        assertThat(router.classify(event("TRIP-2", true), now.minus(Duration.ofHours(3)), now))
+                .isEqualTo(TripLane.LIVE);
+    }
+
+    @Test
+    @DisplayName("routing keeps the original timestamp and returns once the broker confirms")
+    void routesWithOriginalTimestamp() {
+        confirmWith(new CorrelationData.Confirm(true, null), null);
+        Date sentAt = Date.from(Instant.now().minus(Duration.ofMinutes(30)));
+
+        TripLane lane = router.route(event("TRIP-3", false), sentAt);
+
+        assertThat(lane).isEqualTo(TripLane.BACKLOG);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE),
+                any(Object.class), any(MessagePostProcessor.class), any(CorrelationData.class));
+        assertThat(lastSent.get().getMessageProperties().getTimestamp()).isEqualTo(sentAt);
+        assertThat(meterRegistry.counter("billing.lanes.routed", "lane", "backlog").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a nack or an unroutable lane fails the hand-off so the intake message is redelivered")
+    void failedHandOffThrows() {
+        confirmWith(new CorrelationData.Confirm(false, "queue full"), null);
+        assertThatThrownBy(() -> router.route(event("TRIP-4", false), null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("nacked");
+
+        confirmWith(new CorrelationData.Confirm(true, null),
+                new ReturnedMessage(new Message(new byte[0]), 312, "NO_ROUTE", "", TripLane.LIVE.getQueue()));
+        assertThatThrownBy(() -> router.route(event("TRIP-5", false), null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not declared");
+
+        assertThat(meterRegistry.counter("billing.lanes.routed", "lane", "live").count()).isZero();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private void confirmWith(CorrelationData.Confirm confirm, ReturnedMessage returned) {
+        doAnswer(inv -> {
+            MessagePostProcessor postProcessor = inv.getArgument(3);
+            lastSent.set(postProcessor.postProcessMessage(new Message(new byte[0], new MessageProperties())));
+            CorrelationData correlation = inv.getArgument(4);
+            correlation.setReturned(returned);
+            correlation.getFuture().complete(confirm);
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    private static TripPricedEvent event(String tripId, boolean penalty) {
+        return new TripPricedEvent(tripId, "user-1", new BigDecimal("12.50"), penalty);
+    }
+}
@@ -0,0 +1,95 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TripPricedCaptureLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("captured events read back in order with their arrival time across rotated segments")
+    void captureRotateReadBack() throws IOException {
+        TripPricedCaptureLog captureLog = captureLog(DataSize.ofBytes(256), 100);
+
+        for (int i = 0; i < 20; i++) {
+            captureLog.append(new TripPricedEvent("TRIP-" + i, "user-" + (i % 3),
+                    new BigDecimal("150.25").add(BigDecimal.valueOf(i)), i % 5 == 0));
+        }
+        captureLog.close();
+
+        var captured = TripPricedCaptureLog.readAll(directory);
+        assertThat(captured).hasSize(20);
+        assertThat(captured.get(7).event())
+                .isEqualTo(new TripPricedEvent("TRIP-7", "user-1", new BigDecimal("157.25"), false));
+        assertThat(captured.get(10).event().penalty()).isTrue();
+        assertThat(captured).isSortedAccordingTo(
+                (a, b) -> Long.compare(a.arrivalEpochMicros(), b.arrivalEpochMicros()));
+        assertThat(segmentCount()).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("only the newest max-segments files are kept")
+    void retention() throws IOException {
+        TripPricedCaptureLog captureLog = captureLog(DataSize.ofBytes(128), 2);
+
+        for (int i = 0; i < 30; i++) {
+            captureLog.append(new TripPricedEvent("TRIP-" + i, "user-1", new BigDecimal("100.00"), false));
+        }
+        captureLog.close();
+
+        assertThat(segmentCount()).isEqualTo(2);
+        var captured = TripPricedCaptureLog.readAll(directory);
+        assertThat(captured).isNotEmpty();
+        assertThat(captured.get(captured.size() - 1).event().tripId()).isEqualTo("TRIP-29");
+    }
+
+    @Test
+    @DisplayName("amounts with a scale above 127 or a long unscaled value read back unchanged")
+    void wideAmounts() throws IOException {
+        TripPricedCaptureLog captureLog = captureLog(DataSize.ofKilobytes(4), 2);
+        BigDecimal fineScale = new BigDecimal(BigInteger.valueOf(15025), 200);
+        BigDecimal longUnscaled = new BigDecimal(BigInteger.TWO.pow(1200).add(BigInteger.ONE), 2);
+        BigDecimal negativeScale = new BigDecimal(BigInteger.valueOf(3), -130);
+
+        captureLog.append(new TripPricedEvent("TRIP-1", "user-1", fineScale, false));
+        captureLog.append(new TripPricedEvent("TRIP-2", "user-1", longUnscaled, false));
+        captureLog.append(new TripPricedEvent("TRIP-3", "user-1", negativeScale, true));
+        captureLog.close();
+
+        assertThat(TripPricedCaptureLog.readAll(directory))
+                .extracting(c -> c.event().finalAmount())
+                .containsExactly(fineScale, longUnscaled, negativeScale);
+    }
+
+    private TripPricedCaptureLog captureLog(DataSize segmentSize, int maxSegments) throws IOException {
+        TripPricedCaptureLog captureLog = new TripPricedCaptureLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(captureLog, "enabled", true);
+        ReflectionTestUtils.setField(captureLog, "directory", directory);
+        ReflectionTestUtils.setField(captureLog, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(captureLog, "maxSegments", maxSegments);
+        captureLog.open();
+        return captureLog;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
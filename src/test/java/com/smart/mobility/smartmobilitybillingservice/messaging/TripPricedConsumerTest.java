@@ -0,0 +1,150 @@
+package com.smart.mobility.smartmobilitybillingservice.messaging;
+
+import com.smart.mobility.smartmobilitybillingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TripLane;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitOutcome;
+import com.smart.mobility.smartmobilitybillingservice.sharding.ShardRouter;
+import com.smart.mobility.smartmobilitybillingservice.sharding.TripShardIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TripPricedConsumerTest {
+
+    private final BillingService billingService = mock(BillingService.class);
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final TripPricedEvent event = new TripPricedEvent("TRIP-1", "user-1", new BigDecimal("12.50"), false);
+
+    private TripPricedConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new TripPricedConsumer(billingService, mock(TripPricedCaptureLog.class),
+                mock(TripShardIndex.class), mock(TripLaneRouter.class), mock(CatchUpMode.class), shardRouter,
+                new HotPathLog(), rabbitTemplate);
+    }
+
+    @Test
+    @DisplayName("a conflicting debit is not retried in process: the message goes back to the broker")
+    void conflictRejectsMessage() {
+        when(billingService.processDebit(any(TripPricedEvent.class), anyInt()))
+                .thenThrow(new ObjectOptimisticLockingFailureException("Account", 1L));
+
+        assertThatThrownBy(() -> consumer.onTripPriced(event, null, null, null))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(billingService, times(1)).processDebit(eq(event), anyInt());
+    }
+
+    @Test
+    @DisplayName("the debit records the delivery attempt from the redelivered flag and x-death")
+    void recordsRedeliveries() {
+        when(billingService.processDebit(any(TripPricedEvent.class), anyInt()))
+                .thenReturn(DebitOutcome.duplicate(event.finalAmount()));
+
+        consumer.onTripPriced(event, null, true, null);
+        consumer.onTripPriced(event, null, true, List.of(Map.of("count", 2L), Map.of("count", 1L)));
+
+        verify(billingService).processDebit(event, 1);
+        verify(billingService).processDebit(event, 3);
+    }
+
+    @Test
+    @DisplayName("with lanes on, a fresh event queued behind aged ones is billed first")
+    void freshEventBilledBeforeBacklog() {
+        TripLaneRouter router = new TripLaneRouter(rabbitTemplate, mock(AmqpAdmin.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "backlogAge", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(router, "penaltyLane", TripLane.PENALTY);
+        ReflectionTestUtils.setField(router, "confirmTimeoutMs", 100L);
+        router.registerMeters();
+        TripPricedConsumer lanes = new TripPricedConsumer(billingService, mock(TripPricedCaptureLog.class),
+                mock(TripShardIndex.class), router, mock(CatchUpMode.class), shardRouter, new HotPathLog(),
+                rabbitTemplate);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+        // The broker: each lane delivers straight to its listener, then confirms
+        doAnswer(inv -> {
+            TripPricedEvent routed = inv.getArgument(2);
+            switch (inv.<String>getArgument(1)) {
+                case RabbitMQConfig.TRIP_PRICED_LIVE_QUEUE -> lanes.onLiveTrip(routed, null, null, null);
+                case RabbitMQConfig.TRIP_PRICED_BACKLOG_QUEUE -> lanes.onBacklogTrip(routed, null, null, null);
+                default -> lanes.onPenaltyTrip(routed, null, null, null);
+            }
+            inv.<CorrelationData>getArgument(4).getFuture().complete(new CorrelationData.Confirm(true, null));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+        when(billingService.processDebit(any(TripPricedEvent.class), anyInt()))
+                .thenAnswer(inv -> DebitOutcome.paid(inv.<TripPricedEvent>getArgument(0).finalAmount()));
+
+        Date agedAt = Date.from(Instant.now().minus(Duration.ofHours(1)));
+        List<Message<TripPricedEvent>> intake = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            intake.add(MessageBuilder.withPayload(new TripPricedEvent("AGED-" + i, "user-1", BigDecimal.TEN, false))
+                    .setHeader(AmqpHeaders.TIMESTAMP, agedAt)
+                    .build());
+        }
+        TripPricedEvent fresh = new TripPricedEvent("FRESH", "user-2", BigDecimal.TEN, false);
+        intake.add(MessageBuilder.withPayload(fresh).setHeader(AmqpHeaders.TIMESTAMP, new Date()).build());
+
+        lanes.onTripPricedTriage(intake);
+
+        ArgumentCaptor<TripPricedEvent> billed = ArgumentCaptor.forClass(TripPricedEvent.class);
+        verify(billingService, times(51)).processDebit(billed.capture(), anyInt());
+        assertThat(billed.getAllValues().get(0)).isEqualTo(fresh);
+    }
+
+    @Test
+    @DisplayName("a failed catch-up batch is billed event by event and only the bad event is dead-lettered")
+    void isolatesPoisonEventOfBatch() {
+        TripPricedEvent poison = new TripPricedEvent("TRIP-2", "user-2", new BigDecimal("-1"), false);
+        when(shardRouter.shardOf(anyString())).thenReturn("s0");
+        when(shardRouter.onShard(eq("s0"), any())).thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+        when(billingService.processDebitBatch(anyList())).thenThrow(new IllegalStateException("batch failed"));
+        when(billingService.processDebit(event, 0)).thenReturn(DebitOutcome.duplicate(event.finalAmount()));
+        when(billingService.processDebit(poison, 0)).thenThrow(new IllegalArgumentException("bad amount"));
+
+        consumer.onTripPricedBatch(List.of(MessageBuilder.withPayload(event).build(),
+                MessageBuilder.withPayload(poison).build()));
+
+        verify(billingService).processDebit(event, 0);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.PAYMENT_EXCHANGE), eq(RabbitMQConfig.ROUTING_DLQ),
+                eq(poison), any(MessagePostProcessor.class));
+        verifyNoMoreInteractions(rabbitTemplate);
+    }
+}
@@ -0,0 +1,66 @@
+package com.smart.mobility.smartmobilitybillingservice.model;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionTest {
+
+    @Test
+    @DisplayName("rendered descriptions format amounts with a dot under any default locale")
+    void localeIndependentDescription() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.FRANCE);
+        try {
+            Transaction refused = trip();
+            refused.setReasonCode(TransactionReason.INSUFFICIENT_BALANCE);
+            assertThat(refused.getDescription()).isEqualTo("Insufficient balance: required 10.00");
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    @DisplayName("the structured reason columns stay out of the JSON payload")
+    void jsonShapeUnchanged() {
+        JsonNode json = JsonMapper.builder().build().valueToTree(trip());
+
+        assertThat(json.has("reasonCode")).isFalse();
+        assertThat(json.has("penalty")).isFalse();
+        assertThat(json.has("cappedFrom")).isFalse();
+        assertThat(json.get("description").asString()).isEqualTo("Trip payment for tripId: TRIP-1");
+    }
+
+    @Test
+    @DisplayName("a stored refusal text wins over the rendered one")
+    void storedRefusalTextKept() {
+        Transaction missing = trip();
+        missing.setAccountId(null);
+        missing.setReasonCode(TransactionReason.ACCOUNT_NOT_FOUND);
+        missing.setDescription("Account not found for userId: user-1");
+
+        assertThat(missing.getDescription()).isEqualTo("Account not found for userId: user-1");
+    }
+
+    private static Transaction trip() {
+        return Transaction.builder()
+                .id(1L)
+                .accountId(10L)
+                .tripId("TRIP-1")
+                .amount(new BigDecimal("10.00"))
+                .type(TransactionType.DEBIT)
+                .status(TransactionStatus.SUCCESS)
+                .reasonCode(TransactionReason.TRIP_PAYMENT)
+                .cappedFrom(new BigDecimal("12.50"))
+                .build();
+    }
+}
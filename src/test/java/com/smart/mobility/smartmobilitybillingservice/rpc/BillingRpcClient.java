@@ -0,0 +1,89 @@
+package com.smart.mobility.smartmobilitybillingservice.rpc;
+
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BalanceReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BillingInternalGrpc;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeRequest;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatch;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.UserRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Minimal client of the internal gRPC API over one persistent channel, as a
+ * calling service would use it (generated stubs); shared by the tests and
+ * the benchmark.
+ */
+public final class BillingRpcClient implements AutoCloseable {
+
+    private final ManagedChannel channel;
+    private final BillingInternalGrpc.BillingInternalBlockingStub blocking;
+    private final BillingInternalGrpc.BillingInternalStub async;
+
+    public BillingRpcClient(String host, int port) {
+        this.channel = NettyChannelBuilder.forAddress(host, port).usePlaintext().build();
+        this.blocking = BillingInternalGrpc.newBlockingStub(channel);
+        this.async = BillingInternalGrpc.newStub(channel);
+    }
+
+    public DailySpentReply getDailySpent(String userId) {
+        return blocking.getDailySpent(UserRequest.newBuilder().setUserId(userId).build());
+    }
+
+    public BalanceReply getBalance(String userId) {
+        return blocking.getBalance(UserRequest.newBuilder().setUserId(userId).build());
+    }
+
+    public ChargeReply charge(ChargeRequest request) {
+        return blocking.charge(request);
+    }
+
+    /** Sends every batch on one stream and waits for all replies. */
+    public List<DailySpentStreamReply> dailySpentStream(List<DailySpentBatch> requests) {
+        return stream(async::dailySpentStream, requests);
+    }
+
+    /** Sends every charge on one stream and waits for all replies. */
+    public List<ChargeStreamReply> chargeStream(List<ChargeRequest> requests) {
+        return stream(async::chargeStream, requests);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static <Q, R> List<R> stream(Function<StreamObserver<R>, StreamObserver<Q>> call, List<Q> requests) {
+        List<R> replies = new ArrayList<>(requests.size());
+        CompletableFuture<List<R>> done = new CompletableFuture<>();
+        StreamObserver<Q> sender = call.apply(new StreamObserver<>() {
+            @Override
+            public void onNext(R reply) {
+                replies.add(reply);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(replies);
+            }
+        });
+        requests.forEach(sender::onNext);
+        sender.onCompleted();
+        return done.join();
+    }
+}
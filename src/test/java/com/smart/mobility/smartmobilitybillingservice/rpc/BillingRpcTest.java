@@ -0,0 +1,160 @@
+package com.smart.mobility.smartmobilitybillingservice.rpc;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BalanceReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.BillingInternalGrpc;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeRequest;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.ChargeStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatch;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentBatchReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.DailySpentStreamReply;
+import com.smart.mobility.smartmobilitybillingservice.rpc.proto.Decimal;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.DebitOutcome;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "billing.rpc.enabled=true",
+        "billing.rpc.port=0"
+})
+class BillingRpcTest {
+
+    @Autowired
+    private BillingRpcServer server;
+    @Autowired
+    private BillingService billingService;
+
+    private BillingRpcClient client;
+
+    @BeforeEach
+    void connect() {
+        client = new BillingRpcClient("localhost", server.getPort());
+    }
+
+    @AfterEach
+    void disconnect() throws InterruptedException {
+        client.close();
+    }
+
+    @Test
+    @DisplayName("balance and daily spent lookups match the account; unknown users are NOT_FOUND")
+    void lookups() {
+        account("rpc-lookup", "300.00");
+        billingService.processDebit(new TripPricedEvent("RPC-TRIP-1", "rpc-lookup", new BigDecimal("45.50"), false));
+
+        BalanceReply balance = client.getBalance("rpc-lookup");
+        assertThat(BillingRpc.decimal(balance.getBalance())).isEqualByComparingTo("254.50");
+        assertThat(balance.getCurrency()).isEqualTo("XOF");
+
+        DailySpentReply spent = client.getDailySpent("rpc-lookup");
+        assertThat(BillingRpc.decimal(spent.getDailySpent())).isEqualByComparingTo("45.50");
+        assertThat(BillingRpc.decimal(spent.getRemainingCap())).isEqualByComparingTo("49954.50");
+
+        assertThatThrownBy(() -> client.getDailySpent("rpc-nobody"))
+                .isInstanceOfSatisfying(StatusRuntimeException.class,
+                        e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("charges return paid or refused replies, and a repeated idempotency key charges once")
+    void charges() {
+        account("rpc-charge", "100.00");
+
+        ChargeReply paid = client.charge(charge("rpc-charge", "30.00").setDescription("pass")
+                .setIdempotencyKey("rpc-key-1").build());
+        ChargeReply replayed = client.charge(charge("rpc-charge", "30.00").setDescription("pass")
+                .setIdempotencyKey("rpc-key-1").build());
+        assertThat(BillingRpc.status(paid.getStatus())).isEqualTo(DebitOutcome.Status.PAID);
+        assertThat(BillingRpc.decimal(paid.getBalance())).isEqualByComparingTo("70.00");
+        assertThat(BillingRpc.decimal(replayed.getBalance())).isEqualByComparingTo("70.00");
+
+        ChargeReply refused = client.charge(charge("rpc-charge", "500.00").setDescription("pass").build());
+        assertThat(BillingRpc.status(refused.getStatus())).isEqualTo(DebitOutcome.Status.INSUFFICIENT_BALANCE);
+        assertThat(refused.hasBalance()).isFalse();
+        assertThat(refused.getMessage()).isEqualTo("Insufficient balance: available 70.00, required 500.00");
+
+        assertThat(BillingRpc.decimal(client.getBalance("rpc-charge").getBalance())).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    @DisplayName("streams answer every element, in order, over one call")
+    void streams() {
+        account("rpc-stream-0", "50.00");
+        account("rpc-stream-1", "50.00");
+
+        List<ChargeStreamReply> replies = client.chargeStream(List.of(
+                charge("rpc-stream-0", "20.00").build(),
+                charge("rpc-stream-0", "40.00").build(),
+                charge("rpc-stream-1", "50.00").build()));
+        assertThat(replies).extracting(reply -> BillingRpc.status(reply.getReply().getStatus())).containsExactly(
+                DebitOutcome.Status.PAID, DebitOutcome.Status.INSUFFICIENT_BALANCE, DebitOutcome.Status.PAID);
+
+        List<DailySpentBatchReply> batches = client.dailySpentStream(List.of(
+                DailySpentBatch.newBuilder().addAllUserIds(List.of("rpc-stream-1", "rpc-ghost", "rpc-stream-0"))
+                        .build(),
+                DailySpentBatch.getDefaultInstance())).stream().map(DailySpentStreamReply::getBatch).toList();
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0).getAccountsList()).extracting(DailySpentReply::getUserId)
+                .containsExactly("rpc-stream-1", "rpc-stream-0");
+        assertThat(batches.get(0).getMissingUserIdsList()).containsExactly("rpc-ghost");
+        assertThat(batches.get(1).getAccountsList()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a bad request mid-stream gets its own error and the stream goes on")
+    void badRequestMidStream() {
+        account("rpc-stream-bad", "100.00");
+
+        List<ChargeStreamReply> replies = client.chargeStream(List.of(
+                charge("rpc-stream-bad", "10.00").build(),
+                charge("rpc-stream-bad", "-5.00").build(),
+                charge("rpc-stream-bad", "20.00").build()));
+        assertThat(replies).extracting(ChargeStreamReply::getResultCase).containsExactly(
+                ChargeStreamReply.ResultCase.REPLY, ChargeStreamReply.ResultCase.ERROR,
+                ChargeStreamReply.ResultCase.REPLY);
+        assertThat(replies.get(1).getError().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT.value());
+        assertThat(replies.get(1).getError().getDescription()).isNotBlank();
+        assertThat(BillingRpc.decimal(replies.get(2).getReply().getBalance())).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    @DisplayName("amounts keep their exact value and scale on the wire")
+    void decimalsRoundTrip() {
+        var method = BillingInternalGrpc.getGetBalanceMethod();
+        for (String amount : List.of("0", "0.10", "-12.345", "123456789012345678901234567890.99", "1E+3")) {
+            BalanceReply sent = BillingRpc.balanceReply(
+                    new AccountResponse(7L, "user-é", new BigDecimal(amount), null, "XOF"));
+            BalanceReply received = method.parseResponse(method.streamResponse(sent));
+            assertThat(received).isEqualTo(sent);
+            assertThat(received.hasDailySpent()).isFalse();
+            assertThat(BillingRpc.decimal(received.getBalance())).isEqualTo(new BigDecimal(amount));
+        }
+        assertThat(BillingRpc.decimal(Decimal.getDefaultInstance())).isEqualTo(BigDecimal.ZERO);
+    }
+
+    private static ChargeRequest.Builder charge(String userId, String amount) {
+        return ChargeRequest.newBuilder().setUserId(userId).setAmount(BillingRpc.decimal(new BigDecimal(amount)));
+    }
+
+    private void account(String userId, String balance) {
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal(balance), null);
+    }
+}
@@ -0,0 +1,235 @@
+package com.smart.mobility.smartmobilitybillingservice.scheduling;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.model.JobLease;
+import com.smart.mobility.smartmobilitybillingservice.model.JobPartition;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.JobLeaseRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.JobPartitionRepository;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.ReconciliationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "billing.scheduling.instance-id=replica-a",
+        "billing.scheduling.poll-ms=10",
+        "billing.scheduling.lease-ttl=1500ms",
+        "billing.reconciliation.cron=-"
+})
+class ClusterSchedulingTest {
+
+    @Autowired
+    private JobLeaseService leaseService;
+    @Autowired
+    private JobLeaseRepository leaseRepository;
+    @Autowired
+    private PartitionedJobRunner runner;
+    @Autowired
+    private JobPartitionRepository partitionRepository;
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("a lease held by another replica is skipped until it expires, and is kept for min-hold after release")
+    void leaseExclusiveUntilExpiry() {
+        LocalDateTime now = LocalDateTime.now();
+        leaseRepository.save(new JobLease("lease-test", "replica-b", now.plusMinutes(1), now));
+
+        assertThat(leaseService.tryAcquire("lease-test")).isNull();
+
+        // replica-b died: its lease runs out
+        leaseRepository.save(new JobLease("lease-test", "replica-b", now.minusSeconds(1), now.minusMinutes(2)));
+        try (JobLeaseService.Lease lease = leaseService.tryAcquire("lease-test")) {
+            assertThat(lease).isNotNull();
+            assertThat(lease.isHeld()).isTrue();
+            assertThat(leaseRepository.findById("lease-test").orElseThrow().getOwner()).isEqualTo("replica-a");
+        }
+
+        // Released right away, but a late cron on replica-b must still skip the job
+        JobLease released = leaseRepository.findById("lease-test").orElseThrow();
+        assertThat(released.getLeasedUntil()).isAfter(LocalDateTime.now().plusSeconds(30));
+        Integer taken = transactionTemplate.execute(status -> leaseRepository.acquire("lease-test", "replica-b",
+                Duration.ofMinutes(2).toNanos()));
+        assertThat(taken).isZero();
+    }
+
+    @Test
+    @DisplayName("a lease taken over by another replica stops being held at the next renewal")
+    void leaseLostOnTakeover() throws InterruptedException {
+        try (JobLeaseService.Lease lease = leaseService.tryAcquire("takeover-test")) {
+            assertThat(lease).isNotNull();
+            LocalDateTime now = LocalDateTime.now();
+            // replica-b took the lease over while this replica was paused
+            leaseRepository.save(new JobLease("takeover-test", "replica-b", now.plusMinutes(1), now));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (lease.isHeld() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(lease.isHeld()).isFalse();
+        }
+        // Closing a lost lease leaves the new holder alone
+        assertThat(leaseRepository.findById("takeover-test").orElseThrow().getOwner()).isEqualTo("replica-b");
+    }
+
+    @Test
+    @DisplayName("concurrent workers split a run into ranges that are each processed exactly once")
+    void rangesProcessedOnce() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            billingService.createAccount(new CreateAccountRequest("partition-user-" + i, null));
+        }
+        Map<Long, AtomicInteger> visits = new ConcurrentHashMap<>();
+        PartitionedJobRunner.RangeWork work = (fromId, toId) -> {
+            accountRepository.findByIdBetween(fromId, toId)
+                    .forEach(account -> visits.computeIfAbsent(account.getId(), id -> new AtomicInteger()).incrementAndGet());
+            return (int) (toId - fromId + 1);
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> workers = List.of(
+                    pool.submit(() -> { start.await(); return runner.run("partition-test", "run-1", 2, work); }),
+                    pool.submit(() -> { start.await(); return runner.run("partition-test", "run-1", 2, work); }),
+                    pool.submit(() -> { start.await(); return runner.run("partition-test", "run-1", 2, work); }));
+            start.countDown();
+            for (Future<Integer> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(visits).hasSize((int) accountRepository.count());
+        assertThat(visits.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+        assertThat(partitionRepository.findByJobNameAndRunKeyOrderByFromAccountIdAsc("partition-test", "run-1"))
+                .allSatisfy(range -> {
+                    assertThat(range.getCompletedAt()).isNotNull();
+                    assertThat(range.getAttempts()).isEqualTo(1);
+                });
+
+        // The run is over: triggering it again does nothing
+        assertThat(runner.run("partition-test", "run-1", 2, work)).isZero();
+    }
+
+    @Test
+    @DisplayName("ranges claimed by a replica that died are taken over once their claim expires")
+    void expiredClaimTakenOver() {
+        LocalDateTime now = LocalDateTime.now();
+        partitionRepository.save(range("run-failover", 1, 100, "replica-b", now.minusSeconds(5), null));
+        partitionRepository.save(range("run-failover", 101, 200, "replica-b", now.minusSeconds(5), now));
+
+        int processed = runner.run("failover-test", "run-failover", 100, (fromId, toId) -> 1);
+
+        assertThat(processed).isEqualTo(1);
+        List<JobPartition> ranges = partitionRepository
+                .findByJobNameAndRunKeyOrderByFromAccountIdAsc("failover-test", "run-failover");
+        assertThat(ranges.get(0).getOwner()).isEqualTo("replica-a");
+        assertThat(ranges.get(0).getAttempts()).isEqualTo(2);
+        assertThat(ranges.get(0).getCompletedAt()).isNotNull();
+        // Completed by replica-b before it died: left alone
+        assertThat(ranges.get(1).getOwner()).isEqualTo("replica-b");
+    }
+
+    @Test
+    @DisplayName("a range failing on every attempt is abandoned and counted as such")
+    void failingRangeAbandoned() {
+        billingService.createAccount(new CreateAccountRequest("abandon-user", null));
+        AtomicInteger attempts = new AtomicInteger();
+
+        int processed = runner.run("abandon-test", "run-1", Integer.MAX_VALUE, (fromId, toId) -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("range always fails");
+        });
+
+        assertThat(processed).isZero();
+        assertThat(attempts).hasValue(3);
+        assertThat(partitionRepository.findByJobNameAndRunKeyOrderByFromAccountIdAsc("abandon-test", "run-1"))
+                .singleElement()
+                .satisfies(range -> assertThat(range.getCompletedAt()).isNull());
+        assertThat(meterRegistry.counter("billing.scheduling.ranges", "job", "abandon-test",
+                "outcome", "abandoned").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("a manual reconciliation is refused while another replica holds the nightly lease")
+    void manualReconciliationTakesLease() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        leaseRepository.save(new JobLease(ReconciliationService.LEASE, "replica-b", now.plusMinutes(1), now));
+
+        assertThat(reconciliationService.reconcileAsync()).isFalse();
+        assertThat(reconciliationService.isRunning()).isFalse();
+        assertThatThrownBy(() -> reconciliationService.reconcile())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("another replica");
+
+        leaseRepository.save(new JobLease(ReconciliationService.LEASE, "replica-b",
+                now.minusSeconds(1), now.minusMinutes(2)));
+        assertThat(reconciliationService.reconcileAsync()).isTrue();
+        assertThat(leaseRepository.findById(ReconciliationService.LEASE).orElseThrow().getOwner())
+                .isEqualTo("replica-a");
+        while (reconciliationService.isRunning()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("the midnight reset zeroes dailySpent once per run key")
+    void resetRunsOncePerKey() {
+        billingService.createAccount(new CreateAccountRequest("reset-user", null));
+        billingService.topUp("reset-user", new BigDecimal("100.00"), null);
+        billingService.processDebit(new TripPricedEvent("RESET-TRIP-1", "reset-user", new BigDecimal("40.00"), false));
+
+        assertThat(billingService.resetDailySpent("reset-test")).isPositive();
+        assertThat(accountRepository.findByUserId("reset-user").orElseThrow().getDailySpent()).isZero();
+
+        billingService.processDebit(new TripPricedEvent("RESET-TRIP-2", "reset-user", new BigDecimal("15.00"), false));
+        assertThat(billingService.resetDailySpent("reset-test")).isZero();
+        assertThat(accountRepository.findByUserId("reset-user").orElseThrow().getDailySpent())
+                .isEqualByComparingTo("15.00");
+    }
+
+    private static JobPartition range(String runKey, long from, long to, String owner, LocalDateTime leasedUntil,
+            LocalDateTime completedAt) {
+        return JobPartition.builder()
+                .jobName("failover-test")
+                .runKey(runKey)
+                .fromAccountId(from)
+                .toAccountId(to)
+                .owner(owner)
+                .leasedUntil(leasedUntil)
+                .attempts(1)
+                .completedAt(completedAt)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
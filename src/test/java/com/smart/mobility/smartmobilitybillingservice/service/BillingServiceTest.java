@@ -1,24 +1,37 @@
 package com.smart.mobility.smartmobilitybillingservice.service;
 
+import com.smart.mobility.smartmobilitybillingservice.cap.CapPolicyEngine;
 import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
 import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionReason;
 import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
 import com.smart.mobility.smartmobilitybillingservice.exception.AccountNotFoundException;
+import com.smart.mobility.smartmobilitybillingservice.exception.InsufficientBalanceException;
+import com.smart.mobility.smartmobilitybillingservice.logging.HotPathLog;
 import com.smart.mobility.smartmobilitybillingservice.messaging.PaymentEventPublisher;
 import com.smart.mobility.smartmobilitybillingservice.model.Account;
 import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
 import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
 import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
-import org.junit.jupiter.api.BeforeEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -33,17 +46,23 @@ class BillingServiceTest {
     private TransactionRepository transactionRepository;
     @Mock
     private PaymentEventPublisher eventPublisher;
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @Spy
+    private AccountReadCoalescer accountReads = new AccountReadCoalescer(meterRegistry);
+    @Spy
+    private CapPolicyEngine capPolicy = new CapPolicyEngine(new MockEnvironment()
+            .withProperty("billing.daily-cap", "50000")
+            .withProperty("billing.caps.tiers.student.daily", "2000")
+            .withProperty("billing.caps.tiers.student.weekly", "5000"), meterRegistry);
+    @Spy
+    private HotPathLog hotPathLog = new HotPathLog();
 
     @InjectMocks
     private BillingService billingService;
 
-    @BeforeEach
-    void setUp() {
-        // Inject the @Value field manually since we're running unit tests (no Spring
-        // context)
-        ReflectionTestUtils.setField(billingService, "dailyCap", new BigDecimal("50000"));
-    }
-
     // ─────────────────────────────────────────────────────────────
     // Account Creation
     // ─────────────────────────────────────────────────────────────
@@ -121,14 +140,42 @@ class BillingServiceTest {
         when(transactionRepository.findByTripId(tripId)).thenReturn(Optional.empty());
         when(accountRepository.findByUserId(userId)).thenReturn(Optional.of(account));
 
-        billingService.processDebit(new TripPricedEvent(tripId, userId, new BigDecimal("500.00"), false));
+        DebitOutcome outcome = billingService.processDebit(
+                new TripPricedEvent(tripId, userId, new BigDecimal("500.00"), false));
 
-        verify(transactionRepository).save(argThat(tx -> tx.getStatus() == TransactionStatus.FAILED));
-        verify(eventPublisher).publishPaymentFailed(eq(tripId), eq(userId), any(), anyString(), anyBoolean());
+        assertThat(outcome.status()).isEqualTo(DebitOutcome.Status.INSUFFICIENT_BALANCE);
+        // The stored text keeps the available balance, which no column holds
+        verify(transactionRepository).save(argThat(tx -> tx.getStatus() == TransactionStatus.FAILED
+                && tx.getDescription().equals("Insufficient balance: available 100.00, required 500.00")));
+        // Same wording as InsufficientBalanceException
+        verify(eventPublisher).publishPaymentFailed(eq(tripId), eq(userId), any(),
+                eq("Insufficient balance: available 100.00, required 500.00"), anyBoolean());
         // balance must be unchanged
         assertThat(account.getBalance()).isEqualByComparingTo(new BigDecimal("100.00"));
     }
 
+    @Test
+    @DisplayName("charge: a refusal is returned and only thrown at the REST boundary")
+    void charge_insufficientBalanceReturned() {
+        String userId = "user-13";
+        Account account = buildAccount(userId, "100.00", "0.00");
+        when(accountRepository.findByUserId(userId)).thenReturn(Optional.of(account));
+
+        ChargeResult result = billingService.charge(userId, new BigDecimal("250.00"), "Monthly pass");
+
+        assertThat(result.outcome().status()).isEqualTo(DebitOutcome.Status.INSUFFICIENT_BALANCE);
+        assertThat(result.account()).isNull();
+        verify(transactionRepository).save(argThat(tx -> tx.getStatus() == TransactionStatus.FAILED
+                && tx.getReasonCode() == TransactionReason.INSUFFICIENT_BALANCE));
+        assertThatThrownBy(result::orElseThrow)
+                .isInstanceOf(InsufficientBalanceException.class)
+                .hasMessage("Insufficient balance: available 100.00, required 250.00");
+
+        when(accountRepository.findByUserId("nobody")).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> billingService.charge("nobody", BigDecimal.TEN, null).orElseThrow())
+                .isInstanceOf(AccountNotFoundException.class);
+    }
+
     // ─────────────────────────────────────────────────────────────
     // Debit — Daily Cap
     // ─────────────────────────────────────────────────────────────
@@ -152,6 +199,10 @@ class BillingServiceTest {
         assertThat(account.getDailySpent()).isEqualByComparingTo(new BigDecimal("50000.00"));
         verify(eventPublisher).publishPaymentCompleted(eq(tripId), eq(userId),
                 argThat(a -> a.compareTo(new BigDecimal("1000.00")) == 0), anyBoolean());
+        // Structured columns, description rendered from them
+        verify(transactionRepository).save(argThat(tx -> tx.getReasonCode() == TransactionReason.TRIP_PAYMENT
+                && tx.getCappedFrom().compareTo(new BigDecimal("5000.00")) == 0
+                && tx.getDescription().equals("Trip payment for tripId: TRIP-003")));
     }
 
     @Test
@@ -170,6 +221,37 @@ class BillingServiceTest {
         verify(eventPublisher).publishPaymentFailed(eq(tripId), eq(userId), any(), anyString(), anyBoolean());
     }
 
+    @Test
+    @DisplayName("processDebit: a tier's weekly cap trims, then rejects, and rolls over with the week")
+    void processDebit_tierWeeklyCap() {
+        String userId = "user-12";
+        Account account = buildAccount(userId, "30000.00", "0.00");
+        account.setTier("student");
+        account.setWeeklySpent(new BigDecimal("4500.00"));
+        account.setMonthlySpent(new BigDecimal("4500.00"));
+        account.setLastSpendDate(LocalDate.now());
+
+        when(transactionRepository.findByTripId(anyString())).thenReturn(Optional.empty());
+        when(accountRepository.findByUserId(userId)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        // Daily allowance 2000, weekly 500 left: the weekly cap trims
+        billingService.processDebit(new TripPricedEvent("TRIP-W1", userId, new BigDecimal("800.00"), false));
+        assertThat(account.getBalance()).isEqualByComparingTo("29500.00");
+        assertThat(account.getWeeklySpent()).isEqualByComparingTo("5000.00");
+        assertThat(account.getMonthlySpent()).isEqualByComparingTo("5000.00");
+
+        billingService.processDebit(new TripPricedEvent("TRIP-W2", userId, new BigDecimal("10.00"), false));
+        verify(transactionRepository).save(argThat(tx -> tx.getStatus() == TransactionStatus.FAILED
+                && tx.getReasonCode() == TransactionReason.WEEKLY_CAP_EXCEEDED));
+
+        // Last spend in an earlier week: the weekly counter starts over
+        account.setLastSpendDate(LocalDate.now().minusWeeks(1));
+        billingService.processDebit(new TripPricedEvent("TRIP-W3", userId, new BigDecimal("10.00"), false));
+        assertThat(account.getWeeklySpent()).isEqualByComparingTo("10.00");
+        assertThat(account.getLastSpendDate()).isEqualTo(LocalDate.now());
+    }
+
     // ─────────────────────────────────────────────────────────────
     // Idempotence
     // ─────────────────────────────────────────────────────────────
@@ -201,6 +283,111 @@ class BillingServiceTest {
                 .isInstanceOf(AccountNotFoundException.class);
     }
 
+    // ─────────────────────────────────────────────────────────────
+    // Read coalescing
+    // ─────────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("concurrent reads of the same user share a single account lookup")
+    void concurrentReads_shareOneLookup() throws Exception {
+        String userId = "user-hot";
+        int readers = 16;
+        Account account = buildAccount(userId, "1000.00", "200.00");
+        // Hold the lookup open until every other reader has joined it
+        when(accountRepository.findByUserId(userId)).thenAnswer(inv -> {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (meterRegistry.counter("billing.reads.coalesced").count() < readers - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            return Optional.of(account);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<BigDecimal>> results = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            boolean dailySpent = i % 2 == 0;
+            results.add(pool.submit(() -> {
+                start.await();
+                return dailySpent
+                        ? BigDecimal.valueOf(billingService.getDailySpent(userId).getDailySpent())
+                        : billingService.getAccountByUserId(userId).balance();
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < readers; i++) {
+            assertThat(results.get(i).get()).isEqualByComparingTo(i % 2 == 0 ? "200.00" : "1000.00");
+        }
+        pool.shutdown();
+
+        verify(accountRepository, times(1)).findByUserId(userId);
+        assertThat(meterRegistry.counter("billing.reads.lookups").count()).isEqualTo(1.0);
+        assertThat(meterRegistry.counter("billing.reads.coalesced").count()).isEqualTo(readers - 1.0);
+    }
+
+    @Test
+    @DisplayName("getDailySpentBatch: chunks the IN query and reports unknown users")
+    void dailySpentBatch_chunkedWithMissing() {
+        ReflectionTestUtils.setField(billingService, "inChunkSize", 2);
+        when(accountRepository.findByUserIdIn(List.of("user-a", "user-b")))
+                .thenReturn(List.of(buildAccount("user-a", "0.00", "49000.00")));
+        when(accountRepository.findByUserIdIn(List.of("user-c")))
+                .thenReturn(List.of(buildAccount("user-c", "0.00", "51000.00")));
+
+        var response = billingService.getDailySpentBatch(List.of("user-a", "user-b", "user-a", "user-c"));
+
+        verify(accountRepository, times(2)).findByUserIdIn(any());
+        assertThat(response.accounts()).extracting("userId").containsExactly("user-a", "user-c");
+        assertThat(response.accounts().get(0).remainingCap()).isEqualByComparingTo("1000.00");
+        assertThat(response.accounts().get(1).remainingCap()).isEqualByComparingTo("0");
+        assertThat(response.missingUserIds()).containsExactly("user-b");
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Batched debit (catch-up mode)
+    // ─────────────────────────────────────────────────────────────
+
+    @Test
+    @DisplayName("processDebitBatch: one balance update per account, same outcomes as processDebit")
+    void processDebitBatch_coalescesPerAccount() {
+        ReflectionTestUtils.setField(billingService, "inChunkSize", 1000);
+        Account rich = buildAccount("user-a", "1000.00", "0.00");
+        Account poor = buildAccount("user-b", "150.00", "0.00");
+        when(transactionRepository.findTripIdsIn(any())).thenReturn(List.of("T-DONE"));
+        when(accountRepository.findByUserIdIn(any())).thenReturn(List.of(rich, poor));
+        when(accountRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        DebitBatchResult result = billingService.processDebitBatch(List.of(
+                new TripPricedEvent("T-1", "user-a", new BigDecimal("100.00"), false),
+                new TripPricedEvent("T-2", "user-b", new BigDecimal("100.00"), false),
+                new TripPricedEvent("T-3", "user-a", new BigDecimal("200.00"), false),
+                new TripPricedEvent("T-4", "user-b", new BigDecimal("100.00"), false),
+                new TripPricedEvent("T-DONE", "user-a", new BigDecimal("100.00"), false),
+                new TripPricedEvent("T-1", "user-a", new BigDecimal("100.00"), false),
+                new TripPricedEvent("T-5", "user-x", new BigDecimal("10.00"), false)));
+
+        assertThat(result).isEqualTo(new DebitBatchResult(3, 2, 2));
+        assertThat(rich.getBalance()).isEqualByComparingTo("700.00");
+        assertThat(rich.getDailySpent()).isEqualByComparingTo("300.00");
+        // The second debit of user-b saw the first one and was refused
+        assertThat(poor.getBalance()).isEqualByComparingTo("50.00");
+        verify(accountRepository, times(1)).save(rich);
+        verify(accountRepository, times(1)).save(poor);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(Transaction::getTripId, Transaction::getStatus).containsExactly(
+                tuple("T-1", TransactionStatus.SUCCESS),
+                tuple("T-2", TransactionStatus.SUCCESS),
+                tuple("T-3", TransactionStatus.SUCCESS),
+                tuple("T-4", TransactionStatus.FAILED),
+                tuple("T-5", TransactionStatus.FAILED));
+        verify(eventPublisher, times(3)).publishPaymentCompleted(any(), any(), any(), anyBoolean());
+        verify(eventPublisher, times(2)).publishPaymentFailed(any(), any(), any(), any(), anyBoolean());
+    }
+
     // ─────────────────────────────────────────────────────────────
     // Helpers
     // ─────────────────────────────────────────────────────────────
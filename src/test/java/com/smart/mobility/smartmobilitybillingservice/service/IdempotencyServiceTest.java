@@ -0,0 +1,144 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.exception.IdempotencyKeyReusedException;
+import com.smart.mobility.smartmobilitybillingservice.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Test
+    @DisplayName("a retried charge replays the stored response without charging twice")
+    void replay() {
+        String userId = "idem-user-1";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("1000.00"), null);
+        AtomicInteger executions = new AtomicInteger();
+
+        var first = charge("idem-key-1", userId, "250.00", executions);
+        var retry = charge("idem-key-1", userId, "250.00", executions);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.body()).isEqualTo(first.body());
+        assertThat(billingService.getAccountByUserId(userId).balance()).isEqualByComparingTo("750.00");
+        assertThat(repository.findById("idem-key-1")).isPresent();
+    }
+
+    @Test
+    @DisplayName("concurrent duplicates coalesce onto one execution")
+    void concurrentDuplicates() throws Exception {
+        String userId = "idem-user-2";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("1000.00"), null);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<IdempotencyService.IdempotentResult<AccountResponse>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return charge("idem-key-2", userId, "100.00", executions);
+            }));
+        }
+        start.countDown();
+        for (var result : results) {
+            assertThat(result.get().body().balance()).isEqualByComparingTo("900.00");
+        }
+        pool.shutdown();
+
+        assertThat(executions).hasValue(1);
+        assertThat(billingService.getAccountByUserId(userId).balance()).isEqualByComparingTo("900.00");
+    }
+
+    @Test
+    @DisplayName("a key reused with a different payload is rejected")
+    void keyReuse() {
+        String userId = "idem-user-3";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("1000.00"), null);
+        AtomicInteger executions = new AtomicInteger();
+
+        charge("idem-key-3", userId, "10.00", executions);
+
+        assertThatThrownBy(() -> charge("idem-key-3", userId, "20.00", executions))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a refused charge is recorded as FAILED and leaves the key unused")
+    void refusalLeavesKeyUnused() {
+        String userId = "idem-user-4";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+
+        var refused = chargeOrRefuse("idem-key-4", userId, "50.00");
+
+        assertThat(refused.body()).isNull();
+        assertThat(repository.findById("idem-key-4")).isEmpty();
+        assertThat(billingService.getTransactionsByUserId(userId))
+                .singleElement()
+                .satisfies(tx -> assertThat(tx.getStatus()).isEqualTo(TransactionStatus.FAILED));
+
+        billingService.topUp(userId, new BigDecimal("100.00"), null);
+        var retry = chargeOrRefuse("idem-key-4", userId, "50.00");
+
+        assertThat(retry.replayed()).isFalse();
+        assertThat(retry.body().balance()).isEqualByComparingTo("50.00");
+        assertThat(repository.findById("idem-key-4")).isPresent();
+    }
+
+    private IdempotencyService.IdempotentResult<AccountResponse> chargeOrRefuse(String key, String userId,
+            String amount) {
+        BigDecimal value = new BigDecimal(amount);
+        return idempotencyService.execute(key, userId, IdempotencyService.fingerprint("charge", userId, value, null),
+                AccountResponse.class, () -> billingService.charge(userId, value, null).account(), Objects::nonNull);
+    }
+
+    private IdempotencyService.IdempotentResult<AccountResponse> charge(String key, String userId, String amount,
+            AtomicInteger executions) {
+        BigDecimal value = new BigDecimal(amount);
+        return idempotencyService.execute(key, userId, IdempotencyService.fingerprint("charge", userId, value, null),
+                AccountResponse.class, () -> {
+                    executions.incrementAndGet();
+                    sleep();
+                    return billingService.charge(userId, value, null).orElseThrow();
+                });
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.BalanceSnapshotRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "billing.ledger.enabled=true",
+        "billing.ledger.snapshot-every-entries=3",
+        "billing.ledger.rebuild-chunk-size=2",
+        "billing.caps.tiers.commuter.monthly=120"
+})
+class LedgerServiceTest {
+
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private LedgerService ledgerService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+
+    @Test
+    @DisplayName("ledger mode appends entries, snapshots every N and never updates the account row")
+    void appendsAndSnapshots() {
+        String userId = "ledger-user-1";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("1000.00"), null);
+        billingService.processDebit(new TripPricedEvent("LEDGER-TRIP-1", userId, new BigDecimal("100.00"), false));
+        billingService.processDebit(new TripPricedEvent("LEDGER-TRIP-2", userId, new BigDecimal("50.00"), false));
+        billingService.charge(userId, new BigDecimal("25.00"), null).orElseThrow();
+
+        var response = billingService.getAccountByUserId(userId);
+        assertThat(response.balance()).isEqualByComparingTo("825.00");
+        assertThat(response.dailySpent()).isEqualByComparingTo("150.00");
+
+        Account row = accountRepository.findByUserId(userId).orElseThrow();
+        assertThat(row.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(row.getVersion()).isZero();
+        assertThat(ledgerEntryRepository.findAll())
+                .filteredOn(e -> e.getAccountId().equals(row.getId()))
+                .hasSize(4);
+        assertThat(snapshotRepository.findById(row.getId()))
+                .hasValueSatisfying(s -> assertThat(s.getSeqNo()).isEqualTo(3L));
+    }
+
+    @Test
+    @DisplayName("daily spent batch folds snapshots and tails of all accounts")
+    void dailySpentBatch() {
+        for (int i = 0; i < 3; i++) {
+            String userId = "ledger-batch-" + i;
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("1000.00"), null);
+            for (int t = 0; t <= i * 2; t++) {
+                billingService.processDebit(new TripPricedEvent("LEDGER-BATCH-" + i + "-" + t, userId,
+                        new BigDecimal("10.00"), false));
+            }
+        }
+
+        var batch = billingService.getDailySpentBatch(List.of("ledger-batch-0", "ledger-batch-1", "ledger-batch-2"));
+
+        assertThat(batch.accounts()).extracting(e -> e.dailySpent().stripTrailingZeros().toPlainString())
+                .containsExactly("10", "30", "50");
+        for (var entry : batch.accounts()) {
+            assertThat(entry.dailySpent())
+                    .isEqualByComparingTo(billingService.getAccountByUserId(entry.userId()).dailySpent());
+        }
+    }
+
+    @Test
+    @DisplayName("ledger mode enforces the monthly cap of the tier, in a catch-up batch too")
+    void monthlyCapEnforced() {
+        String userId = "ledger-monthly";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("1000.00"), null);
+        billingService.setCapTier(userId, "commuter");
+        billingService.processDebit(new TripPricedEvent("LEDGER-MONTHLY-1", userId, new BigDecimal("100.00"), false));
+
+        DebitBatchResult result = billingService.processDebitBatch(List.of(
+                new TripPricedEvent("LEDGER-MONTHLY-2", userId, new BigDecimal("50.00"), false),
+                new TripPricedEvent("LEDGER-MONTHLY-3", userId, new BigDecimal("10.00"), false)));
+
+        assertThat(result.paid()).isEqualTo(1);
+        assertThat(result.failed()).isEqualTo(1);
+        assertThat(billingService.getAccountByUserId(userId).balance()).isEqualByComparingTo("880.00");
+    }
+
+    @Test
+    @DisplayName("rebuildAll restores every account row from snapshot plus tail")
+    void rebuildAll() {
+        for (int i = 0; i < 5; i++) {
+            String userId = "ledger-rebuild-" + i;
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("100.00").multiply(BigDecimal.valueOf(i + 1)), null);
+        }
+
+        int rebuilt = ledgerService.rebuildAll();
+
+        assertThat(rebuilt).isGreaterThanOrEqualTo(5);
+        for (int i = 0; i < 5; i++) {
+            Account row = accountRepository.findByUserId("ledger-rebuild-" + i).orElseThrow();
+            assertThat(row.getBalance())
+                    .isEqualByComparingTo(new BigDecimal("100.00").multiply(BigDecimal.valueOf(i + 1)));
+            assertThat(billingService.getAccountByUserId(row.getUserId()).balance())
+                    .isEqualByComparingTo(row.getBalance());
+        }
+    }
+}
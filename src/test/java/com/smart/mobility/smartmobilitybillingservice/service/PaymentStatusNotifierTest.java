@@ -0,0 +1,134 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.sharding.TripShardIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PaymentStatusNotifierTest {
+
+    private final TripShardIndex tripShardIndex = mock(TripShardIndex.class);
+    private PaymentStatusNotifier notifier;
+
+    @BeforeEach
+    void setUp() {
+        notifier = new PaymentStatusNotifier(tripShardIndex, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(notifier, "maxWaiters", 2);
+        ReflectionTestUtils.setField(notifier, "maxTimeoutMs", 30000L);
+        notifier.init();
+        when(tripShardIndex.findTransaction("TRIP-1")).thenReturn(Optional.empty());
+    }
+
+    @Test
+    @DisplayName("parked requests are answered once the payment is recorded")
+    void waitersAreNotified() {
+        var first = notifier.await("TRIP-1", 10000);
+        var second = notifier.await("TRIP-1", 10000);
+        assertThat(first.hasResult()).isFalse();
+        assertThat(notifier.getWaiting()).isEqualTo(2);
+
+        Transaction tx = payment("TRIP-1");
+        notifier.onPaymentRecorded(new PaymentRecordedEvent(tx));
+
+        assertThat(notifier.getWaiting()).isZero();
+        for (var result : new Object[] { first.getResult(), second.getResult() }) {
+            ResponseEntity<?> response = (ResponseEntity<?>) result;
+            assertThat(response.getBody()).isSameAs(tx);
+            assertThat(response.getHeaders().getETag()).isEqualTo(PaymentStatusNotifier.etag(tx));
+        }
+    }
+
+    @Test
+    @DisplayName("a payment event of another replica wakes the waiters, once its commit is visible")
+    void wokenByOtherReplica() throws InterruptedException {
+        var result = notifier.await("TRIP-1", 10000);
+
+        // The event overtook the commit on the billing replica
+        notifier.onPaymentPublished("TRIP-1");
+        assertThat(result.hasResult()).isFalse();
+
+        Transaction tx = payment("TRIP-1");
+        when(tripShardIndex.findTransaction("TRIP-1")).thenReturn(Optional.of(tx));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.hasResult() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(((ResponseEntity<?>) result.getResult()).getBody()).isSameAs(tx);
+        assertThat(notifier.getWaiting()).isZero();
+    }
+
+    @Test
+    @DisplayName("an already recorded payment is answered without parking")
+    void alreadyRecorded() {
+        Transaction tx = payment("TRIP-2");
+        when(tripShardIndex.findTransaction("TRIP-2")).thenReturn(Optional.of(tx));
+
+        var result = notifier.await("TRIP-2", 10000);
+
+        assertThat(((ResponseEntity<?>) result.getResult()).getBody()).isSameAs(tx);
+        assertThat(notifier.getWaiting()).isZero();
+    }
+
+    @Test
+    @DisplayName("beyond max-waiters requests are turned away instead of held")
+    void boundedWaiters() {
+        notifier.await("TRIP-1", 10000);
+        notifier.await("TRIP-1", 10000);
+
+        var overflow = notifier.await("TRIP-1", 10000);
+
+        assertThat(((ResponseEntity<?>) overflow.getResult()).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(notifier.getWaiting()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("a non-positive timeout is kept to 1 ms instead of meaning no timeout")
+    void timeoutIsBounded() {
+        assertThat(ReflectionTestUtils.getField(notifier.await("TRIP-1", 0), "timeoutValue")).isEqualTo(1L);
+        assertThat(ReflectionTestUtils.getField(notifier.await("TRIP-1", -5), "timeoutValue")).isEqualTo(1L);
+        ReflectionTestUtils.setField(notifier, "maxWaiters", 3);
+        assertThat(ReflectionTestUtils.getField(notifier.await("TRIP-1", 60000), "timeoutValue")).isEqualTo(30000L);
+    }
+
+    @Test
+    @DisplayName("a waiter looks the payment up once more at its timeout (committed on another replica)")
+    void recheckedAtTimeout() {
+        var result = notifier.await("TRIP-1", 10000);
+        Supplier<?> onTimeout = (Supplier<?>) ReflectionTestUtils.getField(result, "timeoutResult");
+
+        assertThat(((ResponseEntity<?>) onTimeout.get()).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+
+        Transaction tx = payment("TRIP-1");
+        when(tripShardIndex.findTransaction("TRIP-1")).thenReturn(Optional.of(tx));
+        assertThat(((ResponseEntity<?>) onTimeout.get()).getBody()).isSameAs(tx);
+    }
+
+    private static Transaction payment(String tripId) {
+        return Transaction.builder()
+                .id(7L)
+                .accountId(1L)
+                .tripId(tripId)
+                .amount(new BigDecimal("500.00"))
+                .type(TransactionType.DEBIT)
+                .status(TransactionStatus.SUCCESS)
+                .build();
+    }
+}
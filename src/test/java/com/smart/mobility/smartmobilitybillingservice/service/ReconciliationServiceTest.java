@@ -0,0 +1,95 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.ReconciliationStatus;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationRun;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "billing.reconciliation.chunk-size=2",
+        "billing.reconciliation.parallelism=3",
+        "billing.reconciliation.pause-ms=0",
+        "billing.reconciliation.cron=-"
+})
+class ReconciliationServiceTest {
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    @DisplayName("reconcile reports exactly the accounts whose balance differs from their transactions")
+    void reportsMismatches() {
+        for (int i = 0; i < 5; i++) {
+            String userId = "recon-user-" + i;
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("500.00"), null);
+            billingService.processDebit(new TripPricedEvent("RECON-TRIP-" + i, userId, new BigDecimal("120.00"), false));
+        }
+        // Rejected debit: recorded as FAILED, must not count
+        billingService.processDebit(new TripPricedEvent("RECON-TRIP-FAILED", "recon-user-0",
+                new BigDecimal("9999.00"), false));
+
+        Account tampered = accountRepository.findByUserId("recon-user-3").orElseThrow();
+        tampered.setBalance(tampered.getBalance().add(new BigDecimal("7.50")));
+        accountRepository.save(tampered);
+
+        ReconciliationRun run = reconciliationService.reconcile();
+
+        assertThat(run.getStatus()).isEqualTo(ReconciliationStatus.COMPLETED);
+        assertThat(run.getRangesDone()).isEqualTo(run.getRangesTotal());
+        assertThat(run.getAccountsChecked()).isGreaterThanOrEqualTo(5);
+        List<ReconciliationMismatch> mismatches = reconciliationService.mismatches(run.getId(), 100);
+        assertThat(mismatches).singleElement().satisfies(m -> {
+            assertThat(m.getAccountId()).isEqualTo(tampered.getId());
+            assertThat(m.getBalance()).isEqualByComparingTo("387.50");
+            assertThat(m.getTransactionTotal()).isEqualByComparingTo("380.00");
+            assertThat(m.getDifference()).isEqualByComparingTo("7.50");
+        });
+    }
+
+    @Test
+    @DisplayName("a run stopped by its time window is resumed by the next trigger")
+    void resumesPausedRun() {
+        for (int i = 0; i < 3; i++) {
+            String userId = "recon-resume-" + i;
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("10.00"), null);
+        }
+
+        Duration window = (Duration) ReflectionTestUtils.getField(reconciliationService, "maxDuration");
+        ReflectionTestUtils.setField(reconciliationService, "maxDuration", Duration.ZERO);
+        ReconciliationRun paused;
+        try {
+            paused = reconciliationService.reconcile();
+        } finally {
+            ReflectionTestUtils.setField(reconciliationService, "maxDuration", window);
+        }
+        assertThat(paused.getStatus()).isEqualTo(ReconciliationStatus.PAUSED);
+        assertThat(paused.getRangesDone()).isZero();
+
+        ReconciliationRun resumed = reconciliationService.reconcile();
+
+        assertThat(resumed.getId()).isEqualTo(paused.getId());
+        assertThat(resumed.getStatus()).isEqualTo(ReconciliationStatus.COMPLETED);
+        assertThat(resumed.getRangesDone()).isEqualTo(resumed.getRangesTotal()).isPositive();
+        assertThat(resumed.getAccountsChecked()).isGreaterThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,195 @@
+package com.smart.mobility.smartmobilitybillingservice.service;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.CapPeriod;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"billing.daily-cap=1000", "billing.caps.tiers.student.daily=100",
+        "billing.caps.tiers.commuter.weekly=350"})
+class ShardedBalanceServiceTest {
+
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    @DisplayName("sharded account: debits larger than a slot's cap share still trim to the exact daily cap")
+    void capHoldsExactly() {
+        String userId = "shard-user-1";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("5000.00"), null);
+        billingService.reshardBalance(userId, 4);
+
+        for (int i = 1; i <= 5; i++) {
+            billingService.processDebit(new TripPricedEvent("SHARD-TRIP-" + i, userId, new BigDecimal("300.00"), false));
+        }
+
+        var account = billingService.getAccountByUserId(userId);
+        assertThat(account.dailySpent()).isEqualByComparingTo("1000.00");
+        assertThat(account.balance()).isEqualByComparingTo("4000.00");
+        assertThat(transactionRepository.findByTripId("SHARD-TRIP-4"))
+                .hasValueSatisfying(tx -> assertThat(tx.getAmount()).isEqualByComparingTo("100.00"));
+        assertThat(transactionRepository.findByTripId("SHARD-TRIP-5"))
+                .hasValueSatisfying(tx -> assertThat(tx.getStatus()).isEqualTo(TransactionStatus.FAILED));
+
+        var folded = billingService.reshardBalance(userId, 1);
+        assertThat(folded.balance()).isEqualByComparingTo("4000.00");
+        assertThat(folded.dailySpent()).isEqualByComparingTo("1000.00");
+    }
+
+    @Test
+    @DisplayName("sharded account: purchases still go through once a lowered cap is below today's spend")
+    void purchaseAfterCapLowered() {
+        String userId = "shard-user-3";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("5000.00"), null);
+        billingService.reshardBalance(userId, 4);
+        billingService.processDebit(new TripPricedEvent("SHARD-LOWERED-1", userId, new BigDecimal("300.00"), false));
+
+        // Daily cap now 100, already 300 spent
+        billingService.setCapTier(userId, "student");
+        ChargeResult result = billingService.charge(userId, new BigDecimal("50.00"), "Monthly pass");
+
+        assertThat(result.outcome().isSuccess()).isTrue();
+        var account = billingService.getAccountByUserId(userId);
+        assertThat(account.balance()).isEqualByComparingTo("4650.00");
+        assertThat(account.dailySpent()).isEqualByComparingTo("300.00");
+
+        // Trips stay refused by the lowered cap
+        DebitOutcome trip = billingService.processDebit(
+                new TripPricedEvent("SHARD-LOWERED-2", userId, new BigDecimal("10.00"), false));
+        assertThat(trip.status()).isEqualTo(DebitOutcome.Status.CAP_REACHED);
+    }
+
+    @Test
+    @DisplayName("sharded account: the weekly cap of its tier is enforced, purchases do not count")
+    void weeklyCapEnforced() {
+        String userId = "shard-user-weekly";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("5000.00"), null);
+        billingService.reshardBalance(userId, 4);
+        billingService.setCapTier(userId, "commuter");
+        billingService.charge(userId, new BigDecimal("500.00"), "Monthly pass").orElseThrow();
+
+        billingService.processDebit(new TripPricedEvent("SHARD-WEEKLY-1", userId, new BigDecimal("300.00"), false));
+        DebitOutcome trimmed = billingService.processDebit(
+                new TripPricedEvent("SHARD-WEEKLY-2", userId, new BigDecimal("80.00"), false));
+        DebitOutcome refused = billingService.processDebit(
+                new TripPricedEvent("SHARD-WEEKLY-3", userId, new BigDecimal("10.00"), false));
+
+        assertThat(trimmed.status()).isEqualTo(DebitOutcome.Status.TRIMMED);
+        assertThat(trimmed.amount()).isEqualByComparingTo("50.00");
+        assertThat(trimmed.period()).isEqualTo(CapPeriod.WEEKLY);
+        assertThat(refused.status()).isEqualTo(DebitOutcome.Status.CAP_REACHED);
+        assertThat(refused.period()).isEqualTo(CapPeriod.WEEKLY);
+    }
+
+    @Test
+    @DisplayName("daily spent batch sums the slots of sharded accounts next to plain ones")
+    void dailySpentBatch() {
+        billingService.createAccount(new CreateAccountRequest("shard-batch-1", null));
+        billingService.topUp("shard-batch-1", new BigDecimal("1000.00"), null);
+        billingService.reshardBalance("shard-batch-1", 3);
+        billingService.createAccount(new CreateAccountRequest("shard-batch-2", null));
+        billingService.topUp("shard-batch-2", new BigDecimal("1000.00"), null);
+        billingService.processDebit(new TripPricedEvent("SHARD-BATCH-1", "shard-batch-1", new BigDecimal("40.00"), false));
+        billingService.processDebit(new TripPricedEvent("SHARD-BATCH-2", "shard-batch-2", new BigDecimal("25.00"), false));
+
+        var batch = billingService.getDailySpentBatch(List.of("shard-batch-1", "shard-batch-2", "shard-ghost"));
+
+        assertThat(batch.accounts()).hasSize(2);
+        assertThat(batch.accounts().get(0).dailySpent()).isEqualByComparingTo("40.00");
+        assertThat(batch.accounts().get(0).remainingCap()).isEqualByComparingTo("960.00");
+        assertThat(batch.accounts().get(1).dailySpent()).isEqualByComparingTo("25.00");
+        assertThat(batch.missingUserIds()).containsExactly("shard-ghost");
+    }
+
+    @Test
+    @DisplayName("sharded account: concurrent debits lose no updates")
+    void concurrentDebits() throws Exception {
+        String userId = "shard-user-2";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("10000.00"), null);
+        billingService.reshardBalance(userId, 8);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    debitWithRetry(new TripPricedEvent("SHARD-C-" + thread + "-" + i, userId,
+                            new BigDecimal("5.00"), false));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        var account = billingService.getAccountByUserId(userId);
+        assertThat(account.balance()).isEqualByComparingTo("9200.00");
+        assertThat(account.dailySpent()).isEqualByComparingTo("800.00");
+    }
+
+    @Test
+    @DisplayName("sharded account: concurrent debits do not overshoot the weekly cap together")
+    void concurrentDebitsHoldWeeklyCap() throws Exception {
+        String userId = "shard-user-weekly-concurrent";
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, new BigDecimal("5000.00"), null);
+        billingService.reshardBalance(userId, 4);
+        billingService.setCapTier(userId, "commuter");
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    debitWithRetry(new TripPricedEvent("SHARD-WC-" + thread + "-" + i, userId,
+                            new BigDecimal("10.00"), false));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        var account = billingService.getAccountByUserId(userId);
+        assertThat(account.balance()).isEqualByComparingTo("4650.00");
+        assertThat(account.dailySpent()).isEqualByComparingTo("350.00");
+    }
+
+    /** A slot conflict rolls the debit back; redelivery is simulated by calling again. */
+    private void debitWithRetry(TripPricedEvent event) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                billingService.processDebit(event);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt > 100) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    @DisplayName("keys spread evenly and adding a shard only moves keys onto the new shard")
+    void evenSpreadAndMinimalMovement() {
+        ConsistentHashRing three = new ConsistentHashRing(List.of("s0", "s1", "s2"), 160);
+        ConsistentHashRing four = new ConsistentHashRing(List.of("s0", "s1", "s2", "s3"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String userId = "user-" + i;
+            String before = three.shardFor(userId);
+            String after = four.shardFor(userId);
+            counts.merge(before, 1, Integer::sum);
+            if (!before.equals(after)) {
+                assertThat(after).isEqualTo("s3");
+                moved++;
+            }
+        }
+
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 3 * 8 / 10, KEYS / 3 * 12 / 10));
+        assertThat(moved).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10);
+    }
+}
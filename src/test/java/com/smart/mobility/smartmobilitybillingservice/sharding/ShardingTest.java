@@ -0,0 +1,176 @@
+package com.smart.mobility.smartmobilitybillingservice.sharding;
+
+import com.smart.mobility.smartmobilitybillingservice.controller.AccountController;
+import com.smart.mobility.smartmobilitybillingservice.controller.InterneAccountController;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentBatchResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.DailySpentEntry;
+import com.smart.mobility.smartmobilitybillingservice.dto.TopUpRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.messaging.TripPricedConsumer;
+import com.smart.mobility.smartmobilitybillingservice.model.Account;
+import com.smart.mobility.smartmobilitybillingservice.model.IdempotencyRecord;
+import com.smart.mobility.smartmobilitybillingservice.model.ReconciliationMismatch;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.IdempotencyRecordRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.ReconciliationMismatchRepository;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.ReconciliationService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:directory;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.open-in-view=false",
+        "billing.sharding.enabled=true",
+        "billing.sharding.create-schema=true",
+        "billing.sharding.shards.s0.url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "billing.sharding.shards.s1.url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "billing.sharding.shards.s2.url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"
+})
+class ShardingTest {
+
+    private static final List<String> ALL_SHARDS = List.of("s0", "s1", "s2");
+
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private TripPricedConsumer tripPricedConsumer;
+    @Autowired
+    private TripShardIndex tripShardIndex;
+    @Autowired
+    private ShardRouter shardRouter;
+    @Autowired
+    private ShardMigrationService shardMigrationService;
+    @Autowired
+    private InterneAccountController internalController;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountController accountController;
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    @Autowired
+    private ReconciliationMismatchRepository mismatchRepository;
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Test
+    @DisplayName("accounts live on their userId's shard and payments are found by tripId")
+    void routesByUserId() {
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String userId = "shard-user-" + i;
+            userIds.add(userId);
+            billingService.createAccount(new CreateAccountRequest(userId, null));
+            billingService.topUp(userId, new BigDecimal("100.00"), null);
+            tripPricedConsumer.onTripPriced(new TripPricedEvent("SHARD-TRIP-" + i, userId, new BigDecimal("30.00"), false), null, null, null);
+        }
+
+        Set<String> used = new HashSet<>();
+        for (String userId : userIds) {
+            String shard = shardRouter.shardOf(userId);
+            used.add(shard);
+            assertThat(shardsHolding(userId)).containsExactly(shard);
+            assertThat(billingService.getAccountByUserId(userId).balance()).isEqualByComparingTo("70.00");
+        }
+        assertThat(used).hasSizeGreaterThan(1);
+
+        assertThat(tripShardIndex.findTransaction("SHARD-TRIP-5"))
+                .hasValueSatisfying(tx -> assertThat(tx.getAmount()).isEqualByComparingTo("30.00"));
+        assertThat(tripShardIndex.findTransaction("SHARD-TRIP-UNKNOWN")).isEmpty();
+
+        List<String> requested = new ArrayList<>(userIds);
+        requested.add(3, "shard-user-missing");
+        DailySpentBatchResponse batch = internalController
+                .getDailySpentBatch(new DailySpentBatchRequest(requested)).getBody();
+        assertThat(batch.accounts()).extracting(DailySpentEntry::userId).containsExactlyElementsOf(userIds);
+        assertThat(batch.accounts()).allSatisfy(e -> assertThat(e.dailySpent()).isEqualByComparingTo("30.00"));
+        assertThat(batch.missingUserIds()).containsExactly("shard-user-missing");
+    }
+
+    @Test
+    @DisplayName("adding a shard and migrating moves exactly the re-hashed accounts with their history")
+    void reshards() {
+        List<String> userIds = new ArrayList<>();
+        shardRouter.useShards(List.of("s0", "s1"));
+        try {
+            for (int i = 0; i < 20; i++) {
+                String userId = "reshard-user-" + i;
+                userIds.add(userId);
+                billingService.createAccount(new CreateAccountRequest(userId, null));
+                accountController.topUp(userId, new TopUpRequest(new BigDecimal("50.00"), null), "RESHARD-KEY-" + i);
+                tripPricedConsumer.onTripPriced(new TripPricedEvent("RESHARD-TRIP-" + i, userId, new BigDecimal("20.00"), false), null, null, null);
+                String shard = shardRouter.shardOf(userId);
+                Long accountId = ShardContext.callIn(shard, () -> accountRepository.findByUserId(userId)).orElseThrow().getId();
+                ShardContext.callIn(shard, () -> mismatchRepository.save(mismatch(accountId)));
+            }
+        } finally {
+            shardRouter.useShards(ALL_SHARDS);
+        }
+        long toMove = userIds.stream().filter(u -> shardRouter.shardOf(u).equals("s2")).count();
+        assertThat(toMove).isPositive();
+        Long targetRunId = ShardContext.callIn("s2", () -> reconciliationService.reconcile().getId());
+
+        ShardMigrationService.MigrationReport report = shardMigrationService.migrate();
+
+        assertThat(report.moved()).isEqualTo(toMove);
+        for (int i = 0; i < userIds.size(); i++) {
+            String userId = userIds.get(i);
+            assertThat(shardsHolding(userId)).containsExactly(shardRouter.shardOf(userId));
+            assertThat(billingService.getAccountByUserId(userId).balance()).isEqualByComparingTo("30.00");
+            assertThat(billingService.getTransactionsByUserId(userId)).hasSize(2);
+            assertThat(tripShardIndex.findTransaction("RESHARD-TRIP-" + i)).isPresent();
+
+            String shard = shardRouter.shardOf(userId);
+            String key = "RESHARD-KEY-" + i;
+            Long accountId = ShardContext.callIn(shard, () -> accountRepository.findByUserId(userId)).orElseThrow().getId();
+            for (String other : ALL_SHARDS) {
+                Optional<IdempotencyRecord> record = ShardContext.callIn(other, () -> idempotencyRecordRepository.findById(key));
+                assertThat(record.isPresent()).isEqualTo(other.equals(shard));
+            }
+            List<ReconciliationMismatch> mismatches = ShardContext.callIn(shard,
+                    () -> mismatchRepository.findByAccountId(accountId));
+            assertThat(mismatches).singleElement().satisfies(m -> {
+                if (shard.equals("s2")) {
+                    assertThat(m.getRunId()).isEqualTo(targetRunId);
+                }
+            });
+        }
+        assertThat(shardMigrationService.migrate().moved()).isZero();
+    }
+
+    private static ReconciliationMismatch mismatch(Long accountId) {
+        return ReconciliationMismatch.builder()
+                .runId(1L)
+                .accountId(accountId)
+                .balance(new BigDecimal("30.00"))
+                .transactionTotal(new BigDecimal("25.00"))
+                .difference(new BigDecimal("5.00"))
+                .detectedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private List<String> shardsHolding(String userId) {
+        List<String> shards = new ArrayList<>();
+        for (String shard : ALL_SHARDS) {
+            Optional<Account> account = ShardContext.callIn(shard, () -> accountRepository.findByUserId(userId));
+            account.ifPresent(a -> shards.add(shard));
+        }
+        return shards;
+    }
+}
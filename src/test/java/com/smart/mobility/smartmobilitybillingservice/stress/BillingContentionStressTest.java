@@ -0,0 +1,40 @@
+package com.smart.mobility.smartmobilitybillingservice.stress;
+
+import com.smart.mobility.smartmobilitybillingservice.messaging.PaymentEventPublisher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Contention suite in column mode: balances updated in place on the account
+ * row (optimistic locking), and split across balance slots for hot accounts.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=64",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "billing.daily-cap=20000",
+        "billing.reconciliation.cron=-",
+        "logging.level.com.smart.mobility=WARN",
+        "logging.level.org.hibernate.orm.jdbc.error=ERROR"
+})
+class BillingContentionStressTest extends ContentionStressSupport {
+
+    @MockitoBean
+    private PaymentEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("account rows: no lost update, no negative balance, cap held, one transaction per trip")
+    void accountRows() throws InterruptedException {
+        runAndVerify("account rows", createPopulation("rows"));
+    }
+
+    @Test
+    @DisplayName("hot accounts split into balance slots keep the same invariants")
+    void balanceSlots() throws InterruptedException {
+        Population population = createPopulation("slots");
+        population.hot().forEach(userId -> billingService.reshardBalance(userId, 4));
+        runAndVerify("balance slots", population);
+    }
+}
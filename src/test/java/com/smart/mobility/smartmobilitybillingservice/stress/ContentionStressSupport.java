@@ -0,0 +1,330 @@
+package com.smart.mobility.smartmobilitybillingservice.stress;
+
+import com.smart.mobility.smartmobilitybillingservice.dto.AccountResponse;
+import com.smart.mobility.smartmobilitybillingservice.dto.CreateAccountRequest;
+import com.smart.mobility.smartmobilitybillingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionStatus;
+import com.smart.mobility.smartmobilitybillingservice.enums.TransactionType;
+import com.smart.mobility.smartmobilitybillingservice.model.Transaction;
+import com.smart.mobility.smartmobilitybillingservice.repository.AccountRepository;
+import com.smart.mobility.smartmobilitybillingservice.repository.TransactionRepository;
+import com.smart.mobility.smartmobilitybillingservice.service.BillingService;
+import com.smart.mobility.smartmobilitybillingservice.service.ChargeResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@code processDebit}, {@code charge}, {@code topUp} and
+ * {@code resetDailySpent} concurrently against a real (H2, MySQL mode)
+ * database, then checks the billing invariants:
+ * <ul>
+ * <li>no lost update: each balance equals its opening top-up, plus the
+ * top-ups and minus the charges that returned, minus its SUCCESS trip
+ * debits</li>
+ * <li>no balance ever below zero and no {@code dailySpent} above
+ * {@code billing.daily-cap}, sampled while the load runs and at the end</li>
+ * <li>exactly one transaction per tripId, although a share of the trips is
+ * delivered twice from different threads</li>
+ * </ul>
+ * Conflicts (optimistic lock failures, lock timeouts, unique-key races) are
+ * retried like a redelivered message would be, and counted. Throughput and
+ * conflict rate are printed at the end of each run.
+ * <p>
+ * Sizes are system properties so that a run can be scaled up from the
+ * command line, e.g.
+ * {@code mvn test -Dtest='*ContentionStressTest' -Dstress.threads=32 -Dstress.operations=50000}:
+ * {@code stress.threads} (8), {@code stress.operations} (3000),
+ * {@code stress.hot-accounts} (2), {@code stress.cold-accounts} (40),
+ * {@code stress.hot-ratio} (0.8), {@code stress.duplicate-ratio} (0.1).
+ */
+abstract class ContentionStressSupport {
+
+    static final int THREADS = Integer.getInteger("stress.threads", 8);
+    static final int OPERATIONS = Integer.getInteger("stress.operations", 3000);
+    static final int HOT_ACCOUNTS = Integer.getInteger("stress.hot-accounts", 2);
+    static final int COLD_ACCOUNTS = Integer.getInteger("stress.cold-accounts", 40);
+    static final double HOT_RATIO = Double.parseDouble(System.getProperty("stress.hot-ratio", "0.8"));
+    static final double DUPLICATE_RATIO = Double.parseDouble(System.getProperty("stress.duplicate-ratio", "0.1"));
+
+    private static final int MAX_ATTEMPTS = 50;
+
+    @Autowired
+    protected BillingService billingService;
+    @Autowired
+    protected AccountRepository accountRepository;
+    @Autowired
+    protected TransactionRepository transactionRepository;
+
+    @Value("${billing.daily-cap}")
+    private BigDecimal dailyCap;
+
+    /** Per-user tally of what the callers were told succeeded. */
+    private final Map<String, LongAdder> expectedCents = new ConcurrentHashMap<>();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    /** Each simulated midnight is a new reset run. */
+    private final AtomicInteger resets = new AtomicInteger();
+
+    /** A population of accounts owned by one run. */
+    record Population(String prefix, List<String> hot, List<String> cold) {
+
+        List<String> all() {
+            List<String> all = new ArrayList<>(hot);
+            all.addAll(cold);
+            return all;
+        }
+    }
+
+    /** Hot accounts start rich (contention), cold ones nearly empty (rejections). */
+    Population createPopulation(String prefix) {
+        List<String> hot = new ArrayList<>();
+        List<String> cold = new ArrayList<>();
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            hot.add(open(prefix + "-hot-" + i, new BigDecimal("1000000.00")));
+        }
+        for (int i = 0; i < COLD_ACCOUNTS; i++) {
+            cold.add(open(prefix + "-cold-" + i, new BigDecimal("1500.00")));
+        }
+        return new Population(prefix, hot, cold);
+    }
+
+    /** Runs the mixed load on {@code population}, then asserts every invariant. */
+    void runAndVerify(String label, Population population) throws InterruptedException {
+        List<String> tripIds = new ArrayList<>();
+        AtomicInteger nextOperation = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Queue<String> submittedTrips = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 2);
+        CountDownLatch workersDone = new CountDownLatch(THREADS);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    int n;
+                    while ((n = nextOperation.getAndIncrement()) < OPERATIONS) {
+                        try {
+                            operation(population, n, submittedTrips);
+                        } catch (RuntimeException e) {
+                            violations.add("operation " + n + " failed: " + e);
+                        }
+                    }
+                } finally {
+                    workersDone.countDown();
+                }
+            });
+        }
+        pool.execute(() -> monitor(population, running));
+        pool.execute(() -> resetPeriodically(running));
+
+        assertThat(workersDone.await(10, TimeUnit.MINUTES)).as("workers finished").isTrue();
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        pool.shutdown();
+        assertThat(pool.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        tripIds.addAll(submittedTrips);
+
+        report(label, elapsed);
+        verifyInvariants(population, tripIds);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Load
+    // ─────────────────────────────────────────────────────────────
+
+    private void operation(Population population, int n, Queue<String> submittedTrips) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> group = random.nextDouble() < HOT_RATIO ? population.hot() : population.cold();
+        String userId = group.get(random.nextInt(group.size()));
+        int roll = random.nextInt(100);
+
+        if (roll < 70) {
+            String tripId = population.prefix() + "-trip-" + n;
+            TripPricedEvent event = new TripPricedEvent(tripId, userId, cents(random.nextInt(5_000, 60_000)),
+                    random.nextInt(10) == 0);
+            submittedTrips.add(tripId);
+            Thread duplicate = null;
+            if (random.nextDouble() < DUPLICATE_RATIO) {
+                // Redelivery racing on another thread
+                duplicate = new Thread(() -> withRetry("duplicate", () -> {
+                    billingService.processDebit(event);
+                    return null;
+                }));
+                duplicate.start();
+            }
+            withRetry("debit", () -> {
+                billingService.processDebit(event);
+                return null;
+            });
+            if (duplicate != null) {
+                joinQuietly(duplicate);
+            }
+        } else if (roll < 85) {
+            BigDecimal amount = cents(random.nextInt(1_000, 100_000));
+            withRetry("topUp", () -> billingService.topUp(userId, amount, "stress"));
+            expected(userId).add(amount.movePointRight(2).longValueExact());
+        } else {
+            BigDecimal amount = cents(random.nextInt(1_000, 50_000));
+            ChargeResult charge = withRetry("charge", () -> billingService.charge(userId, amount, "stress"));
+            if (charge.outcome().isSuccess()) {
+                expected(userId).add(-amount.movePointRight(2).longValueExact());
+            } else {
+                count("charge.rejected");
+            }
+        }
+    }
+
+    /** Midnight, many times over: the reset races with every debit. */
+    private void resetPeriodically(AtomicBoolean running) {
+        while (running.get()) {
+            sleep(200);
+            withRetry("reset", () -> {
+                billingService.resetDailySpent("stress-" + resets.incrementAndGet());
+                return null;
+            });
+        }
+    }
+
+    /** Samples committed balances while the load runs. */
+    private void monitor(Population population, AtomicBoolean running) {
+        while (running.get()) {
+            for (String userId : population.hot()) {
+                check(userId, billingService.getAccountByUserId(userId));
+            }
+            sleep(10);
+        }
+    }
+
+    private <T> T withRetry(String operation, Supplier<T> call) {
+        count(operation);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                count("conflict");
+                count("conflict." + operation);
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Invariants
+    // ─────────────────────────────────────────────────────────────
+
+    private void verifyInvariants(Population population, List<String> tripIds) {
+        List<Transaction> transactions = transactionRepository.findAll().stream()
+                .filter(tx -> tx.getTripId() != null && tx.getTripId().startsWith(population.prefix() + "-"))
+                .toList();
+        Map<String, Long> perTrip = transactions.stream()
+                .collect(Collectors.groupingBy(Transaction::getTripId, Collectors.counting()));
+        assertThat(perTrip.keySet()).as("every submitted trip is recorded").containsExactlyInAnyOrderElementsOf(
+                tripIds.stream().distinct().toList());
+        assertThat(perTrip.values()).as("one transaction per tripId").allMatch(count -> count == 1);
+
+        for (String userId : population.all()) {
+            AccountResponse account = billingService.getAccountByUserId(userId);
+            check(userId, account);
+            long debited = transactions.stream()
+                    .filter(tx -> tx.getAccountId() != null && tx.getAccountId().equals(account.id()))
+                    .filter(tx -> tx.getStatus() == TransactionStatus.SUCCESS && tx.getType() == TransactionType.DEBIT)
+                    .mapToLong(tx -> tx.getAmount().movePointRight(2).longValueExact())
+                    .sum();
+            long expected = expected(userId).sum() - debited;
+            assertThat(account.balance().movePointRight(2).longValueExact())
+                    .as("balance of %s (lost update?)", userId)
+                    .isEqualTo(expected);
+        }
+        assertThat(violations).as("invariant violations seen while running").isEmpty();
+    }
+
+    private void check(String userId, AccountResponse account) {
+        if (account.balance().signum() < 0) {
+            violations.add(userId + " balance " + account.balance());
+        }
+        if (account.dailySpent().compareTo(dailyCap) > 0) {
+            violations.add(userId + " dailySpent " + account.dailySpent() + " above cap " + dailyCap);
+        }
+    }
+
+    private void report(String label, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long operations = sum("debit") + sum("topUp") + sum("charge");
+        System.out.printf("%n[stress] %s: %d threads, %d operations (+%d duplicate deliveries, %d resets) in %.2f s%n",
+                label, THREADS, operations, sum("duplicate"), sum("reset"), seconds);
+        System.out.printf("[stress] throughput %.0f ops/s, conflicts %d (%.1f%% of operations: debit %d, topUp %d,"
+                        + " charge %d, reset %d), rejected charges %d%n",
+                operations / seconds, sum("conflict"), 100.0 * sum("conflict") / Math.max(1, operations),
+                sum("conflict.debit") + sum("conflict.duplicate"), sum("conflict.topUp"), sum("conflict.charge"), sum("conflict.reset"),
+                sum("charge.rejected"));
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Private helpers
+    // ─────────────────────────────────────────────────────────────
+
+    private String open(String userId, BigDecimal balance) {
+        billingService.createAccount(new CreateAccountRequest(userId, null));
+        billingService.topUp(userId, balance, "stress opening balance");
+        expected(userId).add(balance.movePointRight(2).longValueExact());
+        return userId;
+    }
+
+    private LongAdder expected(String userId) {
+        return expectedCents.computeIfAbsent(userId, k -> new LongAdder());
+    }
+
+    private void count(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    private long sum(String name) {
+        LongAdder adder = counters.get(name);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    private static BigDecimal cents(int cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.smart.mobility.smartmobilitybillingservice.stress;
+
+import com.smart.mobility.smartmobilitybillingservice.messaging.PaymentEventPublisher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/** Contention suite in ledger mode: appends race on the (accountId, seqNo) unique key. */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress-ledger;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=64",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "billing.daily-cap=20000",
+        "billing.ledger.enabled=true",
+        "billing.ledger.snapshot-every-entries=20",
+        "billing.reconciliation.cron=-",
+        "logging.level.com.smart.mobility=WARN",
+        "logging.level.org.hibernate.orm.jdbc.error=ERROR"
+})
+class LedgerContentionStressTest extends ContentionStressSupport {
+
+    @MockitoBean
+    private PaymentEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("ledger appends: no lost update, no negative balance, cap held, one transaction per trip")
+    void ledgerAppends() throws InterruptedException {
+        runAndVerify("ledger", createPopulation("ledger"));
+    }
+}